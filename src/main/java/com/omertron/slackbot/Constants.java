@@ -46,6 +46,52 @@ public final class Constants {
 
     public static final String ATTACH_COLOUR_GOOD = "good";
 
+    // Command pipeline properties
+    public static final String PIPELINE_QUEUE_SIZE = "pipelineQueueSize";
+    public static final String PIPELINE_CHANNEL_QUEUE_SIZE = "pipelineChannelQueueSize";
+
+    // Rate limit properties, suffixed with "Capacity" and "PerMinute"
+    public static final String LIMIT_USER = "limitUser";
+    public static final String LIMIT_CHANNEL = "limitChannel";
+    public static final String LIMIT_COMMAND = "limitCommand";
+
+    // BGG cache properties, TTL in minutes
+    public static final String CACHE_GAME_TTL = "cacheGameTtl";
+    public static final String CACHE_GAME_SIZE = "cacheGameSize";
+    public static final String CACHE_SEARCH_TTL = "cacheSearchTtl";
+    public static final String CACHE_SEARCH_SIZE = "cacheSearchSize";
+    // Hot list soft TTL, a background refresh is started after this time
+    public static final String CACHE_HOT_TTL = "cacheHotTtl";
+    public static final String CACHE_USER_TTL = "cacheUserTtl";
+    public static final String CACHE_USER_SIZE = "cacheUserSize";
+    public static final String CACHE_COLLECTION_TTL = "cacheCollectionTtl";
+    public static final String CACHE_COLLECTION_SIZE = "cacheCollectionSize";
+    // Disk cache, budget in KB and save interval in minutes
+    public static final String CACHE_DISK_ENABLE = "cacheDiskEnable";
+    public static final String CACHE_DIRECTORY = "cacheDirectory";
+    public static final String CACHE_DISK_BUDGET = "cacheDiskBudget";
+    public static final String CACHE_SAVE_INTERVAL = "cacheSaveInterval";
+
+    // Global limit on the calls to BGG
+    public static final String BGG_REQUESTS_PER_SECOND = "bggRequestsPerSecond";
+    // Number of times to ask BGG for a collection before giving up
+    public static final String COLLECTION_ATTEMPTS = "collectionAttempts";
+    // Maximum bytes of collection text in a single message
+    public static final String COLLECTION_PAGE_BYTES = "collectionPageBytes";
+    // Minutes between syncs of the group's collections
+    public static final String COLLECTION_SYNC_INTERVAL = "collectionSyncInterval";
+
+    // Time in ms to gather sheet cell writes into one batch
+    public static final String SHEETS_WRITE_WINDOW = "sheetsWriteWindow";
+    // Seconds to use the next game information before reading it again
+    public static final String SHEET_INFO_TTL = "sheetInfoTtl";
+    // Seconds between checks of the sheet for changes to the next game
+    public static final String SHEET_POLL_INTERVAL = "sheetPollInterval";
+
+    // Circuit breaker properties
+    public static final String CIRCUIT_FAILURES = "circuitFailures";
+    public static final String CIRCUIT_OPEN_SECONDS = "circuitOpenSeconds";
+
     // Proxy property names for property file
     public static final String PROXY_HOST = "proxyHost";
     public static final String PROXY_PORT = "proxyPort";
@@ -22,8 +22,12 @@ package com.omertron.slackbot;
 import com.omertron.slackbot.enumeration.ExitCode;
 import com.omertron.slackbot.functions.BotStatistics;
 import com.omertron.slackbot.functions.BotWelcome;
+import com.omertron.slackbot.functions.GoogleSheets;
+import com.omertron.slackbot.functions.pipeline.CommandPipeline;
 import com.omertron.slackbot.functions.scheduler.BotTaskExecutor;
+import com.omertron.slackbot.listeners.AbstractListener;
 import com.omertron.slackbot.listeners.BoardGameListener;
+import com.omertron.slackbot.listeners.CommandDispatcher;
 import com.omertron.slackbot.listeners.GoogleSheetsListener;
 import com.omertron.slackbot.listeners.HelpListener;
 import com.omertron.slackbot.utils.PropertiesUtil;
@@ -37,6 +41,7 @@ import java.net.Proxy;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.slf4j.Logger;
@@ -48,6 +53,7 @@ public class SlackBot {
     private static final String DEFAULT_PROPERTIES_FILE = "application.properties";
     private static final List<SlackUser> BOT_ADMINS = new ArrayList<>();
     private static BotTaskExecutor executor;
+    private static SlackSession botSession = null;
     private static final List<SlackMessagePostedListener> LISTENER_MP = new ArrayList<>();
 
     private SlackBot() {
@@ -72,6 +78,7 @@ public class SlackBot {
         }
 
         session.connect();
+        botSession = session;
 
         // Populate the BOT admins
         populateBotAdmins(session);
@@ -90,6 +97,11 @@ public class SlackBot {
 
         LOG.info("Starting the Task Executor");
         executor = new BotTaskExecutor(session);
+        int saveInterval = PropertiesUtil.getIntProperty(Constants.CACHE_SAVE_INTERVAL, 30);
+        BotTaskExecutor.schedulePeriodic("BGG CACHE", AbstractListener::saveBggCache, saveInterval, saveInterval, TimeUnit.MINUTES);
+        // Keep the hot lists warm, starting straight away
+        BotTaskExecutor.schedulePeriodic("HOT LIST", AbstractListener::refreshHotLists, 0,
+                PropertiesUtil.getIntProperty(Constants.CACHE_HOT_TTL, 15), TimeUnit.MINUTES);
 
         LOG.info("Checking for users welcomed list");
         BotWelcome.readFile();
@@ -109,14 +121,21 @@ public class SlackBot {
     private static synchronized void addListeners(SlackSession session) {
         // Only add the listeners once
         if (LISTENER_MP.isEmpty()) {
+            // All commands are routed through the one dispatcher
+            CommandDispatcher dispatcher = new CommandDispatcher();
             // Add board game listner
-            LISTENER_MP.add(new BoardGameListener());
+            dispatcher.addHandler(new BoardGameListener());
             // Add Wirral Biscuits and Boardgames 
-            LISTENER_MP.add(new GoogleSheetsListener());
+            dispatcher.setSheetsHandler(new GoogleSheetsListener());
             // Add Game Night listener
-//            LISTENER_MP.add(new GameNightListener());
+//            dispatcher.addHandler(new GameNightListener());
             // Add help listener
-            LISTENER_MP.add(new HelpListener());
+            dispatcher.addHandler(new HelpListener());
+
+            LISTENER_MP.add(dispatcher);
+
+            // Commands are executed off the Slack event thread
+            CommandPipeline.start();
 
             for (SlackMessagePostedListener l : LISTENER_MP) {
                 session.addMessagePostedListener(l);
@@ -152,6 +171,9 @@ public class SlackBot {
         if (executor != null) {
             executor.stopAll();
         }
+        CommandPipeline.stop();
+        GoogleSheets.stopWriting();
+        AbstractListener.saveBggCache();
         System.exit(exitCode.getValue());
     }
 
@@ -168,6 +190,20 @@ public class SlackBot {
         messageAdmins(session, message);
     }
 
+    /**
+     * Send a message to all admins using the bot's session.<p>
+     * Nothing is sent if the session has not been started
+     *
+     * @param message
+     */
+    public static void messageAdmins(String message) {
+        if (botSession == null) {
+            LOG.info("No session to send message to admins: '{}'", message);
+            return;
+        }
+        messageAdmins(botSession, message);
+    }
+
     /**
      * Send a message to all admins
      *
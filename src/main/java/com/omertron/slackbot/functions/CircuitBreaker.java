@@ -0,0 +1,214 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.SlackBot;
+import com.omertron.slackbot.enumeration.CircuitState;
+import com.omertron.slackbot.enumeration.Upstream;
+import com.omertron.slackbot.utils.PropertiesUtil;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker for an upstream service.<p>
+ * After a number of consecutive failures the circuit opens and calls fail
+ * fast. Once the open time has passed a single probe call is allowed, if it
+ * succeeds the circuit closes again, otherwise it stays open.
+ *
+ * @author Omertron
+ */
+public final class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final Map<Upstream, CircuitBreaker> BREAKERS = new EnumMap<>(Upstream.class);
+    private static final int FAILURE_THRESHOLD = PropertiesUtil.getIntProperty(Constants.CIRCUIT_FAILURES, 5);
+    private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(PropertiesUtil.getIntProperty(Constants.CIRCUIT_OPEN_SECONDS, 60));
+    private static final ExecutorService NOTIFIER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "circuit-notify");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        for (Upstream upstream : Upstream.values()) {
+            BREAKERS.put(upstream, new CircuitBreaker(upstream, FAILURE_THRESHOLD, OPEN_MILLIS));
+        }
+    }
+
+    private final Upstream upstream;
+    private final int failureThreshold;
+    private final long openMillis;
+    private CircuitState state = CircuitState.CLOSED;
+    private int failures = 0;
+    private long openedAt = 0;
+    private boolean probing = false;
+    private String lastError = null;
+
+    /**
+     * Create a breaker, use {@link #get(Upstream)} for the shared breakers
+     *
+     * @param upstream The service the breaker is for
+     * @param failureThreshold The consecutive failures that open the circuit
+     * @param openMillis How long the circuit stays open before a probe
+     */
+    CircuitBreaker(Upstream upstream, int failureThreshold, long openMillis) {
+        this.upstream = upstream;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Get the breaker for the upstream service
+     *
+     * @param upstream
+     * @return
+     */
+    public static CircuitBreaker get(Upstream upstream) {
+        return BREAKERS.get(upstream);
+    }
+
+    /**
+     * Check if a call can be made
+     *
+     * @return false if the circuit is open and the call should fail fast
+     */
+    public boolean allowRequest() {
+        CircuitState previous;
+        synchronized (this) {
+            previous = state;
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.currentTimeMillis() - openedAt < openMillis) {
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    probing = true;
+                    break;
+                case HALF_OPEN:
+                default:
+                    // Only one probe at a time
+                    if (probing) {
+                        return false;
+                    }
+                    probing = true;
+            }
+        }
+
+        notifyTransition(previous, CircuitState.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Record a successful call
+     */
+    public void recordSuccess() {
+        CircuitState previous;
+        synchronized (this) {
+            previous = state;
+            failures = 0;
+            probing = false;
+            state = CircuitState.CLOSED;
+        }
+        notifyTransition(previous, CircuitState.CLOSED);
+    }
+
+    /**
+     * Record a failed call
+     *
+     * @param error The error message
+     */
+    public void recordFailure(String error) {
+        CircuitState previous;
+        CircuitState next;
+        synchronized (this) {
+            previous = state;
+            lastError = error;
+            failures++;
+            probing = false;
+            if (state == CircuitState.HALF_OPEN || failures >= failureThreshold) {
+                state = CircuitState.OPEN;
+                openedAt = System.currentTimeMillis();
+            }
+            next = state;
+        }
+        notifyTransition(previous, next);
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    public synchronized boolean isOpen() {
+        return state == CircuitState.OPEN;
+    }
+
+    private void notifyTransition(CircuitState previous, CircuitState next) {
+        if (previous == next) {
+            return;
+        }
+
+        String message;
+        switch (next) {
+            case OPEN:
+                message = String.format("%1$s circuit is OPEN after %2$d failures, calls will fail fast for %3$d seconds. Last error: %4$s",
+                        upstream, failures, TimeUnit.MILLISECONDS.toSeconds(openMillis), lastError);
+                break;
+            case HALF_OPEN:
+                message = String.format("%1$s circuit is HALF OPEN, probing for recovery", upstream);
+                break;
+            default:
+                message = String.format("%1$s circuit is CLOSED, service has recovered", upstream);
+        }
+
+        LOG.warn(message);
+        // Probes are frequent during an outage, so only tell the admins about open and close.
+        // The message is sent in the background so the caller is not held up by Slack
+        if (next != CircuitState.HALF_OPEN) {
+            NOTIFIER.execute(() -> SlackBot.messageAdmins(message));
+        }
+    }
+
+    /**
+     * Output the state of all the breakers
+     *
+     * @return
+     */
+    public static String formatOutput() {
+        StringBuilder sb = new StringBuilder("Circuit breakers:\n");
+        for (CircuitBreaker breaker : BREAKERS.values()) {
+            synchronized (breaker) {
+                sb.append("\t").append(breaker.upstream).append(": ").append(breaker.state);
+                if (breaker.failures > 0) {
+                    sb.append(" (").append(breaker.failures).append(" failures, last: ").append(breaker.lastError).append(")");
+                }
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
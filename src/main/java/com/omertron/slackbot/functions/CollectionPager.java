@@ -0,0 +1,207 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import com.omertron.slackbot.utils.MessageTemplate;
+import com.ullink.slack.simpleslackapi.SlackAttachment;
+import com.ullink.slack.simpleslackapi.SlackChannel;
+import com.ullink.slack.simpleslackapi.SlackPreparedMessage;
+import com.ullink.slack.simpleslackapi.SlackSession;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a simple collection listing a page at a time.<p>
+ * Only the pages asked for are formatted, and each page is sent as one or
+ * more messages that keep within the byte budget.
+ *
+ * @author Omertron
+ */
+public class CollectionPager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionPager.class);
+    private static final MessageTemplate TITLE_FORMAT = MessageTemplate.compile("%1$s's collection - page %2$d of %3$d");
+    private static final MessageTemplate LINE_FORMAT = MessageTemplate.compile("%1$s (%2$s) - <%3$s%4$d|%4$d>\n");
+
+    private static final String UNKNOWN_YEAR = "Unknown";
+
+    private final CompactCollection collection;
+    private final int[] rows;
+    private final int perPage;
+    private final int byteBudget;
+    private final long created = System.currentTimeMillis();
+    private int lastPage = 0;
+
+    /**
+     * Create the pager
+     *
+     * @param collection The collection
+     * @param rows The rows of the collection to list, in order
+     * @param perPage The number of items on each page
+     * @param byteBudget The maximum size of the text in each message
+     */
+    public CollectionPager(CompactCollection collection, int[] rows, int perPage, int byteBudget) {
+        this.collection = collection;
+        this.rows = rows;
+        this.perPage = Math.max(1, perPage);
+        this.byteBudget = byteBudget;
+    }
+
+    public String getUsername() {
+        return collection.getUsername();
+    }
+
+    public int getTotalItems() {
+        return rows.length;
+    }
+
+    public int getTotalPages() {
+        return (rows.length + perPage - 1) / perPage;
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    /**
+     * Has the pager been kept for longer than the maximum age
+     *
+     * @param maxAge
+     * @param unit
+     * @return
+     */
+    public boolean isExpired(long maxAge, TimeUnit unit) {
+        return System.currentTimeMillis() - created > unit.toMillis(maxAge);
+    }
+
+    /**
+     * Send the page after the last one sent
+     *
+     * @param session
+     * @param channel
+     * @return false if there are no more pages
+     */
+    public synchronized boolean sendNextPage(SlackSession session, SlackChannel channel) {
+        if (lastPage >= getTotalPages()) {
+            return false;
+        }
+        sendPage(session, channel, lastPage + 1);
+        return true;
+    }
+
+    /**
+     * Format and send a page, splitting it into several messages if it is
+     * over the byte budget
+     *
+     * @param session
+     * @param channel
+     * @param requestedPage The page number, starting at 1. Out of range pages are
+     * moved to the first or last page
+     */
+    public synchronized void sendPage(SlackSession session, SlackChannel channel, int requestedPage) {
+        int totalPages = getTotalPages();
+        int page = Math.min(Math.max(requestedPage, 1), Math.max(1, totalPages));
+        LOG.info("Sending page {} of {} for {}'s collection", page, totalPages, getUsername());
+
+        String title = TITLE_FORMAT.format(getUsername(), page, totalPages);
+        List<String> parts = formatPage(page);
+        for (int part = 0; part < parts.size(); part++) {
+            send(session, channel, part == 0 ? title : title + " (continued)", parts.get(part));
+        }
+        lastPage = page;
+    }
+
+    /**
+     * Format the lines of a page into messages that keep within the byte
+     * budget
+     *
+     * @param page The page number, starting at 1
+     * @return The text of each message, empty if the page has no items
+     */
+    List<String> formatPage(int page) {
+        int start = (page - 1) * perPage;
+        int end = Math.min(start + perPage, rows.length);
+
+        List<String> parts = new ArrayList<>();
+        StringBuilder text = new StringBuilder(Math.min(byteBudget, 8192));
+        int bytes = 0;
+
+        for (int i = start; i < end; i++) {
+            int row = rows[i];
+            int year = collection.getYear(row);
+            int mark = text.length();
+            LINE_FORMAT.appendTo(text, collection.getName(row), year == 0 ? UNKNOWN_YEAR : year, Constants.BGG_LINK_GAME, collection.getId(row));
+            int lineBytes = utf8Length(text, mark);
+
+            if (bytes + lineBytes > byteBudget && mark > 0) {
+                // Keep what we had before this line and start a new message with it
+                parts.add(text.substring(0, mark));
+                text.delete(0, mark);
+                bytes = 0;
+            }
+            bytes += lineBytes;
+        }
+
+        if (text.length() > 0) {
+            parts.add(text.toString());
+        }
+        return parts;
+    }
+
+    /**
+     * Count the UTF-8 bytes of the text from the start position
+     */
+    private static int utf8Length(CharSequence text, int start) {
+        int count = 0;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                count++;
+            } else if (c < 0x800) {
+                count += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                count += 4;
+                i++;
+            } else {
+                count += 3;
+            }
+        }
+        return count;
+    }
+
+    private void send(SlackSession session, SlackChannel channel, String title, String text) {
+        SlackAttachment sa = new SlackAttachment();
+        sa.setFallback(title);
+        sa.setTitle(title);
+        sa.setTitleLink(Constants.BGG_LINK_COLL + getUsername());
+        sa.setColor(Constants.ATTACH_COLOUR_GOOD);
+        sa.setText(text);
+
+        session.sendMessage(channel, new SlackPreparedMessage.Builder()
+                .withUnfurl(false)
+                .addAttachment(sa)
+                .build());
+    }
+}
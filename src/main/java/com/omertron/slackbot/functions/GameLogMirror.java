@@ -0,0 +1,520 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.omertron.slackbot.model.sheets.GameLogRow;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local copy of the played nights in the game log.<p>
+ * The rows are held as columns, with the names stored once in a dictionary
+ * and the attendees and winners as a bit per player. Only the rows added
+ * since the last read are fetched from the sheet, and the statistics are
+ * worked out once after each read so that the queries do no work.
+ *
+ * @author Omertron
+ */
+public class GameLogMirror {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameLogMirror.class);
+    // The first row of the game log after the headers
+    private static final int FIRST_ROW = 2;
+    // The last night is read again in case it was updated after the night
+    private static final int TAIL_OVERLAP = 1;
+    private static final int MAX_PLAYERS = Long.SIZE;
+    private static final int NONE = -1;
+
+    private final String sheetId;
+
+    // The columns, one entry per row from FIRST_ROW
+    private int size = 0;
+    private long[] epochDays = new long[64];
+    private int[] gameIds = new int[64];
+    private int[] gameNames = new int[64];
+    private int[] choosers = new int[64];
+    private long[] attendees = new long[64];
+    private long[] winners = new long[64];
+    // The row of the next game night when the log was last read
+    private int mirroredLastRow = 0;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final List<String> initials = new ArrayList<>();
+    private final Map<String, Integer> initialCodes = new HashMap<>();
+
+    private volatile Stats stats = new Stats();
+
+    public GameLogMirror(String sheetId) {
+        this.sheetId = sheetId;
+    }
+
+    /**
+     * Read any new nights from the game log
+     *
+     * @param lastRow The row of the next game night, all the rows before it
+     * have been played
+     * @return True if the log was read, false if it was already up to date or
+     * the sheet could not be read
+     */
+    public synchronized boolean refresh(int lastRow) {
+        if (lastRow == mirroredLastRow) {
+            return false;
+        }
+        return read(lastRow);
+    }
+
+    /**
+     * Read the new nights and the last night again, even if the next game
+     * night has not moved
+     *
+     * @param lastRow The row of the next game night
+     * @return True if the log was read
+     */
+    public synchronized boolean forceRefresh(int lastRow) {
+        return read(lastRow);
+    }
+
+    private boolean read(int lastRow) {
+        int endRow = lastRow - 1;
+        if (endRow < FIRST_ROW) {
+            return false;
+        }
+
+        int startRow = lastRow < mirroredLastRow ? FIRST_ROW : Math.max(FIRST_ROW, FIRST_ROW + size - TAIL_OVERLAP);
+        startRow = Math.min(startRow, endRow);
+        String range = String.format("Game Log!A%1$d:I%2$d", startRow, endRow);
+        LOG.info("Reading game log rows {} to {}", startRow, endRow);
+
+        ValueRange vr = GoogleSheets.getSheetData(sheetId, range);
+        if (vr == null) {
+            LOG.warn("Failed to read the game log, keeping the {} nights already read", size);
+            return false;
+        }
+
+        List<List<Object>> values = vr.getValues() == null ? Collections.<List<Object>>emptyList() : vr.getValues();
+        ensureCapacity(endRow - FIRST_ROW + 1);
+        for (int row = startRow; row <= endRow; row++) {
+            int offset = row - startRow;
+            setRow(row - FIRST_ROW, offset < values.size() ? values.get(offset) : Collections.emptyList());
+        }
+        size = endRow - FIRST_ROW + 1;
+        mirroredLastRow = lastRow;
+
+        stats = calculateStats();
+        LOG.info("Game log mirrored: {}", formatOutput());
+        return true;
+    }
+
+    private void setRow(int index, List<Object> row) {
+        LocalDate date = row.isEmpty() ? null : GameLogRow.parseDate(row.get(0).toString());
+        epochDays[index] = date == null ? Long.MIN_VALUE : date.toEpochDay();
+        gameNames[index] = nameCode(cell(row, 1));
+        gameIds[index] = NumberUtils.toInt(cell(row, 2), 0);
+        choosers[index] = nameCode(cell(row, 4));
+        attendees[index] = initialsMask(cell(row, 5));
+        winners[index] = initialsMask(cell(row, 6));
+    }
+
+    private static String cell(List<Object> row, int column) {
+        return column < row.size() ? StringUtils.trimToNull(row.get(column).toString()) : null;
+    }
+
+    private int nameCode(String name) {
+        if (name == null) {
+            return NONE;
+        }
+
+        Integer code = nameCodes.get(name);
+        if (code == null) {
+            code = names.size();
+            names.add(name);
+            nameCodes.put(name, code);
+        }
+        return code;
+    }
+
+    private long initialsMask(String value) {
+        long mask = 0L;
+        if (value == null) {
+            return mask;
+        }
+
+        for (String initial : StringUtils.split(value, ",")) {
+            String key = initial.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+
+            Integer code = initialCodes.get(key);
+            if (code == null) {
+                if (initials.size() == MAX_PLAYERS) {
+                    LOG.warn("Too many players in the game log, ignoring '{}'", key);
+                    continue;
+                }
+                code = initials.size();
+                initials.add(key);
+                initialCodes.put(key, code);
+            }
+            mask |= 1L << code;
+        }
+        return mask;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= epochDays.length) {
+            return;
+        }
+
+        int capacity = Math.max(required, epochDays.length * 2);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        gameIds = Arrays.copyOf(gameIds, capacity);
+        gameNames = Arrays.copyOf(gameNames, capacity);
+        choosers = Arrays.copyOf(choosers, capacity);
+        attendees = Arrays.copyOf(attendees, capacity);
+        winners = Arrays.copyOf(winners, capacity);
+    }
+
+    /**
+     * Work out the statistics from the columns
+     *
+     * @return
+     */
+    private Stats calculateStats() {
+        Stats result = new Stats();
+
+        int[] plays = new int[names.size()];
+        int[] lastPlayed = new int[names.size()];
+        int[] lastGameId = new int[names.size()];
+        int[] chosen = new int[names.size()];
+        int[] lastChosen = new int[names.size()];
+        Arrays.fill(lastChosen, NONE);
+
+        int players = initials.size();
+        int[] attended = new int[players];
+        int[] wins = new int[players];
+        int[] streak = new int[players];
+        int[] bestStreak = new int[players];
+
+        for (int i = 0; i < size; i++) {
+            if (!isGameNight(i)) {
+                continue;
+            }
+
+            result.nights++;
+            if (epochDays[i] != Long.MIN_VALUE) {
+                if (result.firstNight == null) {
+                    result.firstNight = LocalDate.ofEpochDay(epochDays[i]);
+                }
+                result.lastNight = LocalDate.ofEpochDay(epochDays[i]);
+            }
+
+            int game = gameNames[i];
+            if (game != NONE) {
+                plays[game]++;
+                lastPlayed[game] = i;
+                if (gameIds[i] > 0) {
+                    lastGameId[game] = gameIds[i];
+                }
+            }
+
+            if (choosers[i] != NONE) {
+                chosen[choosers[i]]++;
+                lastChosen[choosers[i]] = result.nights;
+            }
+
+            if (attendees[i] != 0L) {
+                for (int p = 0; p < players; p++) {
+                    long bit = 1L << p;
+                    if ((attendees[i] & bit) != 0) {
+                        attended[p]++;
+                        streak[p]++;
+                        bestStreak[p] = Math.max(bestStreak[p], streak[p]);
+                    } else {
+                        streak[p] = 0;
+                    }
+                    if ((winners[i] & bit) != 0) {
+                        wins[p]++;
+                    }
+                }
+            }
+        }
+
+        for (int game = 0; game < plays.length; game++) {
+            if (plays[game] > 0) {
+                result.games.add(new GameStat(names.get(game), lastGameId[game], plays[game], lastPlayed[game]));
+            }
+        }
+        Collections.sort(result.games, (a, b) -> a.plays != b.plays ? Integer.compare(b.plays, a.plays) : Integer.compare(b.lastRow, a.lastRow));
+
+        for (int p = 0; p < players; p++) {
+            result.players.add(new PlayerStat(initials.get(p), attended[p], wins[p], streak[p], bestStreak[p]));
+        }
+        Collections.sort(result.players, (a, b) -> Integer.compare(b.attended, a.attended));
+
+        for (int name = 0; name < chosen.length; name++) {
+            if (chosen[name] > 0) {
+                result.choosers.add(new ChooserStat(names.get(name), chosen[name], result.nights - lastChosen[name]));
+            }
+        }
+        Collections.sort(result.choosers, (a, b) -> Integer.compare(b.nightsSince, a.nightsSince));
+        return result;
+    }
+
+    /**
+     * Get how many game nights ago each game was last played
+     *
+     * @param nights The number of game nights to look back through
+     * @return The game nights ago, keyed on BGG ID
+     */
+    public synchronized Map<Integer, Integer> getRecentPlays(int nights) {
+        Map<Integer, Integer> played = new HashMap<>();
+        int nightsAgo = 0;
+        long nightDay = Long.MIN_VALUE;
+        // Work back from the latest row, counting game nights rather than rows
+        for (int i = size - 1; i >= 0; i--) {
+            if (!isGameNight(i)) {
+                continue;
+            }
+            // Rows on the same date are the same game night
+            if (nightsAgo == 0 || epochDays[i] == Long.MIN_VALUE || epochDays[i] != nightDay) {
+                if (nightsAgo == nights) {
+                    break;
+                }
+                nightsAgo++;
+                nightDay = epochDays[i];
+            }
+            if (gameIds[i] > 0 && !played.containsKey(gameIds[i])) {
+                played.put(gameIds[i], nightsAgo);
+            }
+        }
+        return played;
+    }
+
+    /**
+     * Check if the row is a game night, rather than cancelled or not filled in
+     *
+     * @param row The row index
+     * @return
+     */
+    private boolean isGameNight(int row) {
+        return attendees[row] != 0L || gameNames[row] != NONE;
+    }
+
+    /**
+     * The statistics from the last read of the game log
+     *
+     * @return
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Output the mirror statistics
+     *
+     * @return
+     */
+    public synchronized String formatOutput() {
+        return String.format("Game log: %1$d rows, %2$d game nights, %3$d names, %4$d players",
+                size, stats.nights, names.size(), initials.size());
+    }
+
+    /**
+     * The statistics for the game log
+     */
+    public static final class Stats {
+
+        private int nights = 0;
+        private LocalDate firstNight = null;
+        private LocalDate lastNight = null;
+        private final List<GameStat> games = new ArrayList<>();
+        private final List<PlayerStat> players = new ArrayList<>();
+        private final List<ChooserStat> choosers = new ArrayList<>();
+
+        private Stats() {
+        }
+
+        public int getNights() {
+            return nights;
+        }
+
+        public LocalDate getFirstNight() {
+            return firstNight;
+        }
+
+        public LocalDate getLastNight() {
+            return lastNight;
+        }
+
+        /**
+         * The games played, most played first
+         *
+         * @return
+         */
+        public List<GameStat> getGames() {
+            return Collections.unmodifiableList(games);
+        }
+
+        /**
+         * The players, most nights attended first
+         *
+         * @return
+         */
+        public List<PlayerStat> getPlayers() {
+            return Collections.unmodifiableList(players);
+        }
+
+        /**
+         * The choosers, longest since they chose first
+         *
+         * @return
+         */
+        public List<ChooserStat> getChoosers() {
+            return Collections.unmodifiableList(choosers);
+        }
+    }
+
+    /**
+     * How often a game has been played
+     */
+    public static final class GameStat {
+
+        private final String name;
+        private final int id;
+        private final int plays;
+        private final int lastRow;
+
+        private GameStat(String name, int id, int plays, int lastRow) {
+            this.name = name;
+            this.id = id;
+            this.plays = plays;
+            this.lastRow = lastRow;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The BGG ID, or 0 if it is not known
+         */
+        public int getId() {
+            return id;
+        }
+
+        public int getPlays() {
+            return plays;
+        }
+    }
+
+    /**
+     * The attendance and wins of a player
+     */
+    public static final class PlayerStat {
+
+        private final String initial;
+        private final int attended;
+        private final int wins;
+        private final int currentStreak;
+        private final int bestStreak;
+
+        private PlayerStat(String initial, int attended, int wins, int currentStreak, int bestStreak) {
+            this.initial = initial;
+            this.attended = attended;
+            this.wins = wins;
+            this.currentStreak = currentStreak;
+            this.bestStreak = bestStreak;
+        }
+
+        public String getInitial() {
+            return initial;
+        }
+
+        public int getAttended() {
+            return attended;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        /**
+         * @return The percentage of the nights attended that were won
+         */
+        public int getWinRate() {
+            return attended == 0 ? 0 : (wins * 100) / attended;
+        }
+
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+
+        public int getBestStreak() {
+            return bestStreak;
+        }
+    }
+
+    /**
+     * How often someone has chosen the game
+     */
+    public static final class ChooserStat {
+
+        private final String name;
+        private final int chosen;
+        private final int nightsSince;
+
+        private ChooserStat(String name, int chosen, int nightsSince) {
+            this.name = name;
+            this.chosen = chosen;
+            this.nightsSince = nightsSince;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getChosen() {
+            return chosen;
+        }
+
+        /**
+         * @return The number of game nights since they last chose, 0 if they
+         * chose the last one
+         */
+        public int getNightsSince() {
+            return nightsSince;
+        }
+    }
+}
@@ -26,15 +26,27 @@ import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.SheetsScopes;
+import com.google.api.services.sheets.v4.model.BatchGetValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
 import com.google.api.services.sheets.v4.model.ValueRange;
 import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.enumeration.Upstream;
+import com.omertron.slackbot.enumeration.WriteResult;
+import com.omertron.slackbot.utils.PropertiesUtil;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +70,10 @@ public class GoogleSheets {
      */
     private static Sheets sheets = null;
     private static final int MAX_RETRY = 5;
+    private static final long RETRY_DELAY_MS = 500;
+    private static final CircuitBreaker BREAKER = CircuitBreaker.get(Upstream.SHEETS);
+    private static final long WRITE_WINDOW_MS = PropertiesUtil.getLongProperty(Constants.SHEETS_WRITE_WINDOW, 250);
+    private static final ConcurrentMap<String, SheetWriteBuffer> WRITE_BUFFERS = new ConcurrentHashMap<>();
 
     private GoogleSheets() {
         throw new UnsupportedOperationException("Static class");
@@ -107,24 +123,169 @@ public class GoogleSheets {
      */
     public static boolean writeValueToCell(final String sheetId, final String cellRef, final String dataToWrite) {
         LOG.info("Writing '{}' to cell {}", dataToWrite, cellRef);
-        List<List<Object>> writeData = new ArrayList<>();
-        List<Object> dataRow = new ArrayList<>();
-        dataRow.add(dataToWrite == null ? "" : dataToWrite);
-        writeData.add(dataRow);
+        List<List<Object>> writeData = singleValue(dataToWrite);
+
+        if (!BREAKER.allowRequest()) {
+            LOG.warn("Sheets circuit is open, not writing to {}", cellRef);
+            return false;
+        }
 
         ValueRange vr = new ValueRange().setValues(writeData).setMajorDimension("ROWS");
+        String error = "Failed to write to " + cellRef;
+        boolean success = false;
         try {
             sheets.spreadsheets().values()
                     .update(sheetId, cellRef, vr)
                     .setValueInputOption("RAW")
                     .execute();
+            success = true;
             return true;
         } catch (IOException ex) {
             LOG.warn("IO Exception writing to sheet: {}", ex.getMessage(), ex);
+            error = ex.getMessage();
             return false;
+        } finally {
+            recordResult(success, error);
+        }
+    }
+
+    /**
+     * Record the result of a call with the circuit breaker.<p>
+     * Called from a finally block, so that a probe is never left open by an
+     * unexpected exception.
+     *
+     * @param success
+     * @param error The error to record if the call failed
+     */
+    private static void recordResult(boolean success, String error) {
+        if (success) {
+            BREAKER.recordSuccess();
+        } else {
+            BREAKER.recordFailure(error);
+        }
+    }
+
+    /**
+     * Queue a write to a cell.<p>
+     * Writes to the sheet over a short window are sent together in one
+     * request, with later writes to the same cell replacing earlier ones.
+     *
+     * @param sheetId The ID of the sheet to write to
+     * @param cellRef The cell to write the data to
+     * @param dataToWrite Data to write
+     * @return A future that completes with the result of the write
+     */
+    public static CompletableFuture<WriteResult> queueWrite(final String sheetId, final String cellRef, final String dataToWrite) {
+        LOG.info("Queueing '{}' for cell {}", dataToWrite, cellRef);
+        return WRITE_BUFFERS
+                .computeIfAbsent(sheetId, id -> new SheetWriteBuffer(id, GoogleSheets::writeValuesToCells, WRITE_WINDOW_MS))
+                .queue(cellRef, dataToWrite);
+    }
+
+    /**
+     * Write several cells in one request.<p>
+     * If the batch fails each cell is written on its own, so that one bad cell
+     * does not fail all the others.
+     *
+     * @param sheetId The ID of the sheet to write to
+     * @param cells The data to write, keyed on the cell reference
+     * @return The result of each write, keyed on the cell reference
+     */
+    public static Map<String, Boolean> writeValuesToCells(final String sheetId, final Map<String, String> cells) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        if (cells.size() == 1) {
+            Map.Entry<String, String> cell = cells.entrySet().iterator().next();
+            results.put(cell.getKey(), writeValueToCell(sheetId, cell.getKey(), cell.getValue()));
+            return results;
+        }
+
+        if (!BREAKER.allowRequest()) {
+            LOG.warn("Sheets circuit is open, not writing to {}", cells.keySet());
+            for (String cellRef : cells.keySet()) {
+                results.put(cellRef, Boolean.FALSE);
+            }
+            return results;
+        }
+
+        LOG.info("Writing {} cells in one batch: {}", cells.size(), cells);
+        List<ValueRange> data = new ArrayList<>(cells.size());
+        for (Map.Entry<String, String> cell : cells.entrySet()) {
+            data.add(new ValueRange()
+                    .setRange(cell.getKey())
+                    .setValues(singleValue(cell.getValue()))
+                    .setMajorDimension("ROWS"));
+        }
+
+        BatchUpdateValuesRequest request = new BatchUpdateValuesRequest()
+                .setValueInputOption("RAW")
+                .setData(data);
+        String error = "Failed to write batch to " + cells.keySet();
+        boolean success = false;
+        try {
+            BatchUpdateValuesResponse response = sheets.spreadsheets().values()
+                    .batchUpdate(sheetId, request)
+                    .execute();
+            success = true;
+
+            // The responses are in the same order as the data sent
+            List<UpdateValuesResponse> updates = response.getResponses();
+            int index = 0;
+            for (String cellRef : cells.keySet()) {
+                boolean updated = updates != null && index < updates.size() && updates.get(index).getUpdatedRange() != null;
+                results.put(cellRef, updated);
+                index++;
+            }
+            return results;
+        } catch (IOException ex) {
+            LOG.warn("IO Exception writing batch to sheet, writing cells individually: {}", ex.getMessage(), ex);
+            error = ex.getMessage();
+        } finally {
+            recordResult(success, error);
+        }
+
+        for (Map.Entry<String, String> cell : cells.entrySet()) {
+            results.put(cell.getKey(), writeValueToCell(sheetId, cell.getKey(), cell.getValue()));
+        }
+        return results;
+    }
+
+    /**
+     * Write any queued cells and stop the write buffers
+     */
+    public static void stopWriting() {
+        for (SheetWriteBuffer buffer : WRITE_BUFFERS.values()) {
+            buffer.stop();
         }
     }
 
+    /**
+     * Output the write buffer statistics
+     *
+     * @return
+     */
+    public static String formatOutput() {
+        if (WRITE_BUFFERS.isEmpty()) {
+            return "Sheet writes: none";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (SheetWriteBuffer buffer : WRITE_BUFFERS.values()) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(buffer.formatOutput());
+        }
+        return sb.toString();
+    }
+
+    private static List<List<Object>> singleValue(String value) {
+        List<List<Object>> writeData = new ArrayList<>(1);
+        List<Object> dataRow = new ArrayList<>(1);
+        dataRow.add(value == null ? "" : value);
+        writeData.add(dataRow);
+        return writeData;
+    }
+
     /**
      * Get a range from the spreadsheet
      *
@@ -134,21 +295,94 @@ public class GoogleSheets {
      */
     public static ValueRange getSheetData(final String sheetId, final String range) {
         LOG.info("Getting information from range {}", range);
-        int retryCount = 1;
-        boolean readSuccessful = false;
+        return read(range, () -> sheets.spreadsheets().values()
+                .get(sheetId, range)
+                .execute());
+    }
 
-        while (!readSuccessful && retryCount++ <= MAX_RETRY) {
-            try {
-                return sheets.spreadsheets().values()
-                        .get(sheetId, range)
-                        .execute();
-            } catch (SocketTimeoutException ex) {
-                LOG.warn("Attempt #{}: Timed out reading from sheet. {} attempts left",
-                        retryCount, MAX_RETRY - retryCount, ex);
-            } catch (IOException ex) {
-                LOG.warn("IO Exception: {}", ex.getMessage(), ex);
+    /**
+     * Get several ranges from the spreadsheet in one request
+     *
+     * @param sheetId The ID of the sheet to read
+     * @param ranges The ranges of cells to read
+     * @return The values for each range, in the same order as the ranges, or
+     * null if the sheet could not be read
+     */
+    public static List<ValueRange> batchGetSheetData(final String sheetId, final List<String> ranges) {
+        LOG.info("Getting information from ranges {}", ranges);
+        BatchGetValuesResponse response = read(ranges.toString(), () -> sheets.spreadsheets().values()
+                .batchGet(sheetId)
+                .setRanges(ranges)
+                .execute());
+
+        if (response == null || response.getValueRanges() == null || response.getValueRanges().size() != ranges.size()) {
+            return null;
+        }
+        return response.getValueRanges();
+    }
+
+    /**
+     * Make the read request, retrying if it times out
+     *
+     * @param description The range(s) being read, for the log
+     * @param request
+     * @return The response, or null if it failed
+     */
+    private static <T> T read(String description, SheetRequest<T> request) {
+        if (!BREAKER.allowRequest()) {
+            LOG.warn("Sheets circuit is open, not reading {}", description);
+            return null;
+        }
+
+        String lastError = "Failed to read " + description;
+        boolean success = false;
+        try {
+            for (int attempt = 1; attempt <= MAX_RETRY; attempt++) {
+                try {
+                    T response = request.execute();
+                    success = true;
+                    return response;
+                } catch (SocketTimeoutException ex) {
+                    LOG.warn("Attempt #{}: Timed out reading from sheet. {} attempts left",
+                            attempt, MAX_RETRY - attempt, ex);
+                    lastError = ex.getMessage();
+                } catch (IOException ex) {
+                    LOG.warn("IO Exception: {}", ex.getMessage(), ex);
+                    lastError = ex.getMessage();
+                }
+
+                if (attempt < MAX_RETRY && !sleep(RETRY_DELAY_MS * attempt)) {
+                    break;
+                }
             }
+            return null;
+        } finally {
+            recordResult(success, lastError);
+        }
+    }
+
+    /**
+     * A request to the Sheets API
+     */
+    @FunctionalInterface
+    private interface SheetRequest<T> {
+
+        T execute() throws IOException;
+    }
+
+    /**
+     * Wait before retrying
+     *
+     * @param millis
+     * @return false if interrupted
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return null;
     }
 }
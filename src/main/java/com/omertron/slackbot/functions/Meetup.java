@@ -22,6 +22,7 @@ package com.omertron.slackbot.functions;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.enumeration.Upstream;
 import com.omertron.slackbot.model.meetup.MeetupDetails;
 import com.omertron.slackbot.utils.HttpTools;
 import com.omertron.slackbot.utils.PropertiesUtil;
@@ -33,6 +34,7 @@ import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,9 +48,11 @@ public class Meetup {
 
     private static final Logger LOG = LoggerFactory.getLogger(Meetup.class);
     private static final ObjectMapper MAPPER;
-    private static final List<MeetupDetails> MEETUPS = new ArrayList<>();
+    // Replaced as a whole, as the channels are read and written on different threads
+    private static volatile List<MeetupDetails> meetups = Collections.emptyList();
     private static final String BASE_URL;
     private static final Boolean IS_GMT;
+    private static final CircuitBreaker BREAKER = CircuitBreaker.get(Upstream.MEETUP);
     private static final DateTimeFormatter DT_FORMAT = DateTimeFormatter.ofPattern("EEEE d MMMM h:mma");
 
     static {
@@ -65,48 +69,71 @@ public class Meetup {
      * Retrieve and process the MeetUps from the site.
      *
      * @param pageSize
+     * @return True if the MeetUps were read, false if the ones already read
+     * are being used
      * @throws ApiException
      */
-    public static void readMeetUp(int pageSize) throws ApiException {
-        MEETUPS.clear();
-
+    public static boolean readMeetUp(int pageSize) throws ApiException {
         if (StringUtils.isBlank(BASE_URL)) {
+            meetups = Collections.emptyList();
             throw new ApiException(ApiExceptionType.INVALID_URL, "Meetup URL is not set in the properties file! Use the property " + Constants.MEETUP_URL);
         }
 
+        // The last MeetUps read are kept if the site cannot be read
+        if (!BREAKER.allowRequest()) {
+            LOG.warn("MeetUp circuit is open, using the {} MeetUps already read", meetups.size());
+            return false;
+        }
+
+        // The result is recorded in the finally block so a failed probe cannot stay open
+        String error = "Failed to read MeetUp data";
+        boolean success = false;
         try {
             URL url = HttpTools.createUrl(BASE_URL + pageSize);
-            List<MeetupDetails> meetups = MAPPER.readValue(url, new TypeReference<List<MeetupDetails>>() {
+            List<MeetupDetails> read = MAPPER.readValue(url, new TypeReference<List<MeetupDetails>>() {
             });
-            MEETUPS.addAll(meetups);
+            success = true;
+            meetups = Collections.unmodifiableList(new ArrayList<>(read));
         } catch (IOException ex) {
             LOG.warn("Failed to read MeetUp data: {}", ex.getMessage(), ex);
-            return;
+            error = ex.getMessage();
+            return false;
         } catch (ApiException ex) {
             LOG.warn("Failed to convert URL: {}", ex.getMessage(), ex);
-            return;
+            error = ex.getMessage();
+            return false;
+        } finally {
+            if (success) {
+                BREAKER.recordSuccess();
+            } else {
+                BREAKER.recordFailure(error);
+            }
         }
 
-        LOG.info("Processed {} MeetUp events", MEETUPS.size());
+        LOG.info("Processed {} MeetUp events", meetups.size());
+        return true;
     }
 
     /**
-     * Format the MeetUp list into a list of Slack Attachments
+     * Format the MeetUp list into a list of Slack Attachments.<p>
+     * There may be fewer MeetUps than requested if the last read was smaller.
      *
      * @param quantity
      * @param detailed
      * @return
      */
     public static List<SlackAttachment> getMeetupsQty(int quantity, boolean detailed) {
+        List<MeetupDetails> current = meetups;
         List<SlackAttachment> attachments = new ArrayList<>();
-        LOG.info("Processing {} of the {} meetups read.", Math.max(1, quantity), MEETUPS.size());
-        for (int loop = 0; loop < Math.max(1, quantity); loop++) {
-            MeetupDetails m = MEETUPS.get(loop);
+        int count = Math.min(Math.max(1, quantity), current.size());
+        LOG.info("Processing {} of the {} meetups read.", count, current.size());
+        for (int loop = 0; loop < count; loop++) {
+            MeetupDetails m = current.get(loop);
             LOG.info("\t{}: {}", loop + 1, m.getName());
             attachments.add(makeSlackAttachment(m, detailed));
         }
 
-        LOG.info("Finished processing {} meetups", Math.max(1, quantity));
+        LOG.info("Finished processing {} meetups", count);
         return attachments;
     }
 
@@ -122,7 +149,7 @@ public class Meetup {
         Map<LocalDateTime, SlackAttachment> results = new HashMap<>();
 
         Period diff;
-        for (MeetupDetails md : MEETUPS) {
+        for (MeetupDetails md : meetups) {
             // Correct for BST
             LocalDateTime meetTime = md.getMeetupTime().plusHours(1);
 
@@ -0,0 +1,281 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import com.omertron.slackbot.model.sheets.PlayerInfo;
+import com.omertron.slackbot.utils.TextUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.similarity.FuzzyScore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the player from the sheet that a name refers to.<p>
+ * The initials, names and usernames of the players are indexed when the
+ * player table is read, so most names are found with a single lookup. Other
+ * names are only fuzzy matched against the players that share a trigram with
+ * them, and the result is remembered until the player table changes.
+ *
+ * @author Omertron
+ */
+public class PlayerResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlayerResolver.class);
+    private static final FuzzyScore SCORE = new FuzzyScore(Locale.ENGLISH);
+    // The lowest fuzzy score that counts as a match
+    private static final int MIN_SCORE = 5;
+    // The player used when no-one matches
+    private static final String OTHER = "O";
+    private static final int MAX_MEMO = 500;
+
+    private volatile Index index = new Index(new ArrayList<>());
+    // Slack user ID to player initial, kept when the player table changes
+    private final Map<String, String> slackUsers = new ConcurrentHashMap<>();
+
+    /**
+     * Replace the players that names are resolved to
+     *
+     * @param players
+     */
+    public void setPlayers(Collection<PlayerInfo> players) {
+        index = new Index(new ArrayList<>(players));
+        LOG.info("Indexed {} players with {} keys", players.size(), index.keys.size());
+    }
+
+    /**
+     * Find the player that the name refers to
+     *
+     * @param name The initial, name or username of the player
+     * @return The closest match, or the "Other" player if there is no match
+     */
+    public PlayerInfo resolve(String name) {
+        Index current = index;
+        PlayerInfo player = find(current, name);
+        return player == null ? current.other() : player;
+    }
+
+    /**
+     * Find the player that the name refers to, without falling back to the
+     * "Other" player
+     *
+     * @param name The initial, name or username of the player
+     * @return The closest match, or null if there is no match
+     */
+    public PlayerInfo find(String name) {
+        return find(index, name);
+    }
+
+    private static PlayerInfo find(Index current, String name) {
+        String search = StringUtils.trimToEmpty(name);
+
+        PlayerInfo player = current.memo.get(search);
+        if (player == null) {
+            player = current.find(search);
+            if (player != null) {
+                if (current.memo.size() >= MAX_MEMO) {
+                    current.memo.clear();
+                }
+                current.memo.put(search, player);
+            }
+        }
+        return player;
+    }
+
+    /**
+     * Find the player for a Slack user.<p>
+     * The first time a user is seen their real name is resolved. If it is an
+     * exact match for a player, the player is then found from their user ID.
+     * A fuzzy match is not remembered, so a wrong guess is not kept.
+     *
+     * @param userId The Slack user ID
+     * @param realName The real name from the user's Slack profile
+     * @return The player, or the "Other" player if there is no match
+     */
+    public PlayerInfo resolveUser(String userId, String realName) {
+        Index current = index;
+        String initial = slackUsers.get(userId);
+        if (initial != null) {
+            PlayerInfo player = current.byInitial.get(initial);
+            if (player != null) {
+                return player;
+            }
+        }
+
+        // Try the first name, then the whole name
+        String[] names = StringUtils.split(StringUtils.trimToEmpty(realName), " ");
+        PlayerInfo player = names.length == 0 ? null : current.findExact(names[0]);
+        if (player == null && names.length > 1) {
+            player = current.findExact(realName);
+        }
+
+        if (player != null) {
+            slackUsers.put(userId, player.getInitial().toUpperCase(Locale.ENGLISH));
+            LOG.info("Slack user {} is player '{}'", userId, player.getName());
+            return player;
+        }
+
+        player = names.length == 0 ? null : current.find(names[0]);
+        if (player == null && names.length > 1) {
+            player = current.find(realName);
+        }
+        return player == null ? current.other() : player;
+    }
+
+    /**
+     * The lookups for one version of the player table
+     */
+    private static final class Index {
+
+        private final List<PlayerInfo> players;
+        private final Map<String, PlayerInfo> byInitial = new HashMap<>();
+        // Normalised names and usernames, null where more than one player has the key
+        private final Map<String, PlayerInfo> keys = new HashMap<>();
+        private final Map<String, int[]> postings = new HashMap<>();
+        private final Map<String, PlayerInfo> memo = new ConcurrentHashMap<>();
+
+        Index(List<PlayerInfo> players) {
+            this.players = players;
+
+            Map<String, List<Integer>> grams = new HashMap<>();
+            for (int i = 0; i < players.size(); i++) {
+                PlayerInfo player = players.get(i);
+                byInitial.put(player.getInitial().toUpperCase(Locale.ENGLISH), player);
+
+                String name = TextUtil.normalise(player.getName());
+                addKey(name, player);
+                for (String part : StringUtils.split(name, ' ')) {
+                    addKey(part, player);
+                }
+                addKey(TextUtil.normalise(player.getBggUsername()), player);
+                addKey(TextUtil.normalise(player.getSlackUsername()), player);
+
+                for (String gram : trigrams(name)) {
+                    List<Integer> list = grams.get(gram);
+                    if (list == null) {
+                        list = new ArrayList<>(2);
+                        grams.put(gram, list);
+                    }
+                    list.add(i);
+                }
+            }
+
+            for (Map.Entry<String, List<Integer>> entry : grams.entrySet()) {
+                postings.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+
+        private void addKey(String key, PlayerInfo player) {
+            if (StringUtils.isBlank(key)) {
+                return;
+            }
+
+            if (keys.containsKey(key) && keys.get(key) != player) {
+                // Shared by two players, so it can't be used to pick one
+                keys.put(key, null);
+            } else {
+                keys.put(key, player);
+            }
+        }
+
+        /**
+         * Find the player for the search
+         *
+         * @param search
+         * @return The player, or null if there is no match
+         */
+        PlayerInfo find(String search) {
+            PlayerInfo player = findExact(search);
+            if (player != null) {
+                return player;
+            }
+            String normalised = TextUtil.normalise(search);
+
+            // Only score the players that share part of the name
+            Set<Integer> candidates = new LinkedHashSet<>();
+            for (String gram : trigrams(normalised)) {
+                int[] list = postings.get(gram);
+                if (list != null) {
+                    for (int i : list) {
+                        candidates.add(i);
+                    }
+                }
+            }
+
+            int bestScore = 0;
+            for (int i : candidates) {
+                int score = SCORE.fuzzyScore(search, players.get(i).getName());
+                if (score > bestScore) {
+                    bestScore = score;
+                    player = players.get(i);
+                }
+            }
+
+            if (bestScore < MIN_SCORE) {
+                LOG.debug("No match found for '{}' (best score was {})", search, bestScore);
+                return null;
+            }
+            LOG.debug("Matched '{}' to '{}' with score of {}", search, player.getName(), bestScore);
+            return player;
+        }
+
+        /**
+         * Find the player whose initial, name or username is the search
+         *
+         * @param search
+         * @return The player, or null if there is no exact match
+         */
+        PlayerInfo findExact(String search) {
+            PlayerInfo player = byInitial.get(search.toUpperCase(Locale.ENGLISH));
+            if (player != null) {
+                return player;
+            }
+            return keys.get(TextUtil.normalise(search));
+        }
+
+        PlayerInfo other() {
+            return byInitial.get(OTHER);
+        }
+
+        /**
+         * The distinct trigrams of the name, padded so short names have some
+         */
+        private static Set<String> trigrams(String normalised) {
+            Set<String> grams = new LinkedHashSet<>();
+            if (normalised.isEmpty()) {
+                return grams;
+            }
+
+            String padded = " " + normalised + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+            return grams;
+        }
+    }
+}
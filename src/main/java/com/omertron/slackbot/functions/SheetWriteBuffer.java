@@ -0,0 +1,205 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import com.omertron.slackbot.enumeration.WriteResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the cell writes for a sheet for a short window and sends them to the
+ * writer as one batch.<p>
+ * A later write to the same cell replaces the earlier value, and the earlier
+ * caller is told that its write was superseded.
+ *
+ * @author Omertron
+ */
+public class SheetWriteBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SheetWriteBuffer.class);
+    private static final long STOP_WAIT_SECONDS = 10;
+
+    private final String sheetId;
+    private final BatchWriter writer;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sheets-write");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong superseded = new AtomicLong(0);
+
+    /**
+     * Writes a batch of cells
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+
+        /**
+         * Write the values to the cells
+         *
+         * @param sheetId The sheet to write to
+         * @param cells The values to write, keyed on the cell reference
+         * @return The result for each cell, keyed on the cell reference
+         */
+        Map<String, Boolean> write(String sheetId, Map<String, String> cells);
+    }
+
+    public SheetWriteBuffer(String sheetId, BatchWriter writer, long windowMillis) {
+        this.sheetId = sheetId;
+        this.writer = writer;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Queue a write to a cell, to be sent with the next batch
+     *
+     * @param cellRef The cell to write to
+     * @param value The value to write
+     * @return A future that completes with the result of the write
+     */
+    public CompletableFuture<WriteResult> queue(String cellRef, String value) {
+        queued.incrementAndGet();
+        CompletableFuture<WriteResult> future = new CompletableFuture<>();
+        List<CompletableFuture<WriteResult>> replaced;
+        synchronized (this) {
+            if (scheduler.isShutdown()) {
+                LOG.warn("Sheet write buffer is stopped, not writing '{}' to cell {}", value, cellRef);
+                failed.incrementAndGet();
+                return CompletableFuture.completedFuture(WriteResult.FAILED);
+            }
+
+            if (pending.isEmpty()) {
+                // First write in this window
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+
+            PendingWrite write = pending.get(cellRef);
+            if (write == null) {
+                write = new PendingWrite();
+                pending.put(cellRef, write);
+                replaced = Collections.emptyList();
+            } else {
+                LOG.debug("Replacing pending write to {} of '{}' with '{}'", cellRef, write.value, value);
+                replaced = new ArrayList<>(write.futures);
+                write.futures.clear();
+            }
+            write.value = value == null ? "" : value;
+            write.futures.add(future);
+        }
+
+        // Completed outside the lock, so the earlier callers' actions don't hold up the buffer
+        superseded.addAndGet(replaced.size());
+        replaced.forEach(f -> f.complete(WriteResult.SUPERSEDED));
+        return future;
+    }
+
+    /**
+     * Send the current batch to the writer and complete the futures
+     */
+    public void flush() {
+        Map<String, PendingWrite> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> cells = new LinkedHashMap<>();
+        for (Map.Entry<String, PendingWrite> entry : batch.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().value);
+        }
+
+        batches.incrementAndGet();
+        LOG.debug("Writing batch of {} cells to sheet", cells.size());
+
+        Map<String, Boolean> results;
+        try {
+            results = writer.write(sheetId, cells);
+        } catch (RuntimeException ex) {
+            LOG.warn("Failed to write batch of {} cells: {}", cells.size(), ex.getMessage());
+            results = null;
+        }
+
+        for (Map.Entry<String, PendingWrite> entry : batch.entrySet()) {
+            boolean success = results != null && Boolean.TRUE.equals(results.get(entry.getKey()));
+            if (success) {
+                written.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                LOG.warn("Failed to write '{}' to cell {}", entry.getValue().value, entry.getKey());
+            }
+            WriteResult result = success ? WriteResult.WRITTEN : WriteResult.FAILED;
+            entry.getValue().futures.forEach(f -> f.complete(result));
+        }
+    }
+
+    /**
+     * Write anything pending and stop the buffer, waiting for any write that
+     * is in progress
+     */
+    public void stop() {
+        flush();
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(STOP_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("Sheet writes did not finish within {} seconds", STOP_WAIT_SECONDS);
+            }
+        } catch (InterruptedException ex) {
+            LOG.warn("Interrupted waiting for the sheet writes to finish");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Output the write statistics
+     *
+     * @return
+     */
+    public String formatOutput() {
+        return String.format("Sheet writes: %1$d batches, %2$d queued, %3$d cells written, %4$d failed, %5$d superseded",
+                batches.get(), queued.get(), written.get(), failed.get(), superseded.get());
+    }
+
+    private static class PendingWrite {
+
+        private String value;
+        private final List<CompletableFuture<WriteResult>> futures = new ArrayList<>(1);
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.BggApi;
+import com.omertron.bgg.BggException;
+import com.omertron.bgg.enums.HotItemType;
+import com.omertron.bgg.enums.IncludeExclude;
+import com.omertron.bgg.model.BoardGameExtended;
+import com.omertron.bgg.model.CollectionItemWrapper;
+import com.omertron.bgg.model.HotListItem;
+import com.omertron.bgg.model.SearchWrapper;
+import com.omertron.bgg.model.Thing;
+import com.omertron.bgg.model.UserInfo;
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import com.omertron.slackbot.enumeration.Upstream;
+import com.omertron.slackbot.functions.CircuitBreaker;
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import com.omertron.slackbot.utils.PropertiesUtil;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.api.common.exception.ApiExceptionType;
+
+/**
+ * Front end for the BGG API calls made by the bot.<p>
+ * Identical calls that are made at the same time are only sent to BGG once,
+ * and all calls are spaced out to keep within the BGG rate limit.
+ * Game details, searches and user information are cached for a time and
+ * saved to disk so that they survive a restart. The hot lists are kept as
+ * snapshots that are refreshed in the background.
+ *
+ * @author Omertron
+ */
+public class BggGateway {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BggGateway.class);
+    private final BggApi bgg;
+    private final RequestScheduler scheduler;
+    private final CircuitBreaker breaker = CircuitBreaker.get(Upstream.BGG);
+    private final SingleFlight<SearchWrapper> searchFlight = new SingleFlight<>("Search");
+    private final SingleFlight<List<BoardGameExtended>> gameFlight = new SingleFlight<>("Game");
+    private final SingleFlight<UserInfo> userFlight = new SingleFlight<>("User");
+    private final SingleFlight<CollectionItemWrapper> collectionFlight = new SingleFlight<>("Collection");
+    private final SingleFlight<List<HotListItem>> hotFlight = new SingleFlight<>("Hot");
+
+    private final TtlCache<SearchWrapper> searchCache = new TtlCache<>("Search",
+            PropertiesUtil.getIntProperty(Constants.CACHE_SEARCH_SIZE, 200),
+            PropertiesUtil.getIntProperty(Constants.CACHE_SEARCH_TTL, 10), TimeUnit.MINUTES);
+    private final TtlCache<List<BoardGameExtended>> gameCache = new TtlCache<>("Game",
+            PropertiesUtil.getIntProperty(Constants.CACHE_GAME_SIZE, 500),
+            PropertiesUtil.getIntProperty(Constants.CACHE_GAME_TTL, 360), TimeUnit.MINUTES);
+    private final TtlCache<UserInfo> userCache = new TtlCache<>("User",
+            PropertiesUtil.getIntProperty(Constants.CACHE_USER_SIZE, 100),
+            PropertiesUtil.getIntProperty(Constants.CACHE_USER_TTL, 60), TimeUnit.MINUTES);
+    // Collections are only held in memory, in their compact form
+    private final TtlCache<CompactCollection> collectionCache = new TtlCache<>("Collection",
+            PropertiesUtil.getIntProperty(Constants.CACHE_COLLECTION_SIZE, 50),
+            PropertiesUtil.getIntProperty(Constants.CACHE_COLLECTION_TTL, 30), TimeUnit.MINUTES);
+    private final CollectionMirror mirror = new CollectionMirror();
+    private final GameNameIndex nameIndex = new GameNameIndex();
+    private final GameFacetIndex facetIndex = new GameFacetIndex();
+    private volatile boolean indexesSeeded = false;
+    private final List<TtlCache<?>> caches = Arrays.asList(searchCache, gameCache, userCache, collectionCache);
+    private final HotListCache hotCache;
+    private final CollectionFetcher collectionFetcher;
+
+    public BggGateway() {
+        this(new BggApi());
+    }
+
+    public BggGateway(BggApi bgg) {
+        this.bgg = bgg;
+        this.scheduler = new RequestScheduler(PropertiesUtil.getFloatProperty(Constants.BGG_REQUESTS_PER_SECOND, 2.0f));
+        this.hotCache = new HotListCache(itemType -> remote(() -> bgg.getHotItems(itemType)).call(),
+                hotFlight, PropertiesUtil.getIntProperty(Constants.CACHE_HOT_TTL, 15), TimeUnit.MINUTES);
+        this.collectionFetcher = new CollectionFetcher(PropertiesUtil.getIntProperty(Constants.COLLECTION_ATTEMPTS, 6),
+                TimeUnit.SECONDS.toMillis(2), TimeUnit.SECONDS.toMillis(30));
+
+        if (PropertiesUtil.getBooleanProperty(Constants.CACHE_DISK_ENABLE, true)) {
+            File directory = new File(PropertiesUtil.getProperty(Constants.CACHE_DIRECTORY, Constants.FILENAME_BASE + "cache"));
+            // The disk budget is shared between the persisted caches
+            long budget = PropertiesUtil.getLongProperty(Constants.CACHE_DISK_BUDGET, 20480) * 1024 / 3;
+            LOG.info("BGG caches will be saved to '{}' with a budget of {}KB each", directory, budget / 1024);
+
+            searchCache.setCacheFile(new CacheFile<>(new File(directory, "search.json"), CacheFile.type(SearchWrapper.class), budget));
+            gameCache.setCacheFile(new CacheFile<>(new File(directory, "game.json"), CacheFile.listType(BoardGameExtended.class), budget));
+            userCache.setCacheFile(new CacheFile<>(new File(directory, "user.json"), CacheFile.type(UserInfo.class), budget));
+
+            // Load at startup so that no lookup waits on reading the files
+            for (TtlCache<?> cache : caches) {
+                int count = cache.load();
+                if (count > 0) {
+                    LOG.info("Loaded {} entries into the {} cache", count, cache.getName());
+                }
+            }
+        }
+    }
+
+    public SearchWrapper searchBoardGame(String query, boolean exact, boolean includeExpansions) throws BggException {
+        String key = normalise(query) + "|" + exact + "|" + includeExpansions;
+        SearchWrapper result = cached(searchCache, searchFlight, key, remote(() -> bgg.searchBoardGame(query, exact, includeExpansions)));
+        indexNames(result);
+        return result;
+    }
+
+    public List<BoardGameExtended> getBoardGameInfo(int id) throws BggException {
+        List<BoardGameExtended> result = cached(gameCache, gameFlight, Integer.toString(id), remote(() -> bgg.getBoardGameInfo(id)));
+        indexNames(result);
+        return result;
+    }
+
+    /**
+     * Find the ID of the game with this name from the games already seen
+     *
+     * @param name
+     * @return The BGG ID, or 0 if the name is not known
+     */
+    public int findGameId(String name) {
+        return getNameIndex().findExact(name);
+    }
+
+    /**
+     * Find the games seen with names that start with, or are similar to, the
+     * name
+     *
+     * @param name
+     * @param maxResults
+     * @return The game IDs and names, best matches first
+     */
+    public Map<Integer, String> findSimilarGames(String name, int maxResults) {
+        GameNameIndex index = getNameIndex();
+        Map<Integer, String> found = index.findPrefix(name, maxResults);
+        for (Map.Entry<Integer, String> game : index.findSimilar(name, maxResults).entrySet()) {
+            if (found.size() == maxResults) {
+                break;
+            }
+            found.putIfAbsent(game.getKey(), game.getValue());
+        }
+        return found;
+    }
+
+    /**
+     * Search the details of the games that have been looked up, without
+     * going to BGG
+     *
+     * @param query The "field:value" terms, see {@link GameFacetIndex}
+     * @return The game IDs and names, sorted by name
+     * @throws IllegalArgumentException If the query cannot be understood
+     */
+    public Map<Integer, String> searchGameDetails(String query) {
+        seedIndexes();
+        return facetIndex.search(query);
+    }
+
+    private GameNameIndex getNameIndex() {
+        seedIndexes();
+        return nameIndex;
+    }
+
+    /**
+     * Add the games from the persisted caches to the indexes the first time
+     * they are used
+     */
+    private void seedIndexes() {
+        if (!indexesSeeded) {
+            synchronized (nameIndex) {
+                if (!indexesSeeded) {
+                    searchCache.values().forEach(this::indexNames);
+                    gameCache.values().forEach(this::indexNames);
+                    // The first lookup is waiting for the seeded names
+                    nameIndex.rebuild();
+                    indexesSeeded = true;
+                    LOG.info("Game indexes seeded with {} names and {} games", nameIndex.size(), facetIndex.size());
+                }
+            }
+        }
+    }
+
+    private void indexNames(SearchWrapper wrapper) {
+        if (wrapper != null && wrapper.getItems() != null) {
+            for (Thing item : wrapper.getItems()) {
+                nameIndex.add(item.getId(), item.getName());
+            }
+        }
+    }
+
+    private void indexNames(List<BoardGameExtended> games) {
+        if (games != null) {
+            for (BoardGameExtended game : games) {
+                nameIndex.add(game.getId(), game.getName());
+                facetIndex.add(game);
+            }
+        }
+    }
+
+    /**
+     * Get the information for several games.<p>
+     * Each game is taken from the cache if possible and looked up on its own
+     * otherwise. The lookups are not batched into one thing call: the client
+     * call used here, getBoardGameInfo(int), takes a single ID, and sending a
+     * multi-ID request would mean calling and parsing the BGG XML outside the
+     * client.
+     *
+     * @param ids
+     * @return The games that were found, keyed on ID in the order requested
+     */
+    public Map<Integer, BoardGameExtended> getBoardGames(Collection<Integer> ids) {
+        Map<Integer, BoardGameExtended> results = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            try {
+                List<BoardGameExtended> games = getBoardGameInfo(id);
+                if (games != null && !games.isEmpty()) {
+                    results.put(id, games.get(0));
+                }
+            } catch (BggException ex) {
+                LOG.warn("Failed to get game ID {} from BGG: {}", id, ex.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the information for several games, looking up the games that are
+     * not cached at the same time.<p>
+     * The calls are still spaced out by the rate limit, but each one is sent
+     * as soon as its turn comes rather than after the previous one returns.
+     *
+     * @param ids
+     * @param executor The executor to make the BGG calls on
+     * @return A future with the games that were found, keyed on ID in the
+     * order requested
+     */
+    public CompletableFuture<Map<Integer, BoardGameExtended>> getBoardGames(Collection<Integer> ids, Executor executor) {
+        Map<Integer, BoardGameExtended> cached = getCachedBoardGames(ids);
+        RequestPriority priority = RequestScheduler.getPriority();
+        Map<Integer, CompletableFuture<Map<Integer, BoardGameExtended>>> lookups = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            if (!cached.containsKey(id)) {
+                lookups.put(id, CompletableFuture.supplyAsync(() -> {
+                    Map<Integer, BoardGameExtended> found = new LinkedHashMap<>();
+                    RequestScheduler.runAs(priority, () -> found.putAll(getBoardGames(Collections.singletonList(id))));
+                    return found;
+                }, executor));
+            }
+        }
+
+        return CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture<?>[lookups.size()])).thenApply(ignored -> {
+            Map<Integer, BoardGameExtended> results = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                BoardGameExtended game = cached.get(id);
+                if (game == null && lookups.containsKey(id)) {
+                    game = lookups.get(id).join().get(id);
+                }
+                if (game != null) {
+                    results.put(id, game);
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Get the information for the games that are already cached, without
+     * going to BGG
+     *
+     * @param ids
+     * @return The cached games, keyed on ID in the order requested
+     */
+    public Map<Integer, BoardGameExtended> getCachedBoardGames(Collection<Integer> ids) {
+        Map<Integer, BoardGameExtended> results = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            List<BoardGameExtended> games = gameCache.peek(Integer.toString(id));
+            if (games != null && !games.isEmpty()) {
+                results.put(id, games.get(0));
+            }
+        }
+        return results;
+    }
+
+    public UserInfo getUserInfo(String username) throws BggException {
+        return cached(userCache, userFlight, normalise(username), remote(() -> bgg.getUserInfo(username)));
+    }
+
+    public CollectionItemWrapper getCollectionInfo(String username, String ids, List<IncludeExclude> includes, List<IncludeExclude> excludes, boolean expansions) throws BggException {
+        String key = collectionKey(username, ids, includes, excludes, expansions);
+        return collectionFlight.execute(key, remote(() -> bgg.getCollectionInfo(username, ids, includes, excludes, expansions)));
+    }
+
+    /**
+     * Get the collection in the background, retrying while BGG prepares it.
+     *
+     * @param username
+     * @param ids
+     * @param includes
+     * @param excludes
+     * @param expansions
+     * @return A future that completes with the collection, or with the
+     * BggException if it could not be retrieved
+     */
+    public CompletableFuture<CollectionItemWrapper> getCollectionAsync(String username, String ids, List<IncludeExclude> includes, List<IncludeExclude> excludes, boolean expansions) {
+        String key = collectionKey(username, ids, includes, excludes, expansions);
+        return collectionFetcher.fetch(key, remote(() -> bgg.getCollectionInfo(username, ids, includes, excludes, expansions), false));
+    }
+
+    /**
+     * Get the whole collection for the user in its compact form.<p>
+     * The collection is taken from the mirror if it is a group member's,
+     * otherwise it is cached, so queries against it do not need to go back
+     * to BGG.
+     *
+     * @param username
+     * @return A future that completes with the collection, or with the
+     * BggException if it could not be retrieved
+     */
+    public CompletableFuture<CompactCollection> getCompactCollection(String username) {
+        String key = normalise(username);
+        CompactCollection cached = mirror.get(key);
+        if (cached == null) {
+            cached = collectionCache.get(key);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return fetchCompactCollection(username, key)
+                .handle((collection, ex) -> {
+                    if (ex == null) {
+                        return collection;
+                    }
+
+                    // Serve the expired collection if there is one
+                    CompactCollection stale = collectionCache.getStale(key);
+                    if (stale == null) {
+                        throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                    }
+                    LOG.info("Failed to get collection for '{}', using expired cache value: {}", username, ex.getMessage());
+                    return stale;
+                });
+    }
+
+    /**
+     * Fetch the user's collection from BGG and update the mirror with it
+     *
+     * @param username
+     * @return A future that completes with the games added since the last
+     * sync, or with the BggException if it could not be retrieved
+     */
+    public CompletableFuture<Map<Integer, String>> syncCollection(String username) {
+        String key = normalise(username);
+        return fetchCompactCollection(username, key).thenApply(collection -> mirror.update(key, collection));
+    }
+
+    /**
+     * Remove the mirrored collections of any users that are not in the list
+     *
+     * @param usernames The users that are still mirrored
+     * @return The number of collections removed
+     */
+    public int retainMirrors(Collection<String> usernames) {
+        Set<String> keys = new HashSet<>();
+        for (String username : usernames) {
+            keys.add(normalise(username));
+        }
+        return mirror.retain(keys);
+    }
+
+    private CompletableFuture<CompactCollection> fetchCompactCollection(String username, String key) {
+        List<IncludeExclude> includes = Collections.singletonList(IncludeExclude.STATS);
+        return getCollectionAsync(username, null, includes, Collections.<IncludeExclude>emptyList(), false)
+                .thenApply(wrapper -> {
+                    CompactCollection collection = CompactCollection.from(username, wrapper);
+                    collectionCache.put(key, collection);
+                    for (int row = 0; row < collection.size(); row++) {
+                        nameIndex.add(collection.getId(row), collection.getName(row));
+                    }
+                    return collection;
+                });
+    }
+
+    private static String collectionKey(String username, String ids, List<IncludeExclude> includes, List<IncludeExclude> excludes, boolean expansions) {
+        return normalise(username) + "|" + normaliseIds(ids) + "|" + includes + "|" + excludes + "|" + expansions;
+    }
+
+    public List<HotListItem> getHotItems(HotItemType itemType) throws BggException {
+        return getHotList(itemType).getItems();
+    }
+
+    /**
+     * Get the latest snapshot of the hot list
+     *
+     * @param itemType
+     * @return
+     * @throws BggException
+     */
+    public HotListSnapshot getHotList(HotItemType itemType) throws BggException {
+        HotListSnapshot snapshot = hotCache.get(itemType);
+        for (HotListItem item : snapshot.getItems()) {
+            nameIndex.add(item.getId(), item.getName());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Is the snapshot past its soft TTL
+     *
+     * @param snapshot
+     * @return
+     */
+    public boolean isStale(HotListSnapshot snapshot) {
+        return hotCache.isStale(snapshot);
+    }
+
+    /**
+     * Refresh all the hot list snapshots
+     */
+    public void refreshHotLists() {
+        hotCache.refreshAll();
+    }
+
+    /**
+     * Get the value from the cache, or make the call and cache the result
+     */
+    private static <T> T cached(TtlCache<T> cache, SingleFlight<T> flight, String key, BggCall<T> call) throws BggException {
+        T value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        try {
+            return flight.execute(key, () -> {
+                T result = call.call();
+                cache.put(key, result);
+                return result;
+            });
+        } catch (BggException ex) {
+            // Serve the expired value if there is one
+            value = cache.getStale(key);
+            if (value == null) {
+                throw ex;
+            }
+            LOG.info("BGG call failed for {} '{}', using expired cache value: {}", cache.getName(), key, ex.getMessage());
+            return value;
+        }
+    }
+
+    private <T> BggCall<T> remote(BggCall<T> call) {
+        return remote(call, true);
+    }
+
+    /**
+     * Wrap the call to BGG with the circuit breaker and the rate limit
+     *
+     * @param call The call to BGG
+     * @param countQueued Should a queued response count towards opening the
+     * circuit. Collection requests fail while BGG queues them, so are not
+     * counted
+     */
+    private <T> BggCall<T> remote(BggCall<T> call, boolean countQueued) {
+        BggCall<T> throttled = scheduler.throttle(call);
+        return () -> {
+            if (!breaker.allowRequest()) {
+                throw new BggException(ApiExceptionType.CONNECTION_ERROR, "BGG is not responding at the moment, please try again later");
+            }
+
+            try {
+                T result = throttled.call();
+                breaker.recordSuccess();
+                return result;
+            } catch (BggException ex) {
+                if (ex.getExceptionType() == ApiExceptionType.ID_NOT_FOUND
+                        || (!countQueued && CollectionFetcher.isQueued(ex))) {
+                    // BGG responded, so it is up
+                    breaker.recordSuccess();
+                } else {
+                    breaker.recordFailure(ex.getMessage());
+                }
+                throw ex;
+            } catch (RuntimeException ex) {
+                breaker.recordFailure(ex.getMessage());
+                throw ex;
+            }
+        };
+    }
+
+    /**
+     * Output the state of the caches
+     *
+     * @return
+     */
+    public String formatCacheOutput() {
+        StringBuilder sb = new StringBuilder("BGG caches:\n");
+        for (TtlCache<?> cache : caches) {
+            sb.append("\t").append(cache.formatOutput()).append("\n");
+        }
+        sb.append("\t").append(hotCache.formatOutput()).append("\n");
+        sb.append("\tCompact collections: ").append(collectionCache.size()).append(", ")
+                .append(CompactCollection.getDictionarySize()).append(" shared names\n");
+        sb.append("\t").append(mirror.formatOutput()).append("\n");
+        sb.append("\tGame indexes: ").append(nameIndex.size()).append(" names, ").append(facetIndex.size()).append(" games\n");
+        return sb.toString();
+    }
+
+    /**
+     * Flush the caches
+     *
+     * @param name The name of the cache to flush, or null for all of them
+     * @return The number of entries removed
+     */
+    public int flushCache(String name) {
+        int count = 0;
+        for (TtlCache<?> cache : caches) {
+            if (name == null || cache.getName().equalsIgnoreCase(name)) {
+                count += cache.flush();
+            }
+        }
+        if (name == null || "hot".equalsIgnoreCase(name)) {
+            count += hotCache.flush();
+        }
+        return count;
+    }
+
+    /**
+     * Output the number of calls made and shared for each type
+     *
+     * @return
+     */
+    public String formatOutput() {
+        StringBuilder sb = new StringBuilder("BGG requests (made/shared):\n");
+        for (SingleFlight<?> flight : Arrays.asList(searchFlight, gameFlight, userFlight, collectionFlight, hotFlight)) {
+            sb.append("\t").append(flight.getName()).append(": ")
+                    .append(flight.getCalls()).append("/").append(flight.getShared()).append("\n");
+        }
+        sb.append("\tCollections being fetched: ").append(collectionFetcher.getInFlight()).append("\n");
+        sb.append(scheduler.formatOutput());
+        return sb.toString();
+    }
+
+    /**
+     * Save the caches to disk, removing any expired entries
+     */
+    public void saveCaches() {
+        long size = 0;
+        for (TtlCache<?> cache : caches) {
+            size += cache.save();
+        }
+        LOG.info("Saved BGG caches, {}KB on disk", size / 1024);
+    }
+
+    private static String normalise(String value) {
+        return StringUtils.normalizeSpace(StringUtils.trimToEmpty(value)).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Sort the ID list so that the same IDs in a different order share a call
+     */
+    private static String normaliseIds(String ids) {
+        if (StringUtils.isBlank(ids)) {
+            return "";
+        }
+        return String.join(",", new TreeSet<>(Arrays.asList(StringUtils.split(ids, ", "))));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the entries of a {@link TtlCache} in a JSON file so that they
+ * survive a restart of the bot.<p>
+ * The file is rewritten in full (compacted) each time it is saved, dropping
+ * the expired entries and, if it is over its disk budget, the least recently
+ * used entries.
+ *
+ * @author Omertron
+ * @param <T> The type of the cached values
+ */
+public class CacheFile<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheFile.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private final File file;
+    private final JavaType listType;
+    private final long budgetBytes;
+
+    /**
+     * Create the cache file
+     *
+     * @param file The file to store the cache in
+     * @param valueType The type of the cached values
+     * @param budgetBytes The maximum size of the file
+     */
+    public CacheFile(File file, JavaType valueType, long budgetBytes) {
+        this.file = file;
+        this.listType = MAPPER.getTypeFactory().constructCollectionType(List.class,
+                MAPPER.getTypeFactory().constructParametricType(CacheRecord.class, valueType));
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Helper to get the Jackson type for the cached values
+     *
+     * @param valueClass
+     * @return
+     */
+    public static JavaType type(Class<?> valueClass) {
+        return MAPPER.getTypeFactory().constructType(valueClass);
+    }
+
+    /**
+     * Helper to get the Jackson type for a list of cached values
+     *
+     * @param elementClass
+     * @return
+     */
+    public static JavaType listType(Class<?> elementClass) {
+        return MAPPER.getTypeFactory().constructCollectionType(List.class, elementClass);
+    }
+
+    /**
+     * Read the entries from the file
+     *
+     * @return The entries, empty if the file does not exist or cannot be read
+     */
+    public List<CacheRecord<T>> read() {
+        if (!file.exists()) {
+            LOG.info("Cache file '{}' was not found", file.getName());
+            return new ArrayList<>();
+        }
+
+        try {
+            List<CacheRecord<T>> records = MAPPER.readValue(file, listType);
+            LOG.info("Read {} entries from cache file '{}'", records.size(), file.getName());
+            return records;
+        } catch (IOException ex) {
+            LOG.warn("Failed to read cache file '{}', it will be replaced: {}", file.getName(), ex.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Write the entries to the file, keeping within the disk budget
+     *
+     * @param records The entries in least recently used order
+     * @return The size of the file written
+     */
+    public long write(List<CacheRecord<T>> records) {
+        List<CacheRecord<T>> toWrite = records;
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                LOG.warn("Failed to create cache directory '{}'", parent);
+                return 0;
+            }
+
+            MAPPER.writeValue(temp, toWrite);
+            while (temp.length() > budgetBytes && !toWrite.isEmpty()) {
+                // Drop the oldest entries in proportion to the excess
+                int keep = (int) (toWrite.size() * (budgetBytes / (double) temp.length()) * 0.9);
+                LOG.info("Cache file '{}' is {} bytes, over the budget of {}. Keeping {} of {} entries",
+                        file.getName(), temp.length(), budgetBytes, keep, toWrite.size());
+                toWrite = new ArrayList<>(toWrite.subList(toWrite.size() - keep, toWrite.size()));
+                MAPPER.writeValue(temp, toWrite);
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Wrote {} entries to cache file '{}'", toWrite.size(), file.getName());
+            return file.length();
+        } catch (IOException ex) {
+            LOG.warn("Failed to write cache file '{}': {}", file.getName(), ex.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.BggException;
+import com.omertron.bgg.model.CollectionItemWrapper;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.api.common.exception.ApiExceptionType;
+
+/**
+ * Fetches collections from BGG without holding a thread while BGG prepares
+ * them.<p>
+ * BGG queues large collection requests and asks for them to be retried
+ * later, so queued attempts are rescheduled with an increasing delay. Any
+ * other failure is returned straight away. Requests for the same collection
+ * share the same poll loop.
+ *
+ * @author Omertron
+ */
+public class CollectionFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionFetcher.class);
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final Map<String, CompletableFuture<CollectionItemWrapper>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "bgg-collection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create the fetcher
+     *
+     * @param maxAttempts The number of times to try BGG before giving up
+     * @param initialDelayMillis The delay before the first retry, doubled for
+     * each subsequent retry
+     * @param maxDelayMillis The longest delay between retries
+     */
+    public CollectionFetcher(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Fetch the collection, joining any poll loop already running for the key
+     *
+     * @param key The normalised key for the request
+     * @param call The call to BGG
+     * @return
+     */
+    public CompletableFuture<CollectionItemWrapper> fetch(String key, BggCall<CollectionItemWrapper> call) {
+        CompletableFuture<CollectionItemWrapper> future = new CompletableFuture<>();
+        CompletableFuture<CollectionItemWrapper> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            LOG.debug("Joining collection request for '{}'", key);
+            return existing;
+        }
+
+        future.whenComplete((result, ex) -> inFlight.remove(key, future));
+        // Keep the priority of the caller for all the attempts
+        RequestPriority priority = RequestScheduler.getPriority();
+        BggCall<CollectionItemWrapper> prioritised = () -> RequestScheduler.callAs(priority, call);
+        scheduler.execute(() -> attempt(key, prioritised, future, 1, initialDelayMillis));
+        return future;
+    }
+
+    private void attempt(String key, BggCall<CollectionItemWrapper> call, CompletableFuture<CollectionItemWrapper> future, int attempt, long delay) {
+        try {
+            CollectionItemWrapper result = call.call();
+            if (result != null) {
+                future.complete(result);
+                return;
+            }
+            retry(key, call, future, attempt, delay, new BggException(ApiExceptionType.UNKNOWN_CAUSE, "No collection returned for " + key));
+        } catch (BggException ex) {
+            if (isQueued(ex)) {
+                retry(key, call, future, attempt, delay, ex);
+            } else {
+                LOG.warn("Failed to get collection '{}': {}", key, ex.getMessage());
+                future.completeExceptionally(ex);
+            }
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private void retry(String key, BggCall<CollectionItemWrapper> call, CompletableFuture<CollectionItemWrapper> future, int attempt, long delay, BggException ex) {
+        if (attempt >= maxAttempts) {
+            LOG.warn("Giving up on collection '{}' after {} attempts: {}", key, attempt, ex.getMessage());
+            future.completeExceptionally(ex);
+            return;
+        }
+
+        LOG.info("Collection '{}' not ready (attempt {}), retrying in {}ms", key, attempt, delay);
+        scheduler.schedule(() -> attempt(key, call, future, attempt + 1, Math.min(delay * 2, maxDelayMillis)), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Has BGG queued the request?<p>
+     * The "accepted, try again later" response is not a collection, so it
+     * fails to map.
+     *
+     * @param ex
+     * @return
+     */
+    static boolean isQueued(BggException ex) {
+        return ex.getExceptionType() == ApiExceptionType.MAPPING_FAILED;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
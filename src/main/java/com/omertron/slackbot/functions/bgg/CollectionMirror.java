@@ -0,0 +1,110 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local copies of the collections of the group members.<p>
+ * The copies do not expire, they are replaced each time the collection is
+ * synced, and the games that have been added since the last sync are
+ * reported.
+ *
+ * @author Omertron
+ */
+public class CollectionMirror {
+
+    private final Map<String, CompactCollection> mirrors = new ConcurrentHashMap<>();
+    private volatile long lastSync = 0;
+
+    /**
+     * Get the mirrored collection
+     *
+     * @param key
+     * @return The collection, or null if it is not mirrored
+     */
+    public CompactCollection get(String key) {
+        return mirrors.get(key);
+    }
+
+    /**
+     * Replace the mirrored collection with the newly synced one
+     *
+     * @param key
+     * @param collection
+     * @return The games that are now owned and were not before. Empty if this
+     * is the first sync of the collection
+     */
+    public Map<Integer, String> update(String key, CompactCollection collection) {
+        CompactCollection previous = mirrors.put(key, collection);
+        lastSync = System.currentTimeMillis();
+        if (previous == null) {
+            return Collections.emptyMap();
+        }
+
+        Set<Integer> owned = new HashSet<>();
+        for (int row = 0; row < previous.size(); row++) {
+            if (previous.hasStatus(row, CompactCollection.OWN)) {
+                owned.add(previous.getId(row));
+            }
+        }
+
+        Map<Integer, String> added = new LinkedHashMap<>();
+        for (int row = 0; row < collection.size(); row++) {
+            if (collection.hasStatus(row, CompactCollection.OWN) && !owned.contains(collection.getId(row))) {
+                added.put(collection.getId(row), collection.getName(row));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Remove the collections of any users that are no longer mirrored
+     *
+     * @param keys The users to keep
+     * @return The number of collections removed
+     */
+    public int retain(Collection<String> keys) {
+        int before = mirrors.size();
+        mirrors.keySet().retainAll(keys);
+        return before - mirrors.size();
+    }
+
+    /**
+     * Output the state of the mirror
+     *
+     * @return
+     */
+    public String formatOutput() {
+        int games = 0;
+        for (CompactCollection collection : mirrors.values()) {
+            games += collection.size();
+        }
+        return String.format("Collection mirror: %1$d users, %2$d games, last sync %3$s",
+                mirrors.size(), games, lastSync == 0 ? "never" : (System.currentTimeMillis() - lastSync) / 60000 + " minutes ago");
+    }
+}
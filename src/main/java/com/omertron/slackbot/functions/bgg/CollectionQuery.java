@@ -0,0 +1,255 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * A sort, filter and limit query that is run against a
+ * {@link CompactCollection}.<p>
+ * The query is parsed from "sort:rating filter:unplayed limit:20" style
+ * parameters. A game must match all the filters given, with no status
+ * filter only the owned games are listed.
+ *
+ * @author Omertron
+ */
+public final class CollectionQuery {
+
+    public static final String USAGE = "sort:name|rating|plays|year[:asc|:desc] filter:own|trade|preordered|prevowned|want|wanttobuy|wanttoplay|wishlist|played|unplayed|rated|unrated limit:N (a game must match all the filters)";
+
+    private enum SortField {
+        NAME(false), RATING(true), PLAYS(true), YEAR(true);
+
+        private final boolean descending;
+
+        SortField(boolean descending) {
+            this.descending = descending;
+        }
+    }
+
+    private SortField sort = null;
+    private boolean descending = false;
+    private int statusFlags = 0;
+    // 1 to require, -1 to exclude, 0 for either
+    private int played = 0;
+    private int rated = 0;
+    private int limit = 0;
+    private final List<String> description = new ArrayList<>();
+
+    private CollectionQuery() {
+    }
+
+    /**
+     * Parse the query from the parameters
+     *
+     * @param params Space separated list of sort:, filter: and limit: terms
+     * @return
+     * @throws IllegalArgumentException If one of the terms is not recognised
+     */
+    public static CollectionQuery parse(String params) {
+        CollectionQuery query = new CollectionQuery();
+        for (String term : StringUtils.split(StringUtils.trimToEmpty(params).toLowerCase(Locale.ENGLISH))) {
+            String[] parts = StringUtils.split(term, ':');
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Unknown collection option '" + term + "'");
+            }
+
+            switch (parts[0]) {
+                case "sort":
+                    query.parseSort(parts);
+                    break;
+                case "filter":
+                    for (String filter : StringUtils.split(parts[1], ',')) {
+                        query.parseFilter(filter);
+                    }
+                    break;
+                case "limit":
+                    query.limit = NumberUtils.toInt(parts[1], 0);
+                    if (query.limit <= 0) {
+                        throw new IllegalArgumentException("Invalid limit '" + parts[1] + "'");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown collection option '" + term + "'");
+            }
+        }
+
+        if (query.statusFlags == 0) {
+            query.statusFlags = CompactCollection.OWN;
+        }
+        return query;
+    }
+
+    private void parseSort(String[] parts) {
+        try {
+            sort = SortField.valueOf(parts[1].toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown sort '" + parts[1] + "'", ex);
+        }
+
+        descending = sort.descending;
+        if (parts.length > 2) {
+            if ("asc".equals(parts[2])) {
+                descending = false;
+            } else if ("desc".equals(parts[2])) {
+                descending = true;
+            } else {
+                throw new IllegalArgumentException("Unknown sort order '" + parts[2] + "'");
+            }
+        }
+        description.add("sorted by " + parts[1] + (descending ? " (highest first)" : ""));
+    }
+
+    private void parseFilter(String filter) {
+        switch (filter) {
+            case "own":
+                statusFlags |= CompactCollection.OWN;
+                break;
+            case "trade":
+                statusFlags |= CompactCollection.FOR_TRADE;
+                break;
+            case "preordered":
+                statusFlags |= CompactCollection.PREORDERED;
+                break;
+            case "prevowned":
+                statusFlags |= CompactCollection.PREV_OWNED;
+                break;
+            case "want":
+                statusFlags |= CompactCollection.WANT;
+                break;
+            case "wanttobuy":
+                statusFlags |= CompactCollection.WANT_TO_BUY;
+                break;
+            case "wanttoplay":
+                statusFlags |= CompactCollection.WANT_TO_PLAY;
+                break;
+            case "wishlist":
+                statusFlags |= CompactCollection.WISHLIST;
+                break;
+            case "played":
+                played = 1;
+                break;
+            case "unplayed":
+                played = -1;
+                break;
+            case "rated":
+                rated = 1;
+                break;
+            case "unrated":
+                rated = -1;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter '" + filter + "'");
+        }
+        description.add(filter);
+    }
+
+    /**
+     * Run the query against the collection
+     *
+     * @param collection
+     * @return The matching rows, in order
+     */
+    public int[] execute(CompactCollection collection) {
+        int[] rows = new int[collection.size()];
+        int count = 0;
+        for (int row = 0; row < collection.size(); row++) {
+            if (matches(collection, row)) {
+                rows[count++] = row;
+            }
+        }
+
+        if (sort != null) {
+            sortRows(collection, rows, count);
+        }
+
+        if (limit > 0 && limit < count) {
+            count = limit;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    private boolean matches(CompactCollection collection, int row) {
+        if (!collection.hasStatus(row, statusFlags)) {
+            return false;
+        }
+        if (played != 0 && (collection.getPlays(row) > 0) != (played > 0)) {
+            return false;
+        }
+        return rated == 0 || (collection.getRating(row) > 0) == (rated > 0);
+    }
+
+    /**
+     * Sort the rows by packing the sort key and the row into a long, so the
+     * sort is done on primitives
+     */
+    private void sortRows(CompactCollection collection, int[] rows, int count) {
+        int[] nameRanks = sort == SortField.NAME ? collection.getNameRanks() : null;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            long key;
+            switch (sort) {
+                case NAME:
+                    key = nameRanks[row];
+                    break;
+                case RATING:
+                    key = Math.round(collection.getRating(row) * 1000);
+                    break;
+                case PLAYS:
+                    key = collection.getPlays(row);
+                    break;
+                default:
+                    key = collection.getYear(row);
+            }
+            if (descending) {
+                key = Integer.MAX_VALUE - key;
+            }
+            keys[i] = (key << 32) | row;
+        }
+
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++) {
+            rows[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Describe the query for the user
+     *
+     * @return The description, or an empty string for the default query
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(String.join(", ", description));
+        if (limit > 0) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append("first ").append(limit);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.model.BoardGameExtended;
+import com.omertron.bgg.model.IdValue;
+import com.omertron.slackbot.utils.TextUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the details of the games that have been looked up on BGG.<p>
+ * Only the parts of the details that are searched are kept for each game.
+ * The designers, categories and mechanics are held as dictionary codes with a
+ * list of the games for each, and the words of the descriptions have a list of
+ * the games they appear in. The player counts and playing times are held as
+ * columns.
+ * <p>
+ * Queries are made of "field:value" terms, for example
+ * "mechanic:deck-building players:4 time:&lt;60", and any words without a field
+ * are looked for in the name and description. All the terms must match.
+ *
+ * @author Omertron
+ */
+public class GameFacetIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameFacetIndex.class);
+    public static final String USAGE = "mechanic:X category:X designer:X players:N time:N|<N|>N and any words from the description";
+    private static final Pattern PAT_TERM = Pattern.compile("^(\\w+):(.+)$");
+    private static final Pattern PAT_TIME = Pattern.compile("^([<>]=?)?(\\d+)$");
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private enum Facet {
+        MECHANIC, CATEGORY, DESIGNER
+    }
+
+    private final Map<Integer, IndexedGame> games = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<IndexedGame>emptyList());
+
+    /**
+     * Add the game to the index, replacing it if the details have changed
+     *
+     * @param game
+     */
+    public void add(BoardGameExtended game) {
+        if (game == null || game.getId() <= 0) {
+            return;
+        }
+
+        IndexedGame indexed = new IndexedGame(game);
+        IndexedGame previous = games.put(game.getId(), indexed);
+        if (previous == null || !previous.sameAs(indexed)) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Does the query use any of the fields of the index
+     *
+     * @param query
+     * @return
+     */
+    public static boolean isFacetQuery(String query) {
+        for (String term : StringUtils.split(StringUtils.trimToEmpty(query))) {
+            Matcher m = PAT_TERM.matcher(term);
+            if (m.matches() && isField(m.group(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isField(String field) {
+        String name = field.toUpperCase(Locale.ENGLISH);
+        if ("PLAYERS".equals(name) || "TIME".equals(name)) {
+            return true;
+        }
+        for (Facet facet : Facet.values()) {
+            if (facet.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the games that match all the terms of the query
+     *
+     * @param query
+     * @return The game IDs and names, sorted by name
+     * @throws IllegalArgumentException If the query cannot be understood
+     */
+    public Map<Integer, String> search(String query) {
+        Snapshot current = current();
+        BitSet matches = new BitSet(current.ids.length);
+        matches.set(0, current.ids.length);
+
+        for (String term : StringUtils.split(StringEscapeUtils.unescapeHtml4(StringUtils.trimToEmpty(query)))) {
+            Matcher m = PAT_TERM.matcher(term);
+            if (m.matches() && isField(m.group(1))) {
+                String field = m.group(1).toUpperCase(Locale.ENGLISH);
+                String value = m.group(2);
+                if ("PLAYERS".equals(field)) {
+                    current.filterPlayers(matches, parseNumber(term, value));
+                } else if ("TIME".equals(field)) {
+                    current.filterTime(matches, term, value);
+                } else {
+                    current.filterFacet(matches, Facet.valueOf(field), value);
+                }
+            } else {
+                current.filterWord(matches, term);
+            }
+        }
+
+        Map<Integer, String> found = new LinkedHashMap<>();
+        for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+            found.put(current.ids[doc], current.names[doc]);
+        }
+        return found;
+    }
+
+    private static int parseNumber(String term, String value) {
+        if (!StringUtils.isNumeric(value)) {
+            throw new IllegalArgumentException("Invalid number in '" + term + "'");
+        }
+        return Integer.parseInt(value);
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Get the searchable index, rebuilding it if games have been added
+     */
+    private Snapshot current() {
+        if (changed) {
+            synchronized (this) {
+                if (changed) {
+                    changed = false;
+                    long start = System.currentTimeMillis();
+                    snapshot = new Snapshot(new ArrayList<>(games.values()));
+                    LOG.debug("Rebuilt game facet index with {} games in {}ms", snapshot.ids.length, System.currentTimeMillis() - start);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Split the text into lower case words
+     */
+    private static String[] words(String text) {
+        return StringUtils.split(TextUtil.normalise(text));
+    }
+
+    /**
+     * The parts of a game's details that are indexed
+     */
+    private static final class IndexedGame {
+
+        private final int id;
+        private final String name;
+        private final short minPlayers;
+        private final short maxPlayers;
+        private final short playingTime;
+        private final Map<Facet, String[]> facets = new EnumMap<>(Facet.class);
+        // The distinct words of the name and description
+        private final String[] words;
+
+        IndexedGame(BoardGameExtended game) {
+            id = game.getId();
+            name = StringUtils.defaultString(game.getName());
+            minPlayers = (short) game.getMinPlayers();
+            maxPlayers = (short) game.getMaxPlayers();
+            playingTime = (short) game.getPlayingTime();
+            facets.put(Facet.MECHANIC, facetValues(game.getBoardGameMechanic()));
+            facets.put(Facet.CATEGORY, facetValues(game.getBoardGameCategory()));
+            facets.put(Facet.DESIGNER, facetValues(game.getBoardGameDesigner()));
+
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String word : words(name + " " + StringEscapeUtils.unescapeHtml4(StringUtils.defaultString(game.getDescription())))) {
+                if (word.length() >= MIN_WORD_LENGTH) {
+                    distinct.add(word);
+                }
+            }
+            words = distinct.toArray(new String[distinct.size()]);
+        }
+
+        private static String[] facetValues(List<IdValue> gameValues) {
+            if (gameValues == null) {
+                return new String[0];
+            }
+
+            String[] facetValues = new String[gameValues.size()];
+            for (int i = 0; i < facetValues.length; i++) {
+                facetValues[i] = TextUtil.normalise(gameValues.get(i).getValue());
+            }
+            return facetValues;
+        }
+
+        boolean sameAs(IndexedGame other) {
+            if (id != other.id || !name.equals(other.name) || minPlayers != other.minPlayers
+                    || maxPlayers != other.maxPlayers || playingTime != other.playingTime || !Arrays.equals(words, other.words)) {
+                return false;
+            }
+            for (Facet facet : Facet.values()) {
+                if (!Arrays.equals(facets.get(facet), other.facets.get(facet))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The searchable form of the index
+     */
+    private static final class Snapshot {
+
+        private final int[] ids;
+        private final String[] names;
+        private final short[] minPlayers;
+        private final short[] maxPlayers;
+        private final short[] playingTime;
+        // Facet values and the games with each value, by the dictionary code
+        private final Map<Facet, List<String>> values = new HashMap<>();
+        private final Map<Facet, List<int[]>> facetPostings = new HashMap<>();
+        private final Map<String, int[]> wordPostings = new HashMap<>();
+
+        Snapshot(List<IndexedGame> games) {
+            // Sort by name so the results are in name order
+            games.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+
+            ids = new int[games.size()];
+            names = new String[games.size()];
+            minPlayers = new short[games.size()];
+            maxPlayers = new short[games.size()];
+            playingTime = new short[games.size()];
+
+            Map<Facet, Map<String, Integer>> dictionaries = new HashMap<>();
+            Map<Facet, List<List<Integer>>> facetLists = new HashMap<>();
+            for (Facet facet : Facet.values()) {
+                dictionaries.put(facet, new HashMap<>());
+                facetLists.put(facet, new ArrayList<>());
+                values.put(facet, new ArrayList<>());
+            }
+            Map<String, List<Integer>> wordLists = new HashMap<>();
+
+            for (int doc = 0; doc < games.size(); doc++) {
+                IndexedGame game = games.get(doc);
+                ids[doc] = game.id;
+                names[doc] = game.name;
+                minPlayers[doc] = game.minPlayers;
+                maxPlayers[doc] = game.maxPlayers;
+                playingTime[doc] = game.playingTime;
+
+                for (Facet facet : Facet.values()) {
+                    addFacet(dictionaries.get(facet), facetLists.get(facet), values.get(facet), game.facets.get(facet), doc);
+                }
+
+                // The words are already distinct for the game
+                for (String word : game.words) {
+                    wordLists.computeIfAbsent(word, k -> new ArrayList<>()).add(doc);
+                }
+            }
+
+            for (Facet facet : Facet.values()) {
+                List<int[]> postings = new ArrayList<>();
+                for (List<Integer> docs : facetLists.get(facet)) {
+                    postings.add(toArray(docs));
+                }
+                facetPostings.put(facet, postings);
+            }
+            for (Map.Entry<String, List<Integer>> entry : wordLists.entrySet()) {
+                wordPostings.put(entry.getKey(), toArray(entry.getValue()));
+            }
+        }
+
+        private static void addFacet(Map<String, Integer> dictionary, List<List<Integer>> lists, List<String> facetValues, String[] gameValues, int doc) {
+            for (String value : gameValues) {
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = facetValues.size();
+                    dictionary.put(value, code);
+                    facetValues.add(value);
+                    lists.add(new ArrayList<>());
+                }
+                lists.get(code).add(doc);
+            }
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+
+        /**
+         * Keep the games that have a facet value containing all the words of
+         * the search value, so "deck-building" matches "Deck / Pool Building"
+         */
+        void filterFacet(BitSet matches, Facet facet, String value) {
+            String[] searchWords = words(value);
+            BitSet found = new BitSet(ids.length);
+            List<String> facetValues = values.get(facet);
+            for (int code = 0; code < facetValues.size(); code++) {
+                if (containsAll(facetValues.get(code), searchWords)) {
+                    for (int doc : facetPostings.get(facet).get(code)) {
+                        found.set(doc);
+                    }
+                }
+            }
+            matches.and(found);
+        }
+
+        private static boolean containsAll(String facetValue, String[] searchWords) {
+            List<String> valueWords = Arrays.asList(StringUtils.split(facetValue));
+            for (String word : searchWords) {
+                boolean matched = false;
+                for (String valueWord : valueWords) {
+                    if (valueWord.startsWith(word)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void filterWord(BitSet matches, String term) {
+            BitSet found = new BitSet(ids.length);
+            for (String word : words(term)) {
+                if (word.length() < MIN_WORD_LENGTH) {
+                    // Short words are not indexed
+                    continue;
+                }
+                int[] docs = wordPostings.get(word);
+                if (docs == null) {
+                    matches.clear();
+                    return;
+                }
+                found.clear();
+                for (int doc : docs) {
+                    found.set(doc);
+                }
+                matches.and(found);
+            }
+        }
+
+        void filterPlayers(BitSet matches, int players) {
+            for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+                if (minPlayers[doc] > players || maxPlayers[doc] < players) {
+                    matches.clear(doc);
+                }
+            }
+        }
+
+        void filterTime(BitSet matches, String term, String value) {
+            Matcher m = PAT_TIME.matcher(value);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Invalid time in '" + term + "', use a number of minutes with an optional < or >");
+            }
+
+            String op = m.group(1) == null ? "<=" : m.group(1);
+            int minutes = Integer.parseInt(m.group(2));
+            for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+                int time = playingTime[doc];
+                // Games without a playing time never match
+                boolean keep = time > 0;
+                switch (op) {
+                    case "<":
+                        keep &= time < minutes;
+                        break;
+                    case ">":
+                        keep &= time > minutes;
+                        break;
+                    case ">=":
+                        keep &= time >= minutes;
+                        break;
+                    default:
+                        keep &= time <= minutes;
+                }
+                if (!keep) {
+                    matches.clear(doc);
+                }
+            }
+        }
+    }
+}
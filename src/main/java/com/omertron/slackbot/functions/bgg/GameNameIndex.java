@@ -0,0 +1,258 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.slackbot.utils.TextUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the names of all the games the bot has seen.<p>
+ * Used to find a game by name without going to BGG, and to suggest games
+ * when a name is mis-typed. Names are matched exactly, by prefix from a
+ * sorted list, or by the trigrams they share with the search.
+ * <p>
+ * The names can be added at any time. The searchable index is rebuilt in the
+ * background after a change, so searches never wait for it and see the new
+ * names once the rebuild has finished.
+ *
+ * @author Omertron
+ */
+public class GameNameIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameNameIndex.class);
+    // Minimum share of trigrams for a fuzzy match
+    private static final float MIN_SIMILARITY = 0.3f;
+    // Marks a name that more than one game has
+    private static final int AMBIGUOUS = -1;
+    private static final ExecutorService REBUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "name-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean(false);
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>());
+
+    /**
+     * Add a game name to the index
+     *
+     * @param id
+     * @param name
+     */
+    public void add(int id, String name) {
+        if (id <= 0 || name == null || name.isEmpty()) {
+            return;
+        }
+        if (!name.equals(names.put(id, name)) && rebuildQueued.compareAndSet(false, true)) {
+            REBUILDER.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Find the game with exactly this name
+     *
+     * @param name
+     * @return The BGG ID, or 0 if the name is not known or more than one game
+     * has the name
+     */
+    public int findExact(String name) {
+        Integer id = snapshot.exact.get(TextUtil.normalise(name));
+        return id == null || id == AMBIGUOUS ? 0 : id;
+    }
+
+    /**
+     * Find the games with names that start with the text
+     *
+     * @param prefix
+     * @param maxResults
+     * @return The game IDs and names
+     */
+    public Map<Integer, String> findPrefix(String prefix, int maxResults) {
+        Snapshot current = snapshot;
+        String search = TextUtil.normalise(prefix);
+        Map<Integer, String> found = new LinkedHashMap<>();
+        if (search.isEmpty()) {
+            return found;
+        }
+
+        int index = Arrays.binarySearch(current.sortedNames, search);
+        for (int i = index < 0 ? -index - 1 : index; i < current.sortedNames.length && found.size() < maxResults; i++) {
+            if (!current.sortedNames[i].startsWith(search)) {
+                break;
+            }
+            found.put(current.ids[i], current.displayNames[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Find the games with names that are similar to the text
+     *
+     * @param name
+     * @param maxResults
+     * @return The game IDs and names, most similar first
+     */
+    public Map<Integer, String> findSimilar(String name, int maxResults) {
+        Snapshot current = snapshot;
+        long[] trigrams = trigrams(TextUtil.normalise(name));
+        Map<Integer, String> found = new LinkedHashMap<>();
+        if (trigrams.length == 0) {
+            return found;
+        }
+
+        // Count the trigrams that each name shares with the search
+        int[] shared = new int[current.ids.length];
+        for (long trigram : trigrams) {
+            int[] postings = current.postings.get(trigram);
+            if (postings != null) {
+                for (int doc : postings) {
+                    shared[doc]++;
+                }
+            }
+        }
+
+        List<long[]> matches = new ArrayList<>();
+        for (int doc = 0; doc < shared.length; doc++) {
+            if (shared[doc] > 0) {
+                float similarity = 2f * shared[doc] / (trigrams.length + current.trigramCounts[doc]);
+                if (similarity >= MIN_SIMILARITY) {
+                    matches.add(new long[]{Float.floatToIntBits(similarity), doc});
+                }
+            }
+        }
+        // Positive floats sort in the same order as their bits
+        matches.sort((a, b) -> Long.compare(b[0], a[0]));
+
+        for (int i = 0; i < matches.size() && found.size() < maxResults; i++) {
+            int doc = (int) matches.get(i)[1];
+            found.put(current.ids[doc], current.displayNames[doc]);
+        }
+        return found;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Rebuild the searchable index from the names.<p>
+     * Normally done in the background after a change, but can be called to
+     * make the names searchable straight away.
+     */
+    public synchronized void rebuild() {
+        // Clear the flag first, so names added during the rebuild queue another one
+        rebuildQueued.set(false);
+        long start = System.currentTimeMillis();
+        snapshot = new Snapshot(new HashMap<>(names));
+        LOG.debug("Rebuilt game name index with {} names in {}ms", snapshot.ids.length, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Get the distinct trigrams of the name, padded so the start and end of
+     * the name count
+     */
+    private static long[] trigrams(String normalised) {
+        if (normalised.isEmpty()) {
+            return new long[0];
+        }
+
+        String padded = " " + normalised + " ";
+        long[] trigrams = new long[Math.max(1, padded.length() - 2)];
+        int count = 0;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * The searchable form of the names
+     */
+    private static final class Snapshot {
+
+        private final String[] sortedNames;
+        private final String[] displayNames;
+        private final int[] ids;
+        private final int[] trigramCounts;
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final Map<Long, int[]> postings = new HashMap<>();
+
+        Snapshot(Map<Integer, String> names) {
+            List<Map.Entry<Integer, String>> entries = new ArrayList<>(names.entrySet());
+            String[] normalised = new String[entries.size()];
+            Integer[] order = new Integer[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                normalised[i] = TextUtil.normalise(entries.get(i).getValue());
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> normalised[a].compareTo(normalised[b]));
+
+            sortedNames = new String[order.length];
+            displayNames = new String[order.length];
+            ids = new int[order.length];
+            trigramCounts = new int[order.length];
+            Map<Long, List<Integer>> lists = new HashMap<>();
+
+            for (int doc = 0; doc < order.length; doc++) {
+                Map.Entry<Integer, String> entry = entries.get(order[doc]);
+                sortedNames[doc] = normalised[order[doc]];
+                displayNames[doc] = entry.getValue();
+                ids[doc] = entry.getKey();
+                if (exact.putIfAbsent(sortedNames[doc], ids[doc]) != null) {
+                    exact.put(sortedNames[doc], AMBIGUOUS);
+                }
+
+                long[] trigrams = trigrams(sortedNames[doc]);
+                trigramCounts[doc] = trigrams.length;
+                for (long trigram : trigrams) {
+                    lists.computeIfAbsent(trigram, k -> new ArrayList<>()).add(doc);
+                }
+            }
+
+            for (Map.Entry<Long, List<Integer>> list : lists.entrySet()) {
+                int[] docs = new int[list.getValue().size()];
+                for (int i = 0; i < docs.length; i++) {
+                    docs[i] = list.getValue().get(i);
+                }
+                postings.put(list.getKey(), docs);
+            }
+        }
+    }
+}
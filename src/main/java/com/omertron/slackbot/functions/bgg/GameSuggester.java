@@ -0,0 +1,298 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.model.BoardGameExtended;
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Suggest games to play from the collections of the players.<p>
+ * The games the players own are ranked on the owners' ratings, with games
+ * that have been played recently moved down. Only the best ranked games are
+ * checked for the player count and playing time, using the cached details
+ * where possible.
+ *
+ * @author Omertron
+ */
+public class GameSuggester {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameSuggester.class);
+    // Rating used for games that none of the owners have rated
+    private static final float DEFAULT_RATING = 6.0f;
+    // Most that is taken off the rating of a game played at the last game night
+    private static final float RECENT_PENALTY = 3.0f;
+    // The number of candidates looked up on BGG at a time
+    private static final int LOOKUP_BATCH = 20;
+
+    private final BggGateway bgg;
+    private final int maxLookups;
+
+    /**
+     * Create the suggester
+     *
+     * @param bgg
+     * @param maxLookups The most games to look up on BGG for one suggestion
+     */
+    public GameSuggester(BggGateway bgg, int maxLookups) {
+        this.bgg = bgg;
+        this.maxLookups = maxLookups;
+    }
+
+    /**
+     * Suggest games for the players.<p>
+     * The collections and recent plays are waited for without holding a
+     * thread, then the games are ranked and looked up on the executor.
+     *
+     * @param owners The player names and BGG usernames
+     * @param players The number of players
+     * @param maxTime The maximum playing time in minutes, 0 for any
+     * @param recentPlays How many game nights ago each game was last played,
+     * keyed on the BGG ID. This is read while the collections are fetched
+     * @param recentNights The number of game nights in the recent plays
+     * @param count The number of suggestions to make
+     * @param executor The executor to rank and look up the games on
+     * @return A future with the suggestions, best first
+     */
+    public CompletableFuture<List<Suggestion>> suggest(Map<String, String> owners, int players, int maxTime, CompletableFuture<Map<Integer, Integer>> recentPlays,
+            int recentNights, int count, Executor executor) {
+        // Get all the collections at the same time
+        Map<String, CompletableFuture<CompactCollection>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, String> owner : owners.entrySet()) {
+            futures.put(owner.getKey(), bgg.getCompactCollection(owner.getValue()));
+        }
+
+        List<CompletableFuture<?>> waitFor = new ArrayList<>(futures.values());
+        waitFor.add(recentPlays);
+        return CompletableFuture.allOf(waitFor.toArray(new CompletableFuture<?>[waitFor.size()]))
+                // A failed collection is logged and left out when the games are chosen
+                .handle((ignored, ex) -> ignored)
+                .thenComposeAsync(ignored -> choose(futures, players, maxTime, recentPlays, recentNights, count, executor), executor);
+    }
+
+    /**
+     * Rank the owned games and look up the best ones until there are enough
+     * that fit
+     */
+    private CompletableFuture<List<Suggestion>> choose(Map<String, CompletableFuture<CompactCollection>> futures, int players, int maxTime,
+            CompletableFuture<Map<Integer, Integer>> recentPlays, int recentNights, int count, Executor executor) {
+        Map<Integer, Suggestion> candidates = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<CompactCollection>> entry : futures.entrySet()) {
+            try {
+                addCandidates(candidates, entry.getKey(), entry.getValue().join());
+            } catch (CompletionException ex) {
+                LOG.warn("Failed to get the collection for '{}': {}", entry.getKey(), ex.getMessage());
+            }
+        }
+
+        Map<Integer, Integer> played = recentPlays.exceptionally(ex -> {
+            LOG.warn("Failed to read the recent plays: {}", ex.getMessage());
+            return Collections.emptyMap();
+        }).join();
+
+        List<Suggestion> ranked = new ArrayList<>(candidates.values());
+        for (Suggestion suggestion : ranked) {
+            suggestion.score = suggestion.getRating();
+            Integer nightsAgo = played.get(suggestion.id);
+            if (nightsAgo != null && recentNights > 0) {
+                suggestion.score -= RECENT_PENALTY * Math.max(0, recentNights - nightsAgo) / recentNights;
+                suggestion.nightsAgo = nightsAgo;
+            }
+        }
+        Collections.sort(ranked, (a, b) -> Float.compare(b.score, a.score));
+        LOG.info("Ranked {} games owned by {} for {} players", ranked.size(), futures.keySet(), players);
+
+        // Use the details already cached first, so BGG is only asked about the games that are needed
+        int limit = Math.min(ranked.size(), maxLookups);
+        List<Integer> allIds = new ArrayList<>(limit);
+        ranked.subList(0, limit).forEach(s -> allIds.add(s.id));
+        Map<Integer, BoardGameExtended> details = bgg.getCachedBoardGames(allIds);
+
+        Selection selection = new Selection(ranked.subList(0, limit), details, players, maxTime, count, executor);
+        return selection.next(0);
+    }
+
+    /**
+     * Works through the ranked games in batches, looking up the ones that are
+     * not cached, until there are enough that fit.<p>
+     * Each batch is started when the one before has finished, so the state is
+     * only used by one thread at a time.
+     */
+    private final class Selection {
+
+        private final List<Suggestion> ranked;
+        private final Map<Integer, BoardGameExtended> details;
+        private final int players;
+        private final int maxTime;
+        private final int count;
+        private final Executor executor;
+        private final List<Suggestion> results = new ArrayList<>();
+
+        Selection(List<Suggestion> ranked, Map<Integer, BoardGameExtended> details, int players, int maxTime, int count, Executor executor) {
+            this.ranked = ranked;
+            this.details = details;
+            this.players = players;
+            this.maxTime = maxTime;
+            this.count = count;
+            this.executor = executor;
+        }
+
+        CompletableFuture<List<Suggestion>> next(int start) {
+            if (start >= ranked.size() || results.size() >= count) {
+                return CompletableFuture.completedFuture(results);
+            }
+
+            List<Suggestion> batch = ranked.subList(start, Math.min(start + LOOKUP_BATCH, ranked.size()));
+            List<Integer> ids = new ArrayList<>(batch.size());
+            for (Suggestion suggestion : batch) {
+                if (!details.containsKey(suggestion.id)) {
+                    ids.add(suggestion.id);
+                }
+            }
+
+            // Only go to BGG if the cached games in this batch are not enough
+            if (ids.isEmpty() || countFits(batch, details, players, maxTime) + results.size() >= count) {
+                addFits(batch);
+                return next(start + LOOKUP_BATCH);
+            }
+
+            return bgg.getBoardGames(ids, executor).thenCompose(found -> {
+                details.putAll(found);
+                addFits(batch);
+                return next(start + LOOKUP_BATCH);
+            });
+        }
+
+        private void addFits(List<Suggestion> batch) {
+            for (Suggestion suggestion : batch) {
+                BoardGameExtended game = details.get(suggestion.id);
+                if (game != null && fits(game, players, maxTime)) {
+                    suggestion.details = game;
+                    results.add(suggestion);
+                    if (results.size() == count) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int countFits(List<Suggestion> batch, Map<Integer, BoardGameExtended> details, int players, int maxTime) {
+        int fit = 0;
+        for (Suggestion suggestion : batch) {
+            BoardGameExtended game = details.get(suggestion.id);
+            if (game != null && fits(game, players, maxTime)) {
+                fit++;
+            }
+        }
+        return fit;
+    }
+
+    private static void addCandidates(Map<Integer, Suggestion> candidates, String owner, CompactCollection collection) {
+        for (int row = 0; row < collection.size(); row++) {
+            if (!collection.hasStatus(row, CompactCollection.OWN)) {
+                continue;
+            }
+
+            int id = collection.getId(row);
+            Suggestion suggestion = candidates.get(id);
+            if (suggestion == null) {
+                suggestion = new Suggestion(id, collection.getName(row));
+                candidates.put(id, suggestion);
+            }
+            suggestion.owners.add(owner);
+            if (collection.getRating(row) > 0) {
+                suggestion.ratingTotal += collection.getRating(row);
+                suggestion.ratingCount++;
+            }
+        }
+    }
+
+    private static boolean fits(BoardGameExtended game, int players, int maxTime) {
+        if (players > 0 && (game.getMinPlayers() > players || game.getMaxPlayers() < players)) {
+            return false;
+        }
+        return maxTime <= 0 || game.getPlayingTime() <= maxTime;
+    }
+
+    /**
+     * A game that could be played
+     */
+    public static final class Suggestion {
+
+        private final int id;
+        private final String name;
+        private final List<String> owners = new ArrayList<>();
+        private float ratingTotal = 0;
+        private int ratingCount = 0;
+        private float score;
+        private int nightsAgo = -1;
+        private BoardGameExtended details = null;
+
+        private Suggestion(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getOwners() {
+            return owners;
+        }
+
+        /**
+         * The average of the owners' ratings
+         *
+         * @return
+         */
+        public float getRating() {
+            return ratingCount == 0 ? DEFAULT_RATING : ratingTotal / ratingCount;
+        }
+
+        /**
+         * How many game nights ago the game was played
+         *
+         * @return The number of game nights, or -1 if not played recently
+         */
+        public int getNightsAgo() {
+            return nightsAgo;
+        }
+
+        public BoardGameExtended getDetails() {
+            return details;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.BggException;
+import com.omertron.bgg.enums.HotItemType;
+import com.omertron.bgg.model.HotListItem;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last snapshot of each hot list.<p>
+ * Requests are answered from the snapshot. Once a snapshot is older than the
+ * soft TTL a refresh is started in the background, and if that fails the old
+ * snapshot continues to be served.
+ *
+ * @author Omertron
+ */
+public class HotListCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HotListCache.class);
+    /**
+     * The hot lists the bot uses
+     */
+    public static final List<HotItemType> HOT_TYPES = Arrays.asList(HotItemType.BOARDGAME, HotItemType.BOARDGAMEPERSON, HotItemType.BOARDGAMECOMPANY);
+
+    private final HotLoader loader;
+    private final SingleFlight<List<HotListItem>> flight;
+    private final long softTtlMillis;
+    private final Map<HotItemType, HotListSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<HotItemType> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> RequestScheduler.runAs(RequestPriority.BACKGROUND, r), "hotlist-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Loads a hot list from BGG
+     */
+    @FunctionalInterface
+    public interface HotLoader {
+
+        /**
+         * Get the hot list
+         *
+         * @param itemType
+         * @return
+         * @throws BggException
+         */
+        List<HotListItem> load(HotItemType itemType) throws BggException;
+    }
+
+    public HotListCache(HotLoader loader, SingleFlight<List<HotListItem>> flight, long softTtl, TimeUnit unit) {
+        this.loader = loader;
+        this.flight = flight;
+        this.softTtlMillis = unit.toMillis(softTtl);
+    }
+
+    /**
+     * Get the snapshot of the hot list.<p>
+     * Only waits on BGG if there is no snapshot at all.
+     *
+     * @param itemType
+     * @return
+     * @throws BggException If there is no snapshot and BGG could not be read
+     */
+    public HotListSnapshot get(HotItemType itemType) throws BggException {
+        HotListSnapshot snapshot = snapshots.get(itemType);
+        if (snapshot == null) {
+            return refresh(itemType);
+        }
+
+        if (snapshot.isStale(softTtlMillis)) {
+            refreshAsync(itemType);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Refresh all of the hot lists, keeping the old snapshots on error
+     */
+    public void refreshAll() {
+        for (HotItemType itemType : HOT_TYPES) {
+            try {
+                refresh(itemType);
+            } catch (BggException ex) {
+                LOG.warn("Failed to refresh hot list for {}: {}", itemType, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get a new snapshot from BGG
+     */
+    private HotListSnapshot refresh(HotItemType itemType) throws BggException {
+        try {
+            HotListSnapshot snapshot = new HotListSnapshot(itemType, flight.execute(String.valueOf(itemType), () -> loader.load(itemType)));
+            snapshots.put(itemType, snapshot);
+            LOG.debug("Refreshed hot list for {}, {} items", itemType, snapshot.getItems().size());
+            return snapshot;
+        } catch (BggException | RuntimeException ex) {
+            snapshots.computeIfPresent(itemType, (k, v) -> v.withError(ex.getMessage()));
+            throw ex;
+        }
+    }
+
+    private void refreshAsync(HotItemType itemType) {
+        if (!refreshing.add(itemType)) {
+            return;
+        }
+
+        refresher.execute(() -> {
+            try {
+                refresh(itemType);
+            } catch (BggException | RuntimeException ex) {
+                LOG.warn("Background refresh of hot list for {} failed: {}", itemType, ex.getMessage());
+            } finally {
+                refreshing.remove(itemType);
+            }
+        });
+    }
+
+    public boolean isStale(HotListSnapshot snapshot) {
+        return snapshot.isStale(softTtlMillis);
+    }
+
+    /**
+     * Remove all the snapshots
+     *
+     * @return The number removed
+     */
+    public int flush() {
+        int size = snapshots.size();
+        snapshots.clear();
+        return size;
+    }
+
+    /**
+     * Output the age of the snapshots
+     *
+     * @return
+     */
+    public String formatOutput() {
+        StringBuilder sb = new StringBuilder("Hot: ");
+        sb.append(snapshots.size()).append(" snapshots, soft TTL ")
+                .append(TimeUnit.MILLISECONDS.toMinutes(softTtlMillis)).append(" min");
+        for (HotListSnapshot snapshot : snapshots.values()) {
+            sb.append(", ").append(snapshot.getItemType()).append(" ").append(snapshot.getAgeMinutes()).append(" min old");
+            if (snapshot.getLastError() != null) {
+                sb.append(" (refresh failed)");
+            }
+        }
+        return sb.toString();
+    }
+}
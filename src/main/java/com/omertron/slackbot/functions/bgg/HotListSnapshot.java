@@ -0,0 +1,89 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.enums.HotItemType;
+import com.omertron.bgg.model.HotListItem;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot list for a type as it was at a point in time
+ *
+ * @author Omertron
+ */
+public final class HotListSnapshot {
+
+    private final HotItemType itemType;
+    private final List<HotListItem> items;
+    private final long fetched;
+    private final String lastError;
+
+    HotListSnapshot(HotItemType itemType, List<HotListItem> items) {
+        this(itemType, items, System.currentTimeMillis(), null);
+    }
+
+    private HotListSnapshot(HotItemType itemType, List<HotListItem> items, long fetched, String lastError) {
+        this.itemType = itemType;
+        this.items = items == null ? Collections.<HotListItem>emptyList() : Collections.unmodifiableList(items);
+        this.fetched = fetched;
+        this.lastError = lastError;
+    }
+
+    /**
+     * Create a copy of this snapshot recording the failure to refresh it
+     *
+     * @param error
+     * @return
+     */
+    HotListSnapshot withError(String error) {
+        return new HotListSnapshot(itemType, items, fetched, error);
+    }
+
+    public HotItemType getItemType() {
+        return itemType;
+    }
+
+    public List<HotListItem> getItems() {
+        return items;
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+
+    /**
+     * The error from the last refresh, or null if it was successful
+     *
+     * @return
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getAgeMinutes() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - fetched);
+    }
+
+    public boolean isStale(long softTtlMillis) {
+        return System.currentTimeMillis() - fetched > softTtlMillis;
+    }
+}
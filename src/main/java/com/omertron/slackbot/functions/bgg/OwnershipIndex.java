@@ -0,0 +1,336 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of which group members own each game.<p>
+ * Each member is a bit in a long, and each game has the mask of the members
+ * that own it, so "who owns" and "what do they all own" are a mask test per
+ * game. The index is built from the members' cached collections and replaced
+ * as a whole when it is rebuilt.
+ *
+ * @author Omertron
+ */
+public class OwnershipIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OwnershipIndex.class);
+    private static final int MAX_MEMBERS = Long.SIZE;
+
+    private final BggGateway bgg;
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0], new int[0], new long[0], new String[0], 0);
+
+    public OwnershipIndex(BggGateway bgg) {
+        this.bgg = bgg;
+    }
+
+    /**
+     * Rebuild the index from the members' collections.<p>
+     * The collections are all requested at once and the index is replaced
+     * when the last one arrives, without holding a thread while waiting. If a
+     * member's collection cannot be retrieved the games from the last index
+     * are kept for them.
+     *
+     * @param members The member name and BGG username
+     * @return A future that completes once the index has been replaced
+     */
+    public CompletableFuture<Void> rebuild(Map<String, String> members) {
+        Snapshot previous = snapshot;
+        List<String> names = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            if (StringUtils.isBlank(member.getValue())) {
+                continue;
+            }
+            if (names.size() == MAX_MEMBERS) {
+                LOG.warn("Only {} members can be indexed, ignoring '{}'", MAX_MEMBERS, member.getKey());
+                continue;
+            }
+            names.add(member.getKey());
+            usernames.add(member.getValue());
+        }
+
+        LOG.info("Building ownership index for {} members", names.size());
+        List<CompletableFuture<CompactCollection>> collections = new ArrayList<>(usernames.size());
+        for (String username : usernames) {
+            collections.add(bgg.getCompactCollection(username));
+        }
+
+        return CompletableFuture.allOf(collections.toArray(new CompletableFuture<?>[collections.size()]))
+                .handle((ignored, ex) -> {
+                    build(previous, names, usernames, collections);
+                    return null;
+                });
+    }
+
+    /**
+     * Build the index once all the collections have completed
+     */
+    private void build(Snapshot previous, List<String> names, List<String> usernames, List<CompletableFuture<CompactCollection>> collections) {
+        Map<Integer, long[]> masks = new HashMap<>();
+        Map<Integer, String> gameNames = new HashMap<>();
+        int failed = 0;
+
+        for (int bit = 0; bit < usernames.size(); bit++) {
+            long memberBit = 1L << bit;
+            try {
+                CompactCollection collection = collections.get(bit).join();
+                for (int row = 0; row < collection.size(); row++) {
+                    if (collection.hasStatus(row, CompactCollection.OWN)) {
+                        add(masks, gameNames, collection.getId(row), collection.getName(row), memberBit);
+                    }
+                }
+            } catch (CompletionException ex) {
+                LOG.warn("Failed to get collection for '{}', keeping the indexed games: {}", usernames.get(bit), ex.getMessage());
+                failed++;
+                long previousBit = previous.getMemberBit(usernames.get(bit));
+                for (int i = 0; previousBit != 0 && i < previous.ids.length; i++) {
+                    if ((previous.masks[i] & previousBit) != 0) {
+                        add(masks, gameNames, previous.ids[i], previous.gameNames[i], memberBit);
+                    }
+                }
+            }
+        }
+
+        // Sort by game ID so that lookups can use a binary search
+        int[] ids = new int[masks.size()];
+        int count = 0;
+        for (Integer id : masks.keySet()) {
+            ids[count++] = id;
+        }
+        Arrays.sort(ids);
+
+        long[] sortedMasks = new long[ids.length];
+        String[] sortedNames = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sortedMasks[i] = masks.get(ids[i])[0];
+            sortedNames[i] = gameNames.get(ids[i]);
+        }
+
+        snapshot = new Snapshot(names.toArray(new String[names.size()]), usernames.toArray(new String[usernames.size()]),
+                ids, sortedMasks, sortedNames, System.currentTimeMillis());
+        LOG.info("Ownership index built with {} games for {} members ({} failed)", ids.length, names.size(), failed);
+    }
+
+    private static void add(Map<Integer, long[]> masks, Map<Integer, String> gameNames, int id, String name, long memberBit) {
+        long[] mask = masks.get(id);
+        if (mask == null) {
+            masks.put(id, new long[]{memberBit});
+            gameNames.put(id, name);
+        } else {
+            mask[0] |= memberBit;
+        }
+    }
+
+    /**
+     * Has the index been built
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return snapshot.ids.length == 0;
+    }
+
+    /**
+     * Get the mask for the named members
+     *
+     * @param members
+     * @return The mask, or 0 if any of the members are not in the index
+     */
+    public long getMask(List<String> members) {
+        Snapshot current = snapshot;
+        long mask = 0;
+        for (String member : members) {
+            long bit = current.getMemberBitByName(member);
+            if (bit == 0) {
+                return 0;
+            }
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Get the members that are not in the index
+     *
+     * @param members
+     * @return The members without a collection in the index
+     */
+    public List<String> getMissing(List<String> members) {
+        Snapshot current = snapshot;
+        List<String> missing = new ArrayList<>();
+        for (String member : members) {
+            if (current.getMemberBitByName(member) == 0) {
+                missing.add(member);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Get the members that own the game
+     *
+     * @param gameId
+     * @return The member names, empty if no-one owns it
+     */
+    public List<String> getOwners(int gameId) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.ids, gameId);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        return current.getMembers(current.masks[index]);
+    }
+
+    /**
+     * Find the indexed games that match the name
+     *
+     * @param name
+     * @param maxResults
+     * @return The game IDs and names, an exact match is returned on its own
+     */
+    public Map<Integer, String> findGames(String name, int maxResults) {
+        Snapshot current = snapshot;
+        String search = StringUtils.trimToEmpty(name).toLowerCase(Locale.ENGLISH);
+        Map<Integer, String> found = new LinkedHashMap<>();
+        for (int i = 0; i < current.ids.length; i++) {
+            String gameName = current.gameNames[i];
+            if (gameName.equalsIgnoreCase(search)) {
+                return Collections.singletonMap(current.ids[i], gameName);
+            }
+            if (found.size() < maxResults && gameName.toLowerCase(Locale.ENGLISH).contains(search)) {
+                found.put(current.ids[i], gameName);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the games owned by all of the members in the mask
+     *
+     * @param mask
+     * @return The game IDs and names
+     */
+    public Map<Integer, String> getOwnedByAll(long mask) {
+        Snapshot current = snapshot;
+        Map<Integer, String> games = new LinkedHashMap<>();
+        for (int i = 0; i < current.ids.length; i++) {
+            if ((current.masks[i] & mask) == mask) {
+                games.put(current.ids[i], current.gameNames[i]);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Get the games owned by any of the members in the mask
+     *
+     * @param mask
+     * @return The game IDs and names
+     */
+    public Map<Integer, String> getOwnedByAny(long mask) {
+        Snapshot current = snapshot;
+        Map<Integer, String> games = new LinkedHashMap<>();
+        for (int i = 0; i < current.ids.length; i++) {
+            if ((current.masks[i] & mask) != 0) {
+                games.put(current.ids[i], current.gameNames[i]);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Output the state of the index
+     *
+     * @return
+     */
+    public String formatOutput() {
+        Snapshot current = snapshot;
+        if (current.built == 0) {
+            return "Ownership index: not built";
+        }
+        return String.format("Ownership index: %1$d games for %2$d members, built %3$d minutes ago",
+                current.ids.length, current.members.length, (System.currentTimeMillis() - current.built) / 60000);
+    }
+
+    /**
+     * An immutable copy of the index
+     */
+    private static final class Snapshot {
+
+        private final String[] members;
+        private final String[] usernames;
+        private final int[] ids;
+        private final long[] masks;
+        private final String[] gameNames;
+        private final long built;
+
+        Snapshot(String[] members, String[] usernames, int[] ids, long[] masks, String[] gameNames, long built) {
+            this.members = members;
+            this.usernames = usernames;
+            this.ids = ids;
+            this.masks = masks;
+            this.gameNames = gameNames;
+            this.built = built;
+        }
+
+        long getMemberBit(String username) {
+            for (int bit = 0; bit < usernames.length; bit++) {
+                if (usernames[bit].equalsIgnoreCase(username)) {
+                    return 1L << bit;
+                }
+            }
+            return 0;
+        }
+
+        long getMemberBitByName(String name) {
+            for (int bit = 0; bit < members.length; bit++) {
+                if (members[bit].equalsIgnoreCase(name)) {
+                    return 1L << bit;
+                }
+            }
+            return 0;
+        }
+
+        List<String> getMembers(long mask) {
+            List<String> names = new ArrayList<>();
+            for (int bit = 0; bit < members.length; bit++) {
+                if ((mask & (1L << bit)) != 0) {
+                    names.add(members[bit]);
+                }
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.BggException;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import com.omertron.slackbot.functions.pipeline.StageStatistics;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.yamj.api.common.exception.ApiExceptionType;
+
+/**
+ * Spaces out the calls to BGG to keep within a global requests per second
+ * budget.<p>
+ * Interactive requests always go before any waiting background requests.
+ * The priority is taken from the calling thread, which is interactive unless
+ * it is running as background. A background call is raised to interactive if
+ * an interactive caller joins it, and its wait is then recorded as
+ * interactive.
+ *
+ * @author Omertron
+ */
+public class RequestScheduler {
+
+    private static final ThreadLocal<RequestPriority> PRIORITY = ThreadLocal.withInitial(() -> RequestPriority.INTERACTIVE);
+    // Threads making a call that an interactive caller has joined
+    private static final Set<Thread> BOOSTED = ConcurrentHashMap.newKeySet();
+
+    // A lock rather than a monitor, so that a waiting virtual thread is not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    private final long intervalNanos;
+    private final Map<RequestPriority, Integer> waiting = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, StageStatistics> stats = new EnumMap<>(RequestPriority.class);
+    private long nextSlot = System.nanoTime();
+
+    /**
+     * Create the scheduler
+     *
+     * @param requestsPerSecond The maximum rate of calls to BGG
+     */
+    public RequestScheduler(double requestsPerSecond) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.01, requestsPerSecond));
+        for (RequestPriority priority : RequestPriority.values()) {
+            waiting.put(priority, 0);
+            stats.put(priority, new StageStatistics(priority.toString()));
+        }
+    }
+
+    /**
+     * Get the priority of the current thread
+     *
+     * @return
+     */
+    public static RequestPriority getPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * Run the task with the given priority, restoring the thread's priority
+     * afterwards
+     *
+     * @param priority
+     * @param task
+     */
+    public static void runAs(RequestPriority priority, Runnable task) {
+        RequestPriority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            task.run();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * Make the call with the given priority, restoring the thread's priority
+     * afterwards
+     *
+     * @param <T>
+     * @param priority
+     * @param call
+     * @return
+     * @throws BggException
+     */
+    public static <T> T callAs(RequestPriority priority, BggCall<T> call) throws BggException {
+        RequestPriority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return call.call();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * Treat the requests made by the thread as interactive, because an
+     * interactive caller is waiting for its result
+     *
+     * @param thread
+     */
+    public static void boost(Thread thread) {
+        BOOSTED.add(thread);
+    }
+
+    /**
+     * Stop treating the thread's requests as interactive
+     *
+     * @param thread
+     */
+    public static void unboost(Thread thread) {
+        BOOSTED.remove(thread);
+    }
+
+    private static RequestPriority effective(RequestPriority priority) {
+        return BOOSTED.contains(Thread.currentThread()) ? RequestPriority.INTERACTIVE : priority;
+    }
+
+    /**
+     * Wrap the call so that it waits for its turn before going to BGG
+     *
+     * @param <T>
+     * @param call
+     * @return
+     */
+    public <T> BggCall<T> throttle(BggCall<T> call) {
+        return () -> {
+            acquire(getPriority());
+            return call.call();
+        };
+    }
+
+    /**
+     * Wait until a request with the priority can be made
+     *
+     * @param priority
+     * @throws BggException If interrupted while waiting
+     */
+    public void acquire(RequestPriority priority) throws BggException {
+        long start = System.nanoTime();
+        RequestPriority current = effective(priority);
+        StageStatistics stat = stats.get(current);
+        stat.queued();
+
+        lock.lock();
+        try {
+            waiting.merge(current, 1, Integer::sum);
+            try {
+                while (true) {
+                    // The call may have been joined by an interactive caller while waiting
+                    RequestPriority latest = effective(priority);
+                    if (latest != current) {
+                        waiting.merge(current, -1, Integer::sum);
+                        waiting.merge(latest, 1, Integer::sum);
+                        stat.dequeued();
+                        stat = stats.get(latest);
+                        stat.queued();
+                        current = latest;
+                    }
+
+                    boolean myTurn = current == RequestPriority.INTERACTIVE || waiting.get(RequestPriority.INTERACTIVE) == 0;
+                    long now = System.nanoTime();
+                    if (myTurn && now >= nextSlot) {
+                        nextSlot = Math.max(nextSlot, now) + intervalNanos;
+                        break;
+                    }
+
+                    long waitNanos = myTurn ? nextSlot - now : intervalNanos;
+                    turn.awaitNanos(Math.max(waitNanos, 1));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                stat.rejected();
+                throw new BggException(ApiExceptionType.UNKNOWN_CAUSE, "Interrupted waiting to call BGG", ex);
+            } finally {
+                waiting.merge(current, -1, Integer::sum);
+                turn.signalAll();
+                stat.dequeued();
+            }
+        } finally {
+            lock.unlock();
+        }
+        stat.completed(start);
+    }
+
+    /**
+     * Output the wait time for each priority
+     *
+     * @return
+     */
+    public String formatOutput() {
+        StringBuilder sb = new StringBuilder("BGG request waits (");
+        sb.append(String.format("%.1f", TimeUnit.SECONDS.toNanos(1) / (double) intervalNanos)).append(" per second):\n");
+        for (StageStatistics stat : stats.values()) {
+            sb.append("\t").append(stat.formatOutput()).append("\n");
+        }
+        return sb.toString();
+    }
+}
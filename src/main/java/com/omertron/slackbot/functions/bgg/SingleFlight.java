@@ -0,0 +1,142 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import com.omertron.bgg.BggException;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.api.common.exception.ApiExceptionType;
+
+/**
+ * Coalesces identical requests that are in flight at the same time.<p>
+ * The first caller for a key makes the call, any other callers for the same
+ * key wait for and share that result (or exception).
+ *
+ * @author Omertron
+ * @param <T> The type of the result
+ */
+public class SingleFlight<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final String name;
+    private final Map<String, Flight<T>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong(0);
+    private final AtomicLong shared = new AtomicLong(0);
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Execute the call, or join an identical call that is already running
+     *
+     * @param key The normalised key for the request
+     * @param call The call to make if there is none in flight
+     * @return
+     * @throws BggException
+     */
+    public T execute(String key, BggCall<T> call) throws BggException {
+        Flight<T> flight = new Flight<>();
+        Flight<T> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.incrementAndGet();
+            LOG.debug("{}: Joining in-flight request for '{}'", name, key);
+            if (RequestScheduler.getPriority() == RequestPriority.INTERACTIVE) {
+                existing.boost();
+            }
+            return await(key, existing.future);
+        }
+
+        calls.incrementAndGet();
+        try {
+            T result = call.call();
+            flight.future.complete(result);
+            return result;
+        } catch (BggException | RuntimeException ex) {
+            flight.future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, flight);
+            flight.finish();
+        }
+    }
+
+    private T await(String key, CompletableFuture<T> future) throws BggException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BggException(ApiExceptionType.UNKNOWN_CAUSE, "Interrupted waiting for " + name + " '" + key + "'", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof BggException) {
+                throw (BggException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BggException(ApiExceptionType.UNKNOWN_CAUSE, "Failed to get " + name + " '" + key + "'", cause);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * A call in flight and the thread making it
+     */
+    private static final class Flight<T> {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Thread leader = Thread.currentThread();
+        private boolean finished = false;
+
+        /**
+         * Raise the leader's call to interactive, as an interactive caller is
+         * waiting for it
+         */
+        synchronized void boost() {
+            if (!finished) {
+                RequestScheduler.boost(leader);
+            }
+        }
+
+        synchronized void finish() {
+            finished = true;
+            RequestScheduler.unboost(leader);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A size bounded cache where the entries expire after a fixed time.<p>
+ * When the cache is full the least recently used entry is evicted.
+ * <p>
+ * If the cache has a {@link CacheFile} the entries are loaded from it by
+ * {@link #load()} and written back by {@link #save()}.
+ *
+ * @author Omertron
+ * @param <T> The type of the cached values
+ */
+public class TtlCache<T> {
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CacheEntry<T>> entries;
+    private CacheFile<T> cacheFile = null;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+    private long stale = 0;
+
+    /**
+     * Create the cache
+     *
+     * @param name Name of the cache for output
+     * @param maxSize The maximum number of entries
+     * @param ttl How long the entries are valid for
+     * @param unit The unit of the TTL
+     */
+    public TtlCache(String name, int maxSize, long ttl, TimeUnit unit) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = unit.toMillis(ttl);
+        this.entries = new LinkedHashMap<String, CacheEntry<T>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Set the file to persist the cache to.<p>
+     * The file is not read until {@link #load()} is called.
+     *
+     * @param cacheFile
+     */
+    public synchronized void setCacheFile(CacheFile<T> cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Load the unexpired entries from the cache file.<p>
+     * The file is read outside the lock, entries already in the cache are kept.
+     *
+     * @return The number of entries loaded
+     */
+    public int load() {
+        CacheFile<T> file;
+        synchronized (this) {
+            file = cacheFile;
+        }
+        if (file == null) {
+            return 0;
+        }
+
+        List<CacheRecord<T>> records = file.read();
+        long now = System.currentTimeMillis();
+        int count = 0;
+        synchronized (this) {
+            for (CacheRecord<T> rec : records) {
+                if (rec.getExpires() > now && rec.getValue() != null && !entries.containsKey(rec.getKey())) {
+                    entries.put(rec.getKey(), new CacheEntry<>(rec.getValue(), rec.getExpires()));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write the unexpired entries to the cache file
+     *
+     * @return The size of the file, or 0 if there is no file
+     */
+    public long save() {
+        List<CacheRecord<T>> records = new ArrayList<>();
+        CacheFile<T> file;
+        synchronized (this) {
+            if (cacheFile == null) {
+                return 0;
+            }
+            purgeExpired();
+
+            file = cacheFile;
+            for (Map.Entry<String, CacheEntry<T>> entry : entries.entrySet()) {
+                records.add(new CacheRecord<>(entry.getKey(), entry.getValue().expires, entry.getValue().value));
+            }
+        }
+
+        // Write outside the lock, the records are in least recently used order
+        return file.write(records);
+    }
+
+    /**
+     * Get the value from the cache
+     *
+     * @param key
+     * @return The value, or null if it is not cached or has expired
+     */
+    public synchronized T get(String key) {
+        CacheEntry<T> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (entry.isExpired()) {
+            // Keep the entry as a fallback until it is purged or evicted
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Get the value from the cache even if it has expired.<p>
+     * Used as a fallback when the value cannot be refreshed.
+     *
+     * @param key
+     * @return The value, or null if it is not cached
+     */
+    public synchronized T getStale(String key) {
+        CacheEntry<T> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        stale++;
+        return entry.value;
+    }
+
+    /**
+     * Look at the value in the cache even if it has expired.<p>
+     * Unlike {@link #getStale(String)} this is not counted as a stale serve.
+     *
+     * @param key
+     * @return The value, or null if it is not cached
+     */
+    public synchronized T peek(String key) {
+        CacheEntry<T> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Add a value to the cache. Null values are not cached
+     *
+     * @param key
+     * @param value
+     */
+    public synchronized void put(String key, T value) {
+        if (value != null) {
+            entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * Get all the values in the cache, including any that have expired
+     *
+     * @return A copy of the values
+     */
+    public synchronized List<T> values() {
+        List<T> values = new ArrayList<>(entries.size());
+        for (CacheEntry<T> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Remove all the entries from the cache
+     *
+     * @return The number of entries removed
+     */
+    public synchronized int flush() {
+        int size = entries.size();
+        entries.clear();
+        return size;
+    }
+
+    /**
+     * Remove any expired entries from the cache
+     *
+     * @return The number of entries removed
+     */
+    public synchronized int purgeExpired() {
+        int count = 0;
+        Iterator<CacheEntry<T>> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().isExpired()) {
+                iter.remove();
+                count++;
+            }
+        }
+        expirations += count;
+        return count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Output the state of the cache
+     *
+     * @return
+     */
+    public synchronized String formatOutput() {
+        long total = hits + misses;
+        return String.format("%1$s: %2$d/%3$d entries, TTL %4$d min, %5$d hits, %6$d misses (%7$d%% hit rate), %8$d evictions, %9$d expired, %10$d stale served",
+                name, entries.size(), maxSize, TimeUnit.MILLISECONDS.toMinutes(ttlMillis),
+                hits, misses, total == 0 ? 0 : hits * 100 / total, evictions, expirations, stale);
+    }
+
+    private static final class CacheEntry<T> {
+
+        private final T value;
+        private final long expires;
+
+        CacheEntry(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+}
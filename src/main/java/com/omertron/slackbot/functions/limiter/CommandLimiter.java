@@ -0,0 +1,148 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.limiter;
+
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.utils.PropertiesUtil;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for the user commands.<p>
+ * Each command must get a token from the user's bucket, the channel's bucket
+ * and the command's bucket before it is allowed to run.
+ *
+ * @author Omertron
+ */
+public final class CommandLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandLimiter.class);
+    private static final int MAX_IDLE_BUCKETS = 500;
+
+    private static final Map<String, TokenBucket> USER_BUCKETS = new ConcurrentHashMap<>();
+    private static final Map<String, TokenBucket> CHANNEL_BUCKETS = new ConcurrentHashMap<>();
+    private static final Map<String, TokenBucket> COMMAND_BUCKETS = new ConcurrentHashMap<>();
+    private static final AtomicInteger REJECTED = new AtomicInteger(0);
+
+    private CommandLimiter() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Try to get permission to run a command
+     *
+     * @param userId The Slack ID of the user
+     * @param channelId The Slack ID of the channel
+     * @param command The command word
+     * @return true if the command can run, false if one of the limits has been
+     * reached
+     */
+    public static boolean tryAcquire(String userId, String channelId, String command) {
+        String cmd = command.toLowerCase(Locale.ENGLISH);
+
+        TokenBucket user = USER_BUCKETS.computeIfAbsent(userId, k -> createBucket(Constants.LIMIT_USER, 5, 10));
+        TokenBucket channel = CHANNEL_BUCKETS.computeIfAbsent(channelId, k -> createBucket(Constants.LIMIT_CHANNEL, 10, 20));
+        TokenBucket cmdBucket = COMMAND_BUCKETS.computeIfAbsent(cmd, CommandLimiter::createCommandBucket);
+
+        if (!user.tryConsume()) {
+            return reject("user", userId, command);
+        }
+
+        if (!channel.tryConsume()) {
+            user.refund();
+            return reject("channel", channelId, command);
+        }
+
+        if (!cmdBucket.tryConsume()) {
+            user.refund();
+            channel.refund();
+            return reject("command", cmd, command);
+        }
+
+        prune(USER_BUCKETS);
+        prune(CHANNEL_BUCKETS);
+        return true;
+    }
+
+    private static boolean reject(String type, String key, String command) {
+        REJECTED.incrementAndGet();
+        LOG.info("Command '{}' rejected, {} limit reached for '{}'", command, type, key);
+        return false;
+    }
+
+    /**
+     * Create a bucket from the properties, using "[prefix]Capacity" and
+     * "[prefix]PerMinute"
+     */
+    private static TokenBucket createBucket(String prefix, int defCapacity, int defPerMinute) {
+        return new TokenBucket(PropertiesUtil.getIntProperty(prefix + "Capacity", defCapacity),
+                PropertiesUtil.getIntProperty(prefix + "PerMinute", defPerMinute));
+    }
+
+    /**
+     * Create the bucket for a command, the defaults can be overridden per
+     * command, e.g. "limitCommand.hotCapacity"
+     */
+    private static TokenBucket createCommandBucket(String command) {
+        int capacity = PropertiesUtil.getIntProperty(Constants.LIMIT_COMMAND + "Capacity", 20);
+        int perMinute = PropertiesUtil.getIntProperty(Constants.LIMIT_COMMAND + "PerMinute", 30);
+        String prefix = Constants.LIMIT_COMMAND + "." + command;
+        return new TokenBucket(PropertiesUtil.getIntProperty(prefix + "Capacity", capacity),
+                PropertiesUtil.getIntProperty(prefix + "PerMinute", perMinute));
+    }
+
+    /**
+     * Remove the buckets that are full as they would be recreated the same
+     */
+    private static void prune(Map<String, TokenBucket> buckets) {
+        if (buckets.size() > MAX_IDLE_BUCKETS) {
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+    }
+
+    /**
+     * Output the state of the buckets that are in use
+     *
+     * @return
+     */
+    public static String formatOutput() {
+        StringBuilder sb = new StringBuilder("Rate limits (");
+        sb.append(REJECTED.get()).append(" rejected):\n");
+        appendBuckets(sb, "User", USER_BUCKETS);
+        appendBuckets(sb, "Channel", CHANNEL_BUCKETS);
+        appendBuckets(sb, "Command", COMMAND_BUCKETS);
+        return sb.toString();
+    }
+
+    private static void appendBuckets(StringBuilder sb, String type, Map<String, TokenBucket> buckets) {
+        for (Map.Entry<String, TokenBucket> entry : new TreeMap<>(buckets).entrySet()) {
+            TokenBucket bucket = entry.getValue();
+            if (!bucket.isFull()) {
+                sb.append("\t").append(type).append(" ").append(entry.getKey()).append(": ")
+                        .append(bucket.getAvailable()).append("/").append(bucket.getCapacity()).append("\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple token bucket.<p>
+ * The bucket starts full and is refilled at a constant rate up to its
+ * capacity. Each request takes one token.
+ *
+ * @author Omertron
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final int capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Create a full bucket
+     *
+     * @param capacity The maximum number of tokens (burst size)
+     * @param perMinute The number of tokens added each minute
+     */
+    public TokenBucket(int capacity, int perMinute) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerNano = (double) Math.max(0, perMinute) / NANOS_PER_MINUTE;
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Try to take a token from the bucket
+     *
+     * @return true if a token was available
+     */
+    public synchronized boolean tryConsume() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return a token that was taken but not used
+     */
+    public synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1.0);
+    }
+
+    /**
+     * Get the number of whole tokens available
+     *
+     * @return
+     */
+    public synchronized int getAvailable() {
+        refill();
+        return (int) tokens;
+    }
+
+    /**
+     * Is the bucket full, i.e. has it been idle long enough to be discarded
+     *
+     * @return
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
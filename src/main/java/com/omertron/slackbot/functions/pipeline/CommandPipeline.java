@@ -0,0 +1,355 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.pipeline;
+
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.listeners.BotCommand;
+import com.omertron.slackbot.listeners.CommandDispatcher;
+import com.omertron.slackbot.utils.PropertiesUtil;
+import com.ullink.slack.simpleslackapi.SlackSession;
+import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged pipeline that takes the commands off the Slack event thread.
+ * <p>
+ * Messages are parsed on the event thread, which is cheap, so only real
+ * commands are queued (ingest). A single route thread passes them on to the
+ * channel lanes, which execute them on a worker pool. Commands from the same
+ * channel are executed in order, different channels run in parallel.
+ * <p>
+ * The handlers build and send their replies as part of the execute stage;
+ * the Slack client sends the messages asynchronously itself.
+ *
+ * @author Omertron
+ */
+public final class CommandPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandPipeline.class);
+    private static final int INGEST_CAPACITY = PropertiesUtil.getIntProperty(Constants.PIPELINE_QUEUE_SIZE, 100);
+    private static final int CHANNEL_CAPACITY = PropertiesUtil.getIntProperty(Constants.PIPELINE_CHANNEL_QUEUE_SIZE, 10);
+
+    private static final BlockingQueue<PendingCommand> INGEST_QUEUE = new ArrayBlockingQueue<>(INGEST_CAPACITY);
+    private static final Map<String, ChannelLane> LANES = new ConcurrentHashMap<>();
+
+    // Stage statistics
+    private static final StageStatistics STAT_INGEST = new StageStatistics("Ingest");
+    private static final StageStatistics STAT_PARSE = new StageStatistics("Parse");
+    private static final StageStatistics STAT_WAIT = new StageStatistics("Channel queue");
+    private static final StageStatistics STAT_EXECUTE = new StageStatistics("Execute");
+
+    private static volatile ExecutorService workers = null;
+    private static Thread routeThread = null;
+    private static boolean virtualThreads = false;
+    // Set on the threads running the channel lanes
+    private static final ThreadLocal<Boolean> IN_WORKER = new ThreadLocal<>();
+
+    private CommandPipeline() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Start the route thread and the worker pool
+     */
+    public static synchronized void start() {
+        if (routeThread != null) {
+            return;
+        }
+
+        workers = createWorkers();
+        routeThread = new Thread(CommandPipeline::routeLoop, "pipeline-route");
+        routeThread.setDaemon(true);
+        routeThread.start();
+        LOG.info("Command pipeline started with {} threads, queue size {}, channel queue size {}",
+                virtualThreads ? "virtual" : "platform", INGEST_CAPACITY, CHANNEL_CAPACITY);
+    }
+
+    /**
+     * Stop the pipeline, allowing a short time for running commands to finish.<p>
+     * If called by a command (e.g. quit) the pipeline is not waited for, as it
+     * would be waiting for itself.
+     */
+    public static synchronized void stop() {
+        if (routeThread == null) {
+            return;
+        }
+
+        routeThread.interrupt();
+        routeThread = null;
+        workers.shutdown();
+        if (Boolean.TRUE.equals(IN_WORKER.get())) {
+            LOG.info("Command pipeline stopped from a command, not waiting for it");
+            return;
+        }
+
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            LOG.warn("Interrupted waiting for the command pipeline to stop");
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("Command pipeline stopped");
+    }
+
+    /**
+     * Parse a message on the event thread and queue it if it is a command
+     *
+     * @param dispatcher The dispatcher to parse the message with
+     * @param session
+     * @param event
+     */
+    public static void submit(CommandDispatcher dispatcher, SlackSession session, SlackMessagePosted event) {
+        long start = System.nanoTime();
+        BotCommand command;
+        try {
+            command = dispatcher.parse(session, event);
+        } catch (RuntimeException ex) {
+            LOG.warn("Failed to parse message '{}': {}", event.getMessageContent(), ex.getMessage(), ex);
+            return;
+        } finally {
+            STAT_PARSE.completed(start);
+        }
+
+        if (command == null) {
+            return;
+        }
+
+        if (!INGEST_QUEUE.offer(new PendingCommand(command))) {
+            STAT_INGEST.rejected();
+            LOG.warn("Command queue is full ({} commands), dropping {}", INGEST_CAPACITY, command);
+            return;
+        }
+        STAT_INGEST.queued();
+        LOG.info("Parsed {}", command);
+    }
+
+    /**
+     * Get the executor for replies that are sent once a background call has
+     * finished, so they are not sent on the thread that made the call.<p>
+     * The replies are run on the worker pool, or on the calling thread if the
+     * pipeline is not running.
+     *
+     * @return
+     */
+    public static Executor getReplyExecutor() {
+        return task -> {
+            ExecutorService current = workers;
+            if (current != null) {
+                try {
+                    current.execute(task);
+                    return;
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Command pipeline is stopping, sending the reply directly");
+                }
+            }
+            task.run();
+        };
+    }
+
+    /**
+     * Take commands off the ingest queue and pass them on to the channel lanes
+     */
+    private static void routeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            PendingCommand pending;
+            try {
+                pending = INGEST_QUEUE.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            STAT_INGEST.dequeued();
+            STAT_INGEST.completed(pending.queuedNanos);
+
+            // An idle lane may be closed as it is found, if so use a new one
+            while (!LANES.computeIfAbsent(pending.command.getChannelId(), ChannelLane::new).offer(pending.command)) {
+                LOG.trace("Channel lane closed, retrying");
+            }
+        }
+        LOG.info("Command route thread finished");
+    }
+
+    /**
+     * Create the executor for the commands.<p>
+     * Virtual threads are used if the JVM supports them, as the commands spend
+     * most of their time waiting on BGG, Google or Slack.
+     *
+     * @return
+     */
+    private static ExecutorService createWorkers() {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtualThreads = true;
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOG.debug("Virtual threads are not available: {}", ex.getMessage());
+        }
+
+        virtualThreads = false;
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Output the statistics for the pipeline stages
+     *
+     * @return
+     */
+    public static String status() {
+        StringBuilder sb = new StringBuilder("Command pipeline (");
+        sb.append(virtualThreads ? "virtual" : "platform").append(" threads, ")
+                .append(LANES.size()).append(" active channels):\n");
+        for (StageStatistics stat : new StageStatistics[]{STAT_PARSE, STAT_INGEST, STAT_WAIT, STAT_EXECUTE}) {
+            sb.append("\t").append(stat.formatOutput()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A command waiting to be routed to its channel
+     */
+    private static final class PendingCommand {
+
+        private final BotCommand command;
+        private final long queuedNanos;
+
+        PendingCommand(BotCommand command) {
+            this.command = command;
+            this.queuedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Executes the commands for a single channel one at a time, in the order
+     * they were received.<p>
+     * The lane removes itself when it runs out of commands.
+     */
+    private static final class ChannelLane implements Runnable {
+
+        private final String channelId;
+        private final Queue<BotCommand> commands = new ArrayDeque<>();
+        private final Queue<Long> queuedTimes = new ArrayDeque<>();
+        private boolean running = false;
+        private boolean closed = false;
+
+        ChannelLane(String channelId) {
+            this.channelId = channelId;
+        }
+
+        /**
+         * Add a command to the lane, starting the lane if it is idle
+         *
+         * @param command
+         * @return False if the lane has been closed and the command must be
+         * offered to a new lane
+         */
+        synchronized boolean offer(BotCommand command) {
+            if (closed) {
+                return false;
+            }
+
+            if (commands.size() >= CHANNEL_CAPACITY) {
+                STAT_WAIT.rejected();
+                LOG.warn("Channel {} has {} commands waiting, dropping {}", channelId, commands.size(), command);
+                return true;
+            }
+
+            commands.add(command);
+            queuedTimes.add(System.nanoTime());
+            STAT_WAIT.queued();
+
+            if (!running) {
+                running = true;
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException ex) {
+                    // The pipeline has stopped, so nothing in the lane can run
+                    LOG.warn("Channel {} could not be started, dropping {} commands: {}", channelId, commands.size(), ex.getMessage());
+                    for (int i = commands.size(); i > 0; i--) {
+                        STAT_WAIT.dequeued();
+                        STAT_WAIT.rejected();
+                    }
+                    commands.clear();
+                    queuedTimes.clear();
+                    running = false;
+                    closed = true;
+                    LANES.remove(channelId, this);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            IN_WORKER.set(Boolean.TRUE);
+            try {
+                runCommands();
+            } finally {
+                IN_WORKER.remove();
+            }
+        }
+
+        private void runCommands() {
+            while (true) {
+                BotCommand command;
+                synchronized (this) {
+                    command = commands.poll();
+                    if (command == null) {
+                        // Idle, so remove the lane until the channel has another command
+                        running = false;
+                        closed = true;
+                        LANES.remove(channelId, this);
+                        return;
+                    }
+                    STAT_WAIT.dequeued();
+                    STAT_WAIT.completed(queuedTimes.poll());
+                }
+
+                long start = System.nanoTime();
+                try {
+                    command.execute();
+                } catch (RuntimeException ex) {
+                    LOG.warn("Failed to execute {}: {}", command, ex.getMessage(), ex);
+                } finally {
+                    STAT_EXECUTE.completed(start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth and timing statistics for a stage of the command pipeline
+ *
+ * @author Omertron
+ */
+public class StageStatistics {
+
+    private final String name;
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    private final AtomicLong processed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+    public StageStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * An item has been queued for this stage
+     */
+    public void queued() {
+        queueDepth.incrementAndGet();
+    }
+
+    /**
+     * An item has been taken off the queue for this stage
+     */
+    public void dequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * An item was rejected because the stage queue was full
+     */
+    public void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Record the time spent processing an item in this stage
+     *
+     * @param startNanos The System.nanoTime() the processing started
+     */
+    public void completed(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        processed.incrementAndGet();
+        totalNanos.addAndGet(elapsed);
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Average time spent in the stage
+     *
+     * @return Time in milliseconds
+     */
+    public long getAverageMillis() {
+        long count = processed.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / count);
+    }
+
+    /**
+     * Longest time spent in the stage
+     *
+     * @return Time in milliseconds
+     */
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * Format the statistics for output
+     *
+     * @return
+     */
+    public String formatOutput() {
+        return new StringBuilder(name)
+                .append(": queued ").append(getQueueDepth())
+                .append(", processed ").append(getProcessed())
+                .append(", rejected ").append(getRejected())
+                .append(", avg ").append(getAverageMillis()).append("ms")
+                .append(", max ").append(getMaxMillis()).append("ms")
+                .toString();
+    }
+}
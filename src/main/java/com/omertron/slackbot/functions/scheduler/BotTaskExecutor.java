@@ -21,14 +21,23 @@ package com.omertron.slackbot.functions.scheduler;
 
 import com.omertron.slackbot.Constants;
 import com.omertron.slackbot.SlackBot;
+import com.omertron.slackbot.enumeration.RequestPriority;
+import com.omertron.slackbot.functions.bgg.RequestScheduler;
+import com.omertron.slackbot.listeners.GoogleSheetsListener;
 import com.omertron.slackbot.utils.PropertiesUtil;
+import com.ullink.slack.simpleslackapi.SlackAttachment;
 import com.ullink.slack.simpleslackapi.SlackChannel;
 import com.ullink.slack.simpleslackapi.SlackPreparedMessage;
 import com.ullink.slack.simpleslackapi.SlackSession;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,9 +50,18 @@ public class BotTaskExecutor {
     private static final int START_HOUR;
     private static final int START_MIN;
 
-    // Get a single thread to execute the messages
-    private static final ScheduledExecutorService EXECUTOR_SERVICE = Executors.newScheduledThreadPool(1);
+    // Get a thread to execute the messages and one for the periodic tasks.
+    // Any BGG requests from the tasks are background requests
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(0);
+    private static final ScheduledExecutorService EXECUTOR_SERVICE = Executors.newScheduledThreadPool(2,
+            r -> new Thread(() -> RequestScheduler.runAs(RequestPriority.BACKGROUND, r), "bot-task-" + THREAD_COUNT.incrementAndGet()));
+    // The sheet poll runs often, so it has its own thread to keep it clear of the longer tasks
+    private static final ScheduledExecutorService SHEET_POLL_SERVICE = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(() -> RequestScheduler.runAs(RequestPriority.BACKGROUND, r), "sheet-poll"));
     private static final List<BotTaskInterface> TASKS = new ArrayList<>();
+    private static final Map<String, ScheduledFuture<?>> PERIODIC_TASKS = new TreeMap<>();
+    // The unit each periodic task was scheduled in, for the status
+    private static final Map<String, TimeUnit> PERIODIC_UNITS = new TreeMap<>();
 
     static {
         START_HOUR = PropertiesUtil.getIntProperty(Constants.BOT_START_HOUR, 8);
@@ -81,6 +99,14 @@ public class BotTaskExecutor {
         } else {
             TASKS.add(new WbbBotTask(EXECUTOR_SERVICE, "WBB", START_HOUR, START_MIN, session, channelBotMain));
         }
+        // Mirror the group's collections, after the start up has settled
+        schedulePeriodic("COLLECTION SYNC", new CollectionSyncTask(session, channelBotMain), 5,
+                PropertiesUtil.getIntProperty(Constants.COLLECTION_SYNC_INTERVAL, 360), TimeUnit.MINUTES);
+        // Look for changes to the next game on the sheet
+        int pollInterval = PropertiesUtil.getIntProperty(Constants.SHEET_POLL_INTERVAL, 60);
+        if (pollInterval > 0) {
+            schedulePeriodic(SHEET_POLL_SERVICE, "SHEET POLL", GoogleSheetsListener::pollSheetChanges, pollInterval, pollInterval, TimeUnit.SECONDS);
+        }
 
         channelBotMain = session.findChannelByName(Constants.BOT_MAIN_CHANNEL);
         if (channelBotMain == null) {
@@ -107,11 +133,64 @@ public class BotTaskExecutor {
             message.addAttachment(bti.getStatus());
         }
 
+        synchronized (PERIODIC_TASKS) {
+            for (Map.Entry<String, ScheduledFuture<?>> entry : PERIODIC_TASKS.entrySet()) {
+                SlackAttachment sa = new SlackAttachment();
+                sa.setTitle("Periodic [" + entry.getKey() + "]");
+                TimeUnit unit = PERIODIC_UNITS.get(entry.getKey());
+                sa.setText("Next run in " + entry.getValue().getDelay(unit) + " " + unit.name().toLowerCase());
+                message.addAttachment(sa);
+            }
+        }
+
         return message.build();
     }
 
     /**
-     * Stop all the tasks
+     * Schedule a task to run repeatedly
+     *
+     * @param name The name of the task
+     * @param task The task to run
+     * @param initialDelay The time before the first run
+     * @param period The time between runs
+     * @param unit The unit of the delay and period
+     */
+    public static void schedulePeriodic(String name, Runnable task, long initialDelay, long period, TimeUnit unit) {
+        schedulePeriodic(EXECUTOR_SERVICE, name, task, initialDelay, period, unit);
+    }
+
+    /**
+     * Schedule a task to run repeatedly on the given executor
+     *
+     * @param executor The executor to run the task on
+     * @param name The name of the task
+     * @param task The task to run
+     * @param initialDelay The time before the first run
+     * @param period The time between runs
+     * @param unit The unit of the delay and period
+     */
+    private static void schedulePeriodic(ScheduledExecutorService executor, String name, Runnable task, long initialDelay, long period, TimeUnit unit) {
+        LOG.info("Scheduling periodic task {} every {} {}", name, period, unit);
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                // Stop the exception from cancelling the future runs
+                LOG.warn("Periodic task {} failed: {}", name, ex.getMessage(), ex);
+            }
+        };
+
+        synchronized (PERIODIC_TASKS) {
+            ScheduledFuture<?> previous = PERIODIC_TASKS.put(name, executor.scheduleAtFixedRate(safeTask, initialDelay, period, unit));
+            PERIODIC_UNITS.put(name, unit);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Start all the tasks
      */
     public final void startAll() {
         for (BotTaskInterface bt : TASKS) {
@@ -135,6 +214,7 @@ public class BotTaskExecutor {
             bt.stop();
         }
         EXECUTOR_SERVICE.shutdown();
+        SHEET_POLL_SERVICE.shutdown();
     }
 
 }
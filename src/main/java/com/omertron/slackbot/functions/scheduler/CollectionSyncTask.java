@@ -0,0 +1,144 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.scheduler;
+
+import com.omertron.slackbot.Constants;
+import com.omertron.slackbot.SlackBot;
+import com.omertron.slackbot.listeners.AbstractListener;
+import com.omertron.slackbot.listeners.GoogleSheetsListener;
+import com.ullink.slack.simpleslackapi.SlackChannel;
+import com.ullink.slack.simpleslackapi.SlackSession;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keep the collections of the group members mirrored from BGG.<p>
+ * The collections are all requested at once and the task does not wait for
+ * them, the rest of the sync runs as they complete. After each sync the
+ * mirrors of anyone no longer on the sheet are removed, the ownership index
+ * is rebuilt and any games that have been added to the collections are
+ * posted to the channel.
+ *
+ * @author Omertron
+ */
+public class CollectionSyncTask implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionSyncTask.class);
+    private final SlackSession session;
+    private final SlackChannel channel;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * Create the task
+     *
+     * @param session The session to post the new games with
+     * @param channel The channel to post the new games to, can be null
+     */
+    public CollectionSyncTask(SlackSession session, SlackChannel channel) {
+        this.session = session;
+        this.channel = channel;
+    }
+
+    @Override
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            LOG.info("The last collection sync has not finished, skipping this one");
+            return;
+        }
+
+        Map<String, String> members;
+        Map<String, CompletableFuture<Map<Integer, String>>> syncs = new TreeMap<>();
+        try {
+            members = GoogleSheetsListener.getBggUsernames();
+            LOG.info("Syncing the collections of {} members", members.size());
+            for (Map.Entry<String, String> member : members.entrySet()) {
+                syncs.put(member.getKey(), AbstractListener.syncCollection(member.getValue()));
+            }
+        } catch (RuntimeException ex) {
+            running.set(false);
+            throw ex;
+        }
+
+        CompletableFuture.allOf(syncs.values().toArray(new CompletableFuture<?>[syncs.size()]))
+                .handle((ignored, ex) -> finishSync(members, syncs))
+                .thenCompose(acquisitions -> GoogleSheetsListener.refreshOwnership().thenApply(done -> acquisitions))
+                .whenComplete((acquisitions, ex) -> {
+                    running.set(false);
+                    if (ex != null) {
+                        LOG.warn("Failed to finish the collection sync: {}", ex.getMessage(), ex);
+                    } else if (!acquisitions.isEmpty()) {
+                        sendDigest(acquisitions);
+                    }
+                });
+    }
+
+    /**
+     * Collect the new games once all the syncs have completed and remove the
+     * mirrors of anyone who has left
+     *
+     * @return The new games for each member
+     */
+    private Map<String, Map<Integer, String>> finishSync(Map<String, String> members, Map<String, CompletableFuture<Map<Integer, String>>> syncs) {
+        Map<String, Map<Integer, String>> acquisitions = new TreeMap<>();
+        int failed = 0;
+        for (Map.Entry<String, CompletableFuture<Map<Integer, String>>> sync : syncs.entrySet()) {
+            try {
+                Map<Integer, String> added = sync.getValue().join();
+                if (!added.isEmpty()) {
+                    acquisitions.put(sync.getKey(), added);
+                }
+            } catch (CompletionException ex) {
+                LOG.warn("Failed to sync the collection for '{}': {}", members.get(sync.getKey()), ex.getMessage());
+                failed++;
+            }
+        }
+
+        int removed = AbstractListener.retainMirrors(members.values());
+        LOG.info("Synced {} collections, {} failed, {} with new games, {} removed", members.size() - failed, failed, acquisitions.size(), removed);
+        return acquisitions;
+    }
+
+    private void sendDigest(Map<String, Map<Integer, String>> acquisitions) {
+        StringBuilder sb = new StringBuilder("New games in the group's collections:");
+        for (Map.Entry<String, Map<Integer, String>> member : acquisitions.entrySet()) {
+            sb.append("\n*").append(member.getKey()).append("*: ");
+            boolean first = true;
+            for (Map.Entry<Integer, String> game : member.getValue().entrySet()) {
+                if (first) {
+                    first = false;
+                } else {
+                    sb.append(", ");
+                }
+                sb.append(SlackBot.formatLink(Constants.BGG_LINK_GAME + game.getKey(), game.getValue()));
+            }
+        }
+
+        if (channel == null) {
+            LOG.info("No channel to send the digest to:\n{}", sb);
+        } else {
+            session.sendMessage(channel, sb.toString());
+        }
+    }
+}
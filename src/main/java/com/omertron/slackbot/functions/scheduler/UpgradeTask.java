@@ -22,6 +22,8 @@ package com.omertron.slackbot.functions.scheduler;
 import com.omertron.slackbot.Constants;
 import com.omertron.slackbot.SlackBot;
 import com.omertron.slackbot.enumeration.ExitCode;
+import com.omertron.slackbot.enumeration.Upstream;
+import com.omertron.slackbot.functions.CircuitBreaker;
 import com.omertron.slackbot.utils.GitRepositoryState;
 import com.omertron.slackbot.utils.HttpTools;
 import com.omertron.slackbot.utils.PropertiesUtil;
@@ -53,6 +55,7 @@ public class UpgradeTask extends AbstractBotTask {
 
     private static final Logger LOG = LoggerFactory.getLogger(UpgradeTask.class);
     private static HttpTools httpTools;
+    private static final CircuitBreaker BREAKER = CircuitBreaker.get(Upstream.GITHUB);
     private static final long DIFFERENCE_THRESHOLD = 5l;
     private static final String PROP_BOT_RESTART_DAILY = "botRestartDaily";
     private static final long BOT_RESTART_PERIOD = TimeUnit.HOURS.toMinutes(23l) + 45l;
@@ -151,28 +154,38 @@ public class UpgradeTask extends AbstractBotTask {
      * @return LocalDateTime
      */
     private LocalDateTime getLastCommitDate() {
-        // Get the main URL
+        if (!BREAKER.allowRequest()) {
+            LOG.warn("GitHub circuit is open, not checking for a new commit");
+            return null;
+        }
+
         String page;
+        String error = "Failed to read the GitHub pages";
+        boolean success = false;
         try {
+            // Get the main URL
             page = httpTools.retrieveWebpage(HttpTools.createUrl(URL_GIT_MASTER));
-        } catch (ApiException ex) {
-            LOG.warn("Failed to retieve Git page", ex);
-            return null;
-        }
 
-        int startLoc = page.indexOf("/commits/");
-        int endLoc = page.indexOf("\"", startLoc);
+            int startLoc = page.indexOf("/commits/");
+            int endLoc = page.indexOf("\"", startLoc);
 
-        String urlString = page.substring(startLoc, endLoc);
-        try {
+            String urlString = page.substring(startLoc, endLoc);
             page = httpTools.retrieveWebpage(HttpTools.createUrl(URL_GIT_COMMIT + urlString));
+            success = true;
         } catch (ApiException ex) {
-            LOG.warn("Failed to retieve Git commit page", ex);
+            LOG.warn("Failed to retieve Git page", ex);
+            error = ex.getMessage();
             return null;
+        } finally {
+            if (success) {
+                BREAKER.recordSuccess();
+            } else {
+                BREAKER.recordFailure(error);
+            }
         }
 
-        startLoc = page.lastIndexOf("\"date\":") + 8;
-        endLoc = page.indexOf("\"", startLoc);
+        int startLoc = page.lastIndexOf("\"date\":") + 8;
+        int endLoc = page.indexOf("\"", startLoc);
 
         LocalDateTime ldtCommit = LocalDateTime.parse(page.subSequence(startLoc, endLoc - 1));
 
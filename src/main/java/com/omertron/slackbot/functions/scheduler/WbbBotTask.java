@@ -41,8 +41,8 @@ public class WbbBotTask extends AbstractBotTask {
     public void doWork() {
         LOG.info("{} is running", getName());
 
-        // Get the game information to display, update it just in case things have changed.
-        SheetInfo sheetInfo = GoogleSheetsListener.getSheetInfo(true);
+        // Get the game information to display, the poller keeps it up to date
+        SheetInfo sheetInfo = GoogleSheetsListener.getSheetInfo();
         LOG.info("Date of next game is {}", sheetInfo.getFormattedDate("EEEE, d MMMM YYYY"));
 
         LocalDate now = LocalDate.now();
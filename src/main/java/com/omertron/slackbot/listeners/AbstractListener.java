@@ -19,10 +19,12 @@
  */
 package com.omertron.slackbot.listeners;
 
-import com.omertron.bgg.BggApi;
+import com.omertron.slackbot.functions.bgg.BggGateway;
 import com.ullink.slack.simpleslackapi.SlackSession;
 import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
-import com.ullink.slack.simpleslackapi.listeners.SlackMessagePostedListener;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -30,12 +32,55 @@ import org.apache.commons.lang3.StringUtils;
  *
  * @author Omertron
  */
-public abstract class AbstractListener implements SlackMessagePostedListener {
+public abstract class AbstractListener implements CommandHandler {
 
-    protected static final BggApi BGG = new BggApi();
+    protected static final BggGateway BGG = new BggGateway();
     protected static final String E_GREY_EXCLAMATION = "grey_exclamation";
     protected static final String E_GAME_DIE = "game_die";
 
+    /**
+     * Output the BGG request statistics
+     *
+     * @return
+     */
+    public static String getBggStatus() {
+        return BGG.formatOutput();
+    }
+
+    /**
+     * Save the BGG caches to disk
+     */
+    public static void saveBggCache() {
+        BGG.saveCaches();
+    }
+
+    /**
+     * Sync the mirrored collection for the BGG user
+     *
+     * @param username
+     * @return A future with the games added since the last sync
+     */
+    public static CompletableFuture<Map<Integer, String>> syncCollection(String username) {
+        return BGG.syncCollection(username);
+    }
+
+    /**
+     * Stop mirroring the collections of any users not in the list
+     *
+     * @param usernames The BGG users to keep
+     * @return The number of collections removed
+     */
+    public static int retainMirrors(Collection<String> usernames) {
+        return BGG.retainMirrors(usernames);
+    }
+
+    /**
+     * Refresh the BGG hot list snapshots
+     */
+    public static void refreshHotLists() {
+        BGG.refreshHotLists();
+    }
+
     /**
      * Add a reaction to the message that called us and send the "typing..."
      * indicator
@@ -33,19 +33,29 @@ import com.omertron.bgg.model.SearchWrapper;
 import com.omertron.bgg.model.Thing;
 import com.omertron.bgg.model.UserInfo;
 import com.omertron.slackbot.Constants;
-import static com.omertron.slackbot.Constants.DELIM_LEFT;
-import static com.omertron.slackbot.Constants.DELIM_RIGHT;
+import com.omertron.slackbot.SlackBot;
 import com.omertron.slackbot.enumeration.ExitCode;
 import com.omertron.slackbot.enumeration.StatCategory;
 import com.omertron.slackbot.functions.BotStatistics;
 import com.omertron.slackbot.functions.BotWelcome;
+import com.omertron.slackbot.functions.CollectionPager;
 import com.omertron.slackbot.functions.Meetup;
+import com.omertron.slackbot.functions.bgg.CollectionQuery;
+import com.omertron.slackbot.functions.bgg.GameFacetIndex;
+import com.omertron.slackbot.functions.bgg.HotListSnapshot;
+import com.omertron.slackbot.functions.pipeline.CommandPipeline;
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import com.omertron.slackbot.utils.MessageTemplate;
 import com.omertron.slackbot.utils.PropertiesUtil;
 import com.ullink.slack.simpleslackapi.*;
 import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -62,88 +72,82 @@ import org.yamj.api.common.exception.ApiException;
 public class BoardGameListener extends AbstractListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(BoardGameListener.class);
-    private static final Pattern PAT_COMMAND;
-    private static final Pattern PAT_ADMIN;
+    private static final List<String> COMMANDS = new ArrayList<>();
+    private static final List<String> ADMIN_COMMANDS = new ArrayList<>();
     private static final Pattern PAT_COLL_PARAM = Pattern.compile("^(\\w*)(\\s(.+))?$");
+    private static final Pattern PAT_COLL_PAGE = Pattern.compile("^page:(\\d+)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PAT_COLL_IDS = Pattern.compile("^[\\d,\\s]+$");
+    private static final int COLL_PAGE_SIZE = 75;
+    private static final int DETAIL_PART_SIZE = 10;
+    private static final int COLL_PAGE_BYTES = PropertiesUtil.getIntProperty(Constants.COLLECTION_PAGE_BYTES, 7000);
+    private static final long PAGER_MAX_AGE = 60;
+    private static final Map<String, CollectionPager> PAGERS = new ConcurrentHashMap<>();
     private static final String BGG_ID = "BGG ID";
     private static final String USERNAME = "username";
     private static final String INFORMATION_ON = "Information on ";
     private static final String UNKNOWN = " (Unknown)";
+    private static final MessageTemplate RANKED_FORMAT = MessageTemplate.compile("%1$2d-%2$s (<%3$s%4$d|%4$d>)");
+    private static final MessageTemplate TITLE_YEAR_FORMAT = MessageTemplate.compile("%1$s (%2$d)");
+    private static final int DID_YOU_MEAN = 5;
+    private static final int MAX_DETAIL_RESULTS = 25;
 
     static {
-        List<String> commands = new ArrayList<>();
-        commands.add("search");
+        COMMANDS.add("search");
         HelpListener.addHelpMessage(10, "search", "game name", "Search for games called *<game name>*.\nThis does not need to be the exact name of the game.", false);
-        commands.add("game");
+        HelpListener.addHelpMessage(13, "search", "mechanic:deck-building players:4 time:60",
+                "Search the games I have looked up by *mechanic*, *category*, *designer*, *players* or *time* (at most that many minutes).\nAny other words are searched for in the description.", false);
+        COMMANDS.add("game");
         HelpListener.addHelpMessage(11, "game", BGG_ID, "Get information about the game with this *<BGG ID>*.", false);
         HelpListener.addHelpMessage(12, "game", "game title", "Get information about *<game title>*.\nThis must be the exact name of the game as per BGG.", false);
-        commands.add("coll");
+        COMMANDS.add("coll");
         HelpListener.addHelpMessage(15, "coll", USERNAME, "Get a list of the owned games for a BGG user.", false);
         HelpListener.addHelpMessage(16, "coll", new String[]{USERNAME, "ID list"},
                 "Get a list of the owned games for a BGG user that match the ID list.", false);
-        commands.add("user");
+        HelpListener.addHelpMessage(17, "coll", new String[]{USERNAME, "page:N"}, "Get page *<N>* of the owned games for a BGG user.\nUse *ALL* instead to list every page.", false);
+        HelpListener.addHelpMessage(18, "coll", new String[]{USERNAME, "sort:rating filter:unplayed limit:20"},
+                "Sort and filter the games in a BGG user's collection.\nSort by *name*, *rating*, *plays* or *year*, add *:asc* or *:desc* to change the order.\n"
+                + "Filter on *played*, *unplayed*, *rated*, *unrated* or an owner status such as *wishlist* or *trade*.\nSeveral filters, e.g. *filter:own,trade*, only list the games that match all of them.", false);
+        COMMANDS.add("next");
+        HelpListener.addHelpMessage(19, "next", "", "Get the next page of the last collection listed in the channel.", false);
+        COMMANDS.add("user");
         HelpListener.addHelpMessage(20, "user", USERNAME, "Get information on a BGG user.", false);
         if (PropertiesUtil.getBooleanProperty(Constants.MEETUP_ENABLE, true)) {
-            commands.add("meetup");
+            COMMANDS.add("meetup");
             HelpListener.addHelpMessage(25, "meetup", new String[]{"Quantity", "DETAILED"}, "Get a list of the *<Quantity>* upcoming MeetUps.\nAdd the *<Detailed>* keyword to get more information.", false);
         }
-        commands.add("hot");
+        COMMANDS.add("hot");
         HelpListener.addHelpMessage(26, "hot", new String[]{"boardgame", "person", "company"}, "Get the top 10 items from the category passed.\nDefault, if empty, is boardgames.", false);
 
-        String regex = new StringBuilder("(?i)")
-                .append("\\").append(DELIM_LEFT).append("\\").append(DELIM_LEFT)
-                .append("(").append(StringUtils.join(commands, "|")).append(")(?:\\W*)(.*)")
-                .append("\\").append(DELIM_RIGHT).append("\\").append(DELIM_RIGHT)
-                .toString();
+        LOG.info("Commands: {}", COMMANDS);
 
-        LOG.info("Command Pattern: {}", regex);
-        PAT_COMMAND = Pattern.compile(regex);
-
-        commands.clear();
-        commands.add("welcome");
+        ADMIN_COMMANDS.add("cache");
+        HelpListener.addHelpMessage(94, "cache", new String[]{"FLUSH", "cache name"}, "Show the BGG cache statistics.\nAdd *<FLUSH>* to empty the caches, or just the named cache.", true);
+        ADMIN_COMMANDS.add("welcome");
         HelpListener.addHelpMessage(97, "welcome", "user", "Send welcome message to *<user>*", true);
-        commands.add("restart");
+        ADMIN_COMMANDS.add("restart");
         HelpListener.addHelpMessage(98, "restart", "", "Shutdown and restart the bot.\nThis is used to upgrade the bot to the latest version", true);
-        commands.add("quit");
+        ADMIN_COMMANDS.add("quit");
         HelpListener.addHelpMessage(99, "quit", "", "Shutdown the bot.\nNote the bot will need to be manually restarted", true);
 
-        // (?:<.+?>\W+|\[\[){1}?(quit|restart)(.*?)(?:\]\])?$
-        regex = new StringBuilder("(?:<.+?>\\W+|")
-                .append("\\").append(DELIM_LEFT).append("\\").append(DELIM_LEFT)
-                .append("){1}?(")
-                .append(StringUtils.join(commands, "|"))
-                .append(")(.*?)(?:")
-                .append("\\").append(DELIM_RIGHT).append("\\").append(DELIM_RIGHT)
-                .append(")?$")
-                .toString();
-
-        LOG.info("Admin Pattern: {}", regex);
-        PAT_ADMIN = Pattern.compile(regex);
+        LOG.info("Admin Commands: {}", ADMIN_COMMANDS);
     }
 
     @Override
-    public void onEvent(SlackMessagePosted event, SlackSession session) {
-        // Channel On Which Message Was Posted
-        SlackChannel msgChannel = event.getChannel();
-        String msgContent = event.getMessageContent();
-        SlackUser msgSender = event.getSender();
-
-        // Filter out the bot's own messages
-        if (session.sessionPersona().getId().equals(event.getSender().getId())) {
-            return;
-        }
+    public List<String> getCommands() {
+        return COMMANDS;
+    }
 
-        // Search for a user commnd pattern
-        Matcher mCmd = PAT_COMMAND.matcher(msgContent);
-        if (mCmd.matches()) {
-            userCommand(session, msgChannel, event, msgSender, mCmd);
-            return;
-        }
+    @Override
+    public List<String> getAdminCommands() {
+        return ADMIN_COMMANDS;
+    }
 
-        // Search for a direct command pattern
-        Matcher mAdmin = PAT_ADMIN.matcher(msgContent);
-        if (mAdmin.matches()) {
-            adminCommand(session, msgChannel, msgSender, mAdmin);
+    @Override
+    public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params) {
+        if (ADMIN_COMMANDS.contains(command.toLowerCase())) {
+            adminCommand(session, event.getChannel(), event.getSender(), command, params);
+        } else {
+            userCommand(session, event.getChannel(), event, event.getSender(), command, params);
         }
     }
 
@@ -152,13 +156,12 @@ public class BoardGameListener extends AbstractListener {
      *
      * @param session
      * @param msgChannel
+     * @param event
      * @param msgSender
-     * @param mCmd
+     * @param command
+     * @param query
      */
-    private void userCommand(SlackSession session, SlackChannel msgChannel, SlackMessagePosted event, SlackUser msgSender, Matcher mCmd) {
-        String command = mCmd.group(1).toUpperCase();
-        String query = mCmd.group(2);
-
+    private void userCommand(SlackSession session, SlackChannel msgChannel, SlackMessagePosted event, SlackUser msgSender, String command, String query) {
         LOG.info("Command '{}', query '{}'", command, query);
 
         switch (command) {
@@ -182,6 +185,10 @@ public class BoardGameListener extends AbstractListener {
                 BotStatistics.increment(StatCategory.COLLECTION, msgSender.getUserName());
                 commandCollection(session, msgChannel, query);
                 break;
+            case "NEXT":
+                BotStatistics.increment(StatCategory.COLLECTION, msgSender.getUserName());
+                commandNext(session, msgChannel);
+                break;
             case "MEETUP":
                 botUpdateChannel(session, event, E_GREY_EXCLAMATION);
                 BotStatistics.increment(StatCategory.MEETUP, msgSender.getUserName());
@@ -203,13 +210,11 @@ public class BoardGameListener extends AbstractListener {
      * @param session
      * @param msgChannel
      * @param msgSender
-     * @param mAdmin
+     * @param command
+     * @param params
      */
-    private void adminCommand(SlackSession session, SlackChannel msgChannel, SlackUser msgSender, Matcher mAdmin) {
-        String command = mAdmin.group(1).toUpperCase();
-        String params = mAdmin.group(2);
-
-        if (msgSender.isAdmin()) {
+    private void adminCommand(SlackSession session, SlackChannel msgChannel, SlackUser msgSender, String command, String params) {
+        if (SlackBot.isBotAdmin(msgSender)) {
             LOG.info("Command '{}' recieved from '{}' ({}) with params '{}'", command, msgSender.getUserName(), msgSender.getId(), params);
             BotStatistics.writeFile();
             switch (command) {
@@ -222,6 +227,9 @@ public class BoardGameListener extends AbstractListener {
                 case "WELCOME":
                     adminWelcome(params, session, msgChannel);
                     break;
+                case "CACHE":
+                    adminCache(params, session, msgChannel);
+                    break;
                 default:
                     LOG.info("Unknown command '{}' received from {}", command, msgSender.getUserName());
             }
@@ -252,6 +260,24 @@ public class BoardGameListener extends AbstractListener {
         com.omertron.slackbot.SlackBot.shutdown(quit ? ExitCode.QUIT : ExitCode.RESTART);
     }
 
+    /**
+     * Show or flush the BGG caches
+     *
+     * @param params
+     * @param session
+     * @param channel
+     */
+    private void adminCache(String params, SlackSession session, SlackChannel channel) {
+        String[] words = StringUtils.split(StringUtils.trimToEmpty(params));
+        if (words.length > 0 && "FLUSH".equalsIgnoreCase(words[0])) {
+            String name = words.length > 1 ? words[1] : null;
+            int count = BGG.flushCache(name);
+            session.sendMessage(channel, String.format("Flushed %1$d entries from %2$s", count, name == null ? "all caches" : name));
+        } else {
+            session.sendMessage(channel, BGG.formatCacheOutput());
+        }
+    }
+
     /**
      * Send out a welcome message.
      *
@@ -290,6 +316,11 @@ public class BoardGameListener extends AbstractListener {
         LOG.info("Search request for '{}'", query);
         session.sendTyping(msgChannel);
 
+        if (GameFacetIndex.isFacetQuery(query)) {
+            searchGameDetails(session, msgChannel, query);
+            return;
+        }
+
         try {
             results = BGG.searchBoardGame(query, false, false);
             LOG.info("Got {} results for '{}'", results.getTotal(), query);
@@ -299,12 +330,12 @@ public class BoardGameListener extends AbstractListener {
             return;
         } catch (BggException ex) {
             LOG.warn("Error getting BGG information: {}", ex.getMessage(), ex);
-            session.sendMessage(msgChannel, "Could not get information from BGG for " + query + ".\n Error: " + ex.getMessage());
+            session.sendMessage(msgChannel, "Could not get information from BGG for " + query + ".\n Error: " + ex.getMessage() + didYouMean(query));
             return;
         }
 
         if (results.getItems() == null || results.getItems().isEmpty()) {
-            session.sendMessage(msgChannel, "Could not find information from BGG for " + query);
+            session.sendMessage(msgChannel, "Could not find information from BGG for " + query + didYouMean(query));
             return;
         }
 
@@ -329,6 +360,70 @@ public class BoardGameListener extends AbstractListener {
 
     }
 
+    /**
+     * Search the details of the games the bot has looked up
+     *
+     * @param session
+     * @param msgChannel
+     * @param query
+     */
+    private void searchGameDetails(SlackSession session, SlackChannel msgChannel, String query) {
+        Map<Integer, String> results;
+        try {
+            results = BGG.searchGameDetails(query);
+        } catch (IllegalArgumentException ex) {
+            session.sendMessage(msgChannel, ex.getMessage() + ". Search terms are: " + GameFacetIndex.USAGE);
+            return;
+        }
+
+        if (results.isEmpty()) {
+            session.sendMessage(msgChannel, "None of the games I know about match *" + query + "*");
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder("Found ");
+        sb.append(results.size()).append(" games I know about that match *").append(query).append("*");
+        int count = 0;
+        for (Map.Entry<Integer, String> game : results.entrySet()) {
+            if (count++ == MAX_DETAIL_RESULTS) {
+                sb.append("\n...and ").append(results.size() - MAX_DETAIL_RESULTS).append(" more");
+                break;
+            }
+            sb.append("\n").append(SlackBot.formatLink(Constants.BGG_LINK_GAME + game.getKey(), game.getValue()));
+        }
+
+        SlackPreparedMessage spm = new SlackPreparedMessage.Builder()
+                .withMessage(sb.toString())
+                .withUnfurl(false)
+                .build();
+        session.sendMessage(msgChannel, spm);
+    }
+
+    /**
+     * Suggest the games that have been seen with a similar name
+     *
+     * @param query
+     * @return The suggestion text, or an empty string if there are none
+     */
+    private static String didYouMean(String query) {
+        Map<Integer, String> similar = BGG.findSimilarGames(query, DID_YOU_MEAN);
+        if (similar.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder("\nDid you mean: ");
+        boolean first = true;
+        for (Map.Entry<Integer, String> game : similar.entrySet()) {
+            if (first) {
+                first = false;
+            } else {
+                sb.append(", ");
+            }
+            sb.append(game.getValue()).append(" (").append(game.getKey()).append(")");
+        }
+        return sb.toString();
+    }
+
     /**
      * Get information on a specific game
      *
@@ -339,17 +434,23 @@ public class BoardGameListener extends AbstractListener {
      */
     private void commandGame(SlackSession session, SlackChannel msgChannel, String query) {
         int bggId = 0;
-        // If the query is a string, first search for the game
+        // If the query is a string, look for the name in the games already seen, then search BGG for it
         if (!NumberUtils.isDigits(query)) {
-            try {
-                // Assume an exact search request
-                SearchWrapper wrapper = BGG.searchBoardGame(query, true, false);
-                if (wrapper.getTotal() > 0) {
-                    bggId = wrapper.getItems().get(0).getId();
+            bggId = BGG.findGameId(query);
+            if (bggId == 0) {
+                try {
+                    // Assume an exact search request
+                    SearchWrapper wrapper = BGG.searchBoardGame(query, true, false);
+                    if (wrapper.getTotal() > 0) {
+                        bggId = wrapper.getItems().get(0).getId();
+                    }
+                } catch (BggException ex) {
+                    LOG.warn("Failed to get exact search for {} from BGG", ex.getMessage(), ex);
                 }
-            } catch (BggException ex) {
-                LOG.warn("Failed to get exact search for {} from BGG", ex.getMessage(), ex);
-                session.sendMessage(msgChannel, "Unable to find information on *'" + query + "'*");
+            }
+
+            if (bggId == 0) {
+                session.sendMessage(msgChannel, "Unable to find information on *'" + query + "'*" + didYouMean(query));
                 return;
             }
         } else {
@@ -411,37 +512,36 @@ public class BoardGameListener extends AbstractListener {
         sa.addField("Trade Rating", "" + result.getTradeRating(), true);
         sa.addField("Last Login", result.getLastLogin(), true);
 
-        boolean first = true;
         StringBuilder sb = new StringBuilder();
-        if (!result.getHotList().isEmpty()) {
-            for (RankedList line : result.getHotList()) {
-                if (first) {
-                    first = false;
-                } else {
-                    sb.append("\n");
-                }
-                sb.append(String.format("%1$2d-%2$s (<https://boardgamegeek.com/boardgame/%3$d|%3$d>)", line.getRank(), line.getName(), line.getId()));
-            }
-        }
+        appendRankedList(sb, result.getHotList());
         sa.addField("Hot List", sb.toString(), false);
 
-        first = true;
-        sb = new StringBuilder();
-        if (!result.getTopList().isEmpty()) {
-            for (RankedList line : result.getHotList()) {
-                if (first) {
-                    first = false;
-                } else {
-                    sb.append("\n");
-                }
-                sb.append(String.format("%1$2d-%2$s (<https://boardgamegeek.com/boardgame/%3$d|%3$d>)", line.getRank(), line.getName(), line.getId()));
-            }
-        }
+        sb.setLength(0);
+        appendRankedList(sb, result.getTopList());
         sa.addField("Top List", sb.toString(), false);
 
         session.sendMessage(msgChannel, result.getName(), sa);
     }
 
+    /**
+     * Append the ranked list, one game per line
+     *
+     * @param sb
+     * @param list
+     */
+    private static void appendRankedList(StringBuilder sb, List<RankedList> list) {
+        if (list == null) {
+            return;
+        }
+
+        for (RankedList line : list) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            RANKED_FORMAT.appendTo(sb, line.getRank(), line.getName(), Constants.BGG_LINK_GAME, line.getId());
+        }
+    }
+
     /**
      * Get the collection for a user
      *
@@ -453,126 +553,215 @@ public class BoardGameListener extends AbstractListener {
         LOG.info("Getting collection information, params: '{}'", params);
         // Split the parameters out (if multiple)
         String username;
-        String ids;
+        String options;
         Matcher m = PAT_COLL_PARAM.matcher(params);
         if (m.matches()) {
             username = m.group(1);
-            ids = StringUtils.trimToNull(m.group(2));
+            options = StringUtils.trimToNull(m.group(2));
         } else {
             username = params;
-            ids = null;
+            options = null;
         }
 
         LOG.info("  Username: '{}'", username);
-        if (ids != null) {
-            LOG.info("  ID(s): '{}'", ids);
+        if (options != null && PAT_COLL_IDS.matcher(options).matches()) {
+            commandCollectionIds(session, msgChannel, username, options);
+            return;
         }
 
-        CollectionItemWrapper result;
-        try {
-            List<IncludeExclude> includes = new ArrayList<>();
-            List<IncludeExclude> excludes = new ArrayList<>();
-
-            if (ids == null) {
-                // Just get the username's owned collection
-                includes.add(IncludeExclude.OWN);
+        // Check for a page request, the rest of the options are the query
+        int page = 1;
+        StringBuilder queryParams = new StringBuilder();
+        for (String option : StringUtils.split(StringUtils.trimToEmpty(options))) {
+            Matcher pm = PAT_COLL_PAGE.matcher(option);
+            if (pm.matches()) {
+                page = NumberUtils.toInt(pm.group(1), 1);
+            } else if ("all".equalsIgnoreCase(option)) {
+                page = 0;
             } else {
-                // Get the individual ID items
-                includes.add(IncludeExclude.STATS);
+                queryParams.append(option).append(' ');
             }
+        }
 
-            LOG.info("Getting collection information for '{}' with IDs '{}' & includes '{}'", username, ids, includes);
-            result = BGG.getCollectionInfo(username, ids, includes, excludes, false);
-        } catch (BggException ex) {
-            LOG.warn("Failed to get collection for user '{}'", username, ex);
-            session.sendMessage(msgChannel, "Failed to get collection for user " + username);
+        CollectionQuery query;
+        try {
+            query = CollectionQuery.parse(queryParams.toString());
+        } catch (IllegalArgumentException ex) {
+            session.sendMessage(msgChannel, ex.getMessage() + ". Options are: " + CollectionQuery.USAGE);
             return;
         }
 
-        if (result.getTotalItems() == 0) {
-            String message = "No information found for username '" + username + "'";
-            if (ids != null) {
-                message += " with IDs '" + ids + "'";
+        CompletableFuture<CompactCollection> future = BGG.getCompactCollection(username);
+        if (!future.isDone()) {
+            session.sendMessage(msgChannel, "Fetching " + username + "'s collection from BGG, this may take a while...");
+        }
+
+        // BGG can queue the collection request, so the reply is sent when it is ready
+        final int collPage = page;
+        future.handleAsync((collection, ex) -> {
+            if (ex == null) {
+                sendCompactCollection(session, msgChannel, username, query, collPage, collection);
+            } else {
+                LOG.warn("Failed to get collection for user '{}'", username, ex);
+                session.sendMessage(msgChannel, "Failed to get collection for user " + username);
             }
-            session.sendMessage(msgChannel, message);
+            return null;
+        }, CommandPipeline.getReplyExecutor()).exceptionally(ex -> logReplyFailure(username, ex));
+    }
+
+    /**
+     * Get the details of the games in the ID list from the user's collection
+     *
+     * @param session
+     * @param msgChannel
+     * @param username
+     * @param ids
+     */
+    private void commandCollectionIds(SlackSession session, SlackChannel msgChannel, String username, String ids) {
+        LOG.info("  ID(s): '{}'", ids);
+        List<IncludeExclude> includes = new ArrayList<>();
+        List<IncludeExclude> excludes = new ArrayList<>();
+        includes.add(IncludeExclude.STATS);
+
+        LOG.info("Getting collection information for '{}' with IDs '{}' & includes '{}'", username, ids, includes);
+        session.sendMessage(msgChannel, "Fetching " + username + "'s collection from BGG, this may take a while...");
+
+        BGG.getCollectionAsync(username, ids, includes, excludes, false).handleAsync((result, ex) -> {
+            if (ex == null) {
+                sendCollection(session, msgChannel, username, ids, result);
+            } else {
+                LOG.warn("Failed to get collection for user '{}'", username, ex);
+                session.sendMessage(msgChannel, "Failed to get collection for user " + username);
+            }
+            return null;
+        }, CommandPipeline.getReplyExecutor()).exceptionally(ex -> logReplyFailure(username, ex));
+    }
+
+    /**
+     * Log a failure sending the collection reply, which would otherwise be
+     * lost with the future
+     *
+     * @param username
+     * @param ex
+     * @return
+     */
+    private static Void logReplyFailure(String username, Throwable ex) {
+        LOG.warn("Failed to send the collection for user '{}'", username, ex);
+        return null;
+    }
+
+    /**
+     * Run the query against the collection and send the matching games
+     *
+     * @param session
+     * @param msgChannel
+     * @param username
+     * @param query
+     * @param page The page to send, 0 for all pages
+     * @param collection
+     */
+    private void sendCompactCollection(SlackSession session, SlackChannel msgChannel, String username, CollectionQuery query, int page, CompactCollection collection) {
+        if (collection.size() == 0) {
+            session.sendMessage(msgChannel, "No information found for username '" + username + "'");
             return;
-        } else {
-            LOG.info("Found {} collection items for {}", result.getTotalItems(), username);
         }
 
-        List<SlackAttachment> collList;
-        if (ids == null) {
-            LOG.info("Creating simple collection");
-            collList = createSimpleCollection(session, msgChannel, result.getItems(), username);
-        } else {
-            LOG.info("Creating detailed collection");
-            collList = createDetailedCollection(session, msgChannel, result.getItems(), username);
+        int[] rows = query.execute(collection);
+        String description = query.describe();
+        LOG.info("Found {} collection items for {}, {} match '{}'", collection.size(), username, rows.length, description);
+        if (rows.length == 0) {
+            session.sendMessage(msgChannel, "No games in " + username + "'s collection match " + description);
+            return;
         }
 
-        SlackPreparedMessage spm = new SlackPreparedMessage.Builder()
-                .withUnfurl(false)
-                .addAttachments(collList)
-                .build();
-        session.sendMessage(msgChannel, spm);
+        sendSimpleCollection(session, msgChannel, new CollectionPager(collection, rows, COLL_PAGE_SIZE, COLL_PAGE_BYTES), description, page);
     }
 
     /**
-     * Create a simple list of the collection items
+     * Send the detailed collection once it has been retrieved from BGG
      *
      * @param session
      * @param msgChannel
-     * @param result
      * @param username
-     * @return
+     * @param ids
+     * @param result
      */
-    private List<SlackAttachment> createSimpleCollection(SlackSession session, SlackChannel msgChannel, List<CollectionItem> result, String username) {
-        int total = result.size();
-        int perPart = 75;
-        int totalParts = (total + perPart - 1) / perPart;
-        int count = 0;
-        int partCount = 1;
-
-        String collectionFormat = "%1$s's collection - part %2$d of %3$d";
+    private void sendCollection(SlackSession session, SlackChannel msgChannel, String username, String ids, CollectionItemWrapper result) {
+        if (result.getTotalItems() == 0) {
+            session.sendMessage(msgChannel, "No information found for username '" + username + "' with IDs '" + ids + "'");
+            return;
+        } else {
+            LOG.info("Found {} collection items for {}", result.getTotalItems(), username);
+        }
 
-        LOG.info("\tMaking simple collection for {} with {} items and page size {}", username, total, perPart);
-        session.sendMessage(msgChannel, username + " has " + total + " items in their collection. There will be " + totalParts + " parts listed.");
+        LOG.info("Creating detailed collection");
+        List<SlackAttachment> collList = createDetailedCollection(session, msgChannel, result.getItems(), username);
 
-        SlackAttachment sa = new SlackAttachment();
-        sa.setFallback(String.format(collectionFormat, username, partCount, totalParts));
-        sa.setTitle(String.format(collectionFormat, username, partCount, totalParts));
-        sa.setTitleLink(Constants.BGG_LINK_COLL + username);
-        sa.setColor(Constants.ATTACH_COLOUR_GOOD);
+        // Send the attachments in parts, so the first games are shown without waiting for the rest
+        for (int start = 0; start < collList.size(); start += DETAIL_PART_SIZE) {
+            SlackPreparedMessage spm = new SlackPreparedMessage.Builder()
+                    .withUnfurl(false)
+                    .addAttachments(collList.subList(start, Math.min(start + DETAIL_PART_SIZE, collList.size())))
+                    .build();
+            session.sendMessage(msgChannel, spm);
+        }
+    }
 
-        List<SlackAttachment> collList = new ArrayList<>();
+    /**
+     * Send the pages of a simple collection listing.<p>
+     * The pager is kept for the channel so that further pages can be
+     * requested.
+     *
+     * @param session
+     * @param msgChannel
+     * @param pager
+     * @param description The description of the query, can be empty
+     * @param page The page to send, 0 for all pages
+     */
+    private void sendSimpleCollection(SlackSession session, SlackChannel msgChannel, CollectionPager pager, String description, int page) {
+        // Remove any old pagers
+        PAGERS.values().removeIf(p -> p.isExpired(PAGER_MAX_AGE, TimeUnit.MINUTES));
+        PAGERS.put(msgChannel.getId(), pager);
+
+        int totalPages = pager.getTotalPages();
+        LOG.info("\tMaking simple collection for {} with {} items and page size {}", pager.getUsername(), pager.getTotalItems(), pager.getPerPage());
+        if (StringUtils.isBlank(description)) {
+            session.sendMessage(msgChannel, pager.getUsername() + " has " + pager.getTotalItems() + " items in their collection, listed in " + totalPages + " pages.");
+        } else {
+            session.sendMessage(msgChannel, pager.getUsername() + " has " + pager.getTotalItems() + " items in their collection that match " + description + ", listed in " + totalPages + " pages.");
+        }
 
-        StringBuilder sb = new StringBuilder();
-        for (CollectionItem item : result) {
-            count++;
-            if (count >= perPart) {
-                sa.setText(sb.toString());
-                collList.add(sa);
-
-                count = 0;
-                sb = new StringBuilder();
-                sa = new SlackAttachment();
-                partCount++;
-                sa.setFallback(String.format(collectionFormat, username, partCount, totalParts));
-                sa.setAuthorName(String.format(collectionFormat, username, partCount, totalParts));
-                sa.setAuthorLink(Constants.BGG_LINK_COLL + username);
-                sa.setColor(Constants.ATTACH_COLOUR_GOOD);
+        if (page == 0) {
+            // Send all the pages, each one as soon as it is formatted
+            while (pager.sendNextPage(session, msgChannel)) {
+                LOG.debug("Sent collection page");
             }
+            return;
+        }
 
-            sb.append(String.format("%1$s (%2$s) - <%3$s%4$d|%4$d>\n",
-                    item.getName(),
-                    item.getYearPublished(),
-                    Constants.BGG_LINK_GAME,
-                    item.getObjectId()));
+        pager.sendPage(session, msgChannel, page);
+        if (page < totalPages) {
+            session.sendMessage(msgChannel, String.format("Use %1$snext%2$s for the next page, or %1$scoll %3$s page:N%2$s for a specific page",
+                    Constants.DELIM_LEFT + Constants.DELIM_LEFT, Constants.DELIM_RIGHT + Constants.DELIM_RIGHT, pager.getUsername()));
         }
-        sa.setText(sb.toString());
-        collList.add(sa);
+    }
 
-        LOG.info("\tCollection size of {} items and {} parts", result.size(), collList.size());
-        return collList;
+    /**
+     * Send the next page of the last collection listed in the channel
+     *
+     * @param session
+     * @param msgChannel
+     */
+    private void commandNext(SlackSession session, SlackChannel msgChannel) {
+        CollectionPager pager = PAGERS.get(msgChannel.getId());
+        if (pager == null || pager.isExpired(PAGER_MAX_AGE, TimeUnit.MINUTES)) {
+            session.sendMessage(msgChannel, "There is no collection listing to continue in this channel");
+            return;
+        }
+
+        if (!pager.sendNextPage(session, msgChannel)) {
+            session.sendMessage(msgChannel, "That was the last page of " + pager.getUsername() + "'s collection");
+        }
     }
 
     /**
@@ -603,7 +792,13 @@ public class BoardGameListener extends AbstractListener {
 
         LOG.info(logMessage, username, result.size());
         session.sendMessage(msgChannel, attMessage);
-        result.forEach(game -> collList.add(createGameAttachment(game)));
+
+        // Only use the game details that are already cached, rather than looking up every item
+        List<Integer> ids = new ArrayList<>();
+        result.forEach(game -> ids.add(game.getObjectId()));
+        Map<Integer, BoardGameExtended> details = BGG.getCachedBoardGames(ids);
+
+        result.forEach(game -> collList.add(createGameAttachment(game, details.get(game.getObjectId()))));
         return collList;
     }
 
@@ -611,9 +806,10 @@ public class BoardGameListener extends AbstractListener {
      * Format the collection item (game) into an attachment
      *
      * @param game
+     * @param details The BGG details for the game, can be null
      * @return
      */
-    private SlackAttachment createGameAttachment(CollectionItem game) {
+    private SlackAttachment createGameAttachment(CollectionItem game, BoardGameExtended details) {
         SlackAttachment sa = new SlackAttachment();
         String year = game.getYearPublished() == null ? UNKNOWN : " (" + game.getYearPublished() + ")";
 
@@ -634,6 +830,11 @@ public class BoardGameListener extends AbstractListener {
             sa.addField("Num Plays", "" + game.getNumPlays(), true);
         }
 
+        if (details != null) {
+            sa.addField("Player Count", details.getMinPlayers() + "-" + details.getMaxPlayers(), true);
+            sa.addField("Playing Time", String.valueOf(details.getPlayingTime()), true);
+        }
+
         LOG.info("Owner Status: {}", game.getOwnerStatus().toString());
 
         List<String> status = calculateStatus(game.getOwnerStatus());
@@ -722,32 +923,35 @@ public class BoardGameListener extends AbstractListener {
         sa.addField(BGG_ID, String.valueOf(game.getId()), true);
         sa.addField("Player Count", game.getMinPlayers() + "-" + game.getMaxPlayers(), true);
         sa.addField("Playing Time", String.valueOf(game.getPlayingTime()), true);
-        sa.addField("Designer(s)", formatIdValue(game.getBoardGameDesigner()), true);
-        sa.addField("Categories", formatIdValue(game.getBoardGameCategory()), true);
-        sa.addField("Mechanics", formatIdValue(game.getBoardGameMechanic()), true);
+        StringBuilder sb = new StringBuilder();
+        sa.addField("Designer(s)", appendIdValues(sb, game.getBoardGameDesigner()).toString(), true);
+        sb.setLength(0);
+        sa.addField("Categories", appendIdValues(sb, game.getBoardGameCategory()).toString(), true);
+        sb.setLength(0);
+        sa.addField("Mechanics", appendIdValues(sb, game.getBoardGameMechanic()).toString(), true);
 
         return sa;
     }
 
     /**
-     * Format the values from an IdValue list into a comma separated string
+     * Append the values from an IdValue list as a comma separated list
      *
+     * @param sb The builder to append to
      * @param listToFormat
-     * @return
+     * @return The builder
      */
-    private String formatIdValue(List<IdValue> listToFormat) {
-        StringBuilder result = new StringBuilder();
-        boolean first = true;
+    private static StringBuilder appendIdValues(StringBuilder sb, List<IdValue> listToFormat) {
+        if (listToFormat == null) {
+            return sb;
+        }
 
-        for (IdValue idv : listToFormat) {
-            if (first) {
-                first = false;
-                result.append(idv.getValue());
-            } else {
-                result.append(", ").append(idv.getValue());
+        for (int i = 0; i < listToFormat.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
             }
+            sb.append(listToFormat.get(i).getValue());
         }
-        return result.toString();
+        return sb;
     }
 
     /**
@@ -787,8 +991,9 @@ public class BoardGameListener extends AbstractListener {
         LOG.info("Quantity: {}", muQuantity);
         LOG.info("Detailed: {}", muDetailed);
 
+        boolean fresh;
         try {
-            Meetup.readMeetUp(muQuantity);
+            fresh = Meetup.readMeetUp(muQuantity);
         } catch (ApiException ex) {
             LOG.warn("Failed to read data from meetup: {}", ex.getMessage(), ex);
             com.omertron.slackbot.SlackBot.messageAdmins(session, "Failed to read data from meetup: " + ex.getMessage());
@@ -800,7 +1005,8 @@ public class BoardGameListener extends AbstractListener {
         List<SlackAttachment> attach = Meetup.getMeetupsQty(muQuantity, muDetailed);
         SlackPreparedMessage preparedMessage = new SlackPreparedMessage.Builder()
                 .addAttachments(attach)
-                .withMessage("These are the upcoming MeetUps:")
+                .withMessage(fresh ? "These are the upcoming MeetUps:"
+                        : "MeetUp is not responding at the moment, these are the last MeetUps read:")
                 .build();
         session.sendMessage(msgChannel, preparedMessage);
     }
@@ -816,24 +1022,37 @@ public class BoardGameListener extends AbstractListener {
         HotItemType itemType = validateHotParam(param);
         LOG.info("Getting hot list for '{}'", itemType.toString());
 
+        HotListSnapshot snapshot;
         try {
-            List<HotListItem> results = BGG.getHotItems(itemType);
+            snapshot = BGG.getHotList(itemType);
+        } catch (BggException ex) {
+            LOG.warn("Failed to get Hot List for {}", itemType.toString(), ex);
+            session.sendMessage(channel, "Failed to get the Hot List for " + itemType.toString() + " from BGG.\n Error: " + ex.getMessage());
+            return;
+        }
 
-            List<SlackAttachment> listAttach = new ArrayList<>();
-            for (HotListItem item : results) {
-                if (item.getRank() <= 10) {
-                    listAttach.add(convertHotListToAttach(itemType, item));
-                }
+        List<SlackAttachment> listAttach = new ArrayList<>();
+        for (HotListItem item : snapshot.getItems()) {
+            if (item.getRank() <= 10) {
+                listAttach.add(convertHotListToAttach(itemType, item));
             }
+        }
 
-            SlackPreparedMessage spm = new SlackPreparedMessage.Builder()
-                    .withMessage("Hot List for " + itemType.toString())
-                    .addAttachments(listAttach)
-                    .build();
-            session.sendMessage(channel, spm);
-        } catch (BggException ex) {
-            LOG.info("Failed to get Hot List for {}", itemType.toString(), ex);
+        StringBuilder message = new StringBuilder("Hot List for ");
+        message.append(itemType.toString());
+        if (BGG.isStale(snapshot)) {
+            message.append(" (as of ").append(snapshot.getAgeMinutes()).append(" minutes ago");
+            if (snapshot.getLastError() != null) {
+                message.append(", BGG is not responding");
+            }
+            message.append(")");
         }
+
+        SlackPreparedMessage spm = new SlackPreparedMessage.Builder()
+                .withMessage(message.toString())
+                .addAttachments(listAttach)
+                .build();
+        session.sendMessage(channel, spm);
     }
 
     /**
@@ -852,7 +1071,7 @@ public class BoardGameListener extends AbstractListener {
         if (listItem.getYearPublished() == null || listItem.getYearPublished() == 0) {
             sa.setTitle(listItem.getName());
         } else {
-            sa.setTitle(String.format("%1$s (%2$d)", listItem.getName(), listItem.getYearPublished()));
+            sa.setTitle(TITLE_YEAR_FORMAT.format(listItem.getName(), listItem.getYearPublished()));
         }
 
         switch (itemType) {
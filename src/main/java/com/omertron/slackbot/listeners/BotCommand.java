@@ -0,0 +1,92 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.listeners;
+
+import com.ullink.slack.simpleslackapi.SlackSession;
+import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A parsed command ready to be executed by its handler
+ *
+ * @author Omertron
+ */
+public class BotCommand {
+
+    private final CommandHandler handler;
+    private final SlackSession session;
+    private final SlackMessagePosted event;
+    private final String command;
+    private final String params;
+
+    public BotCommand(CommandHandler handler, SlackSession session, SlackMessagePosted event, String command, String params) {
+        this.handler = handler;
+        this.session = session;
+        this.event = event;
+        this.command = command;
+        this.params = params;
+    }
+
+    public CommandHandler getHandler() {
+        return handler;
+    }
+
+    public SlackSession getSession() {
+        return session;
+    }
+
+    public SlackMessagePosted getEvent() {
+        return event;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    /**
+     * The ID of the channel the command was posted in
+     *
+     * @return
+     */
+    public String getChannelId() {
+        return event.getChannel().getId();
+    }
+
+    /**
+     * Run the command on its handler
+     */
+    public void execute() {
+        handler.handleCommand(session, event, command, params);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("command", command)
+                .append("params", params)
+                .append("channel", getChannelId())
+                .toString();
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.listeners;
+
+import static com.omertron.slackbot.Constants.DELIM_LEFT;
+import static com.omertron.slackbot.Constants.DELIM_RIGHT;
+import com.omertron.slackbot.SlackBot;
+import com.omertron.slackbot.functions.BotWelcome;
+import com.omertron.slackbot.functions.limiter.CommandLimiter;
+import com.omertron.slackbot.functions.pipeline.CommandPipeline;
+import com.ullink.slack.simpleslackapi.SlackSession;
+import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
+import com.ullink.slack.simpleslackapi.listeners.SlackMessagePostedListener;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single listener that routes all the bot commands to their handlers.
+ * <p>
+ * Messages that cannot be a command are rejected by looking at the first
+ * character, so normal chat does not pay for any pattern matching.
+ *
+ * @author Omertron
+ */
+public class CommandDispatcher implements SlackMessagePostedListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandDispatcher.class);
+    private static final String CMD_START = DELIM_LEFT + DELIM_LEFT;
+    private static final String CMD_END = DELIM_RIGHT + DELIM_RIGHT;
+    private static final String SHEETS_PREFIX = "wbb";
+    private static final String SHEETS_DEFAULT = "HELP";
+    private static final String MENTION_START = "<@";
+    private static final String E_HOURGLASS = "hourglass";
+    // Replaces a command that is over its rate limit, just lets the user know with a reaction
+    private static final CommandHandler LIMITED = new CommandHandler() {
+        @Override
+        public List<String> getCommands() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params) {
+            session.addReactionToMessage(event.getChannel(), event.getTimeStamp(), E_HOURGLASS);
+        }
+    };
+    // Replaces an admin command sent by someone who is not a bot admin
+    private static final CommandHandler NOT_AUTHORISED = new CommandHandler() {
+        @Override
+        public List<String> getCommands() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params) {
+            LOG.info("Admin command '{}' refused for '{}'", command, event.getSender().getUserName());
+            session.sendMessageToUser(event.getSender(), "You are not authorised to use this command", null);
+        }
+    };
+
+    private final Map<String, CommandHandler> commands = new HashMap<>();
+    private final Map<String, CommandHandler> adminCommands = new HashMap<>();
+    private CommandHandler sheetsHandler = null;
+
+    /**
+     * Add the commands from the handler to the routing table
+     *
+     * @param handler
+     */
+    public void addHandler(CommandHandler handler) {
+        for (String command : handler.getCommands()) {
+            addRoute(commands, command, handler);
+        }
+        for (String command : handler.getAdminCommands()) {
+            addRoute(adminCommands, command, handler);
+        }
+    }
+
+    /**
+     * Set the handler for the "wbb" sheet commands
+     *
+     * @param handler
+     */
+    public void setSheetsHandler(CommandHandler handler) {
+        this.sheetsHandler = handler;
+        addHandler(handler);
+    }
+
+    private static void addRoute(Map<String, CommandHandler> table, String command, CommandHandler handler) {
+        CommandHandler previous = table.put(command.toLowerCase(Locale.ENGLISH), handler);
+        if (previous != null && previous != handler) {
+            LOG.warn("Command '{}' was already routed to {}, replaced with {}", command,
+                    previous.getClass().getSimpleName(), handler.getClass().getSimpleName());
+        }
+        LOG.info("Routing '{}' to {}", command, handler.getClass().getSimpleName());
+    }
+
+    @Override
+    public void onEvent(SlackMessagePosted event, SlackSession session) {
+        // Filter out the bot's own messages or messages from other bots
+        if (session.sessionPersona().getId().equals(event.getSender().getId()) || event.getSender().isBot()) {
+            return;
+        }
+
+        if (event.getMessageSubType() == SlackMessagePosted.MessageSubType.CHANNEL_JOIN
+                || event.getMessageSubType() == SlackMessagePosted.MessageSubType.GROUP_JOIN) {
+            // Send a welcome message (will not re-send if already sent)
+            BotWelcome.sendWelcomeMessage(session, event.getChannel(), event.getSender());
+            return;
+        }
+
+        if (mayBeCommand(event.getMessageContent())) {
+            // Could be a command, parse it and queue it to run off the event thread
+            CommandPipeline.submit(this, session, event);
+        }
+    }
+
+    /**
+     * Quick check on the first character to see if the message could be a
+     * command
+     *
+     * @param content The message text
+     * @return False if the message cannot be a command
+     */
+    static boolean mayBeCommand(String content) {
+        if (content == null || content.length() < SHEETS_PREFIX.length()) {
+            return false;
+        }
+
+        switch (content.charAt(0)) {
+            case '[':
+            case 'w':
+            case 'W':
+            case '<':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse the message into a command for one of the handlers.<p>
+     * Commands from anyone but the bot admins must get past the rate limits.
+     * A command over the limit is replaced by one that just adds a reaction
+     * to the message.
+     *
+     * @param session
+     * @param event
+     * @return The command to execute, or null if the message is not a command
+     */
+    public BotCommand parse(SlackSession session, SlackMessagePosted event) {
+        String content = event.getMessageContent();
+        BotCommand command;
+        switch (content.charAt(0)) {
+            case '[':
+                command = parseCommand(session, event, content);
+                break;
+            case 'w':
+            case 'W':
+                command = parseSheets(session, event, content);
+                break;
+            case '<':
+                command = parseMention(session, event, content);
+                break;
+            default:
+                command = null;
+        }
+
+        if (command == null || !command.getHandler().acceptsChannel(event.getChannel())) {
+            // Ignored before the limits, so it doesn't use up the user's tokens
+            return null;
+        }
+
+        if (SlackBot.isBotAdmin(event.getSender())) {
+            return command;
+        }
+
+        // The sheet commands have their own limits, e.g. "limitCommand.wbb.suggestCapacity"
+        String limitKey = command.getHandler() == sheetsHandler ? SHEETS_PREFIX + "." + command.getCommand() : command.getCommand();
+        if (CommandLimiter.tryAcquire(event.getSender().getId(), event.getChannel().getId(), limitKey)) {
+            return command;
+        }
+        return create(LIMITED, session, event, command.getCommand(), command.getParams());
+    }
+
+    /**
+     * Parse a "[[command params]]" message
+     *
+     * @param session
+     * @param event
+     * @param content
+     * @return
+     */
+    private BotCommand parseCommand(SlackSession session, SlackMessagePosted event, String content) {
+        if (!content.startsWith(CMD_START) || !content.endsWith(CMD_END) || content.length() <= CMD_START.length() + CMD_END.length()) {
+            return null;
+        }
+
+        String inner = content.substring(CMD_START.length(), content.length() - CMD_END.length());
+        int wordEnd = endOfLetters(inner, 0);
+        if (wordEnd == 0) {
+            return null;
+        }
+
+        String word = inner.substring(0, wordEnd).toLowerCase(Locale.ENGLISH);
+        CommandHandler handler = commands.get(word);
+        if (handler == null) {
+            handler = adminHandler(event, word);
+        }
+
+        if (handler == null) {
+            return null;
+        }
+        return create(handler, session, event, word, inner.substring(skipNonWord(inner, wordEnd)));
+    }
+
+    /**
+     * Parse a "wbb command params" message
+     *
+     * @param session
+     * @param event
+     * @param content
+     * @return
+     */
+    private BotCommand parseSheets(SlackSession session, SlackMessagePosted event, String content) {
+        if (sheetsHandler == null || !content.regionMatches(true, 0, SHEETS_PREFIX, 0, SHEETS_PREFIX.length())) {
+            return null;
+        }
+
+        int pos = SHEETS_PREFIX.length();
+        int length = content.length();
+        if (pos == length) {
+            return create(sheetsHandler, session, event, SHEETS_DEFAULT, null);
+        }
+
+        if (!Character.isWhitespace(content.charAt(pos))) {
+            // Some other word starting with "wbb"
+            return null;
+        }
+
+        int wordStart = pos + 1;
+        int wordEnd = wordStart;
+        while (wordEnd < length && isWordChar(content.charAt(wordEnd))) {
+            wordEnd++;
+        }
+
+        if (wordEnd < length && !Character.isWhitespace(content.charAt(wordEnd))) {
+            return null;
+        }
+
+        String word = content.substring(wordStart, wordEnd).toUpperCase(Locale.ENGLISH);
+        String params = wordEnd < length ? content.substring(wordEnd).trim() : "";
+        return create(sheetsHandler, session, event,
+                word.isEmpty() ? SHEETS_DEFAULT : word,
+                params.isEmpty() ? null : params);
+    }
+
+    /**
+     * Parse a "@bot command params" message.<p>
+     * Only admin commands are accepted in this form
+     *
+     * @param session
+     * @param event
+     * @param content
+     * @return
+     */
+    private BotCommand parseMention(SlackSession session, SlackMessagePosted event, String content) {
+        String botId = session.sessionPersona().getId();
+        if (!content.startsWith(MENTION_START) || !content.startsWith(botId, MENTION_START.length())) {
+            return null;
+        }
+
+        int mentionEnd = content.indexOf('>', MENTION_START.length() + botId.length());
+        if (mentionEnd < 0) {
+            return null;
+        }
+
+        int wordStart = skipNonWord(content, mentionEnd + 1);
+        int wordEnd = endOfLetters(content, wordStart);
+        if (wordEnd == wordStart) {
+            return null;
+        }
+
+        String word = content.substring(wordStart, wordEnd).toLowerCase(Locale.ENGLISH);
+        CommandHandler handler = adminHandler(event, word);
+        if (handler == null) {
+            return null;
+        }
+
+        String params = content.substring(wordEnd);
+        if (params.endsWith(CMD_END)) {
+            params = params.substring(0, params.length() - CMD_END.length());
+        }
+        return create(handler, session, event, word, params);
+    }
+
+    /**
+     * Find the handler for an admin command, if the sender is a bot admin
+     *
+     * @param event
+     * @param word The command word in lower case
+     * @return The handler, the refusal handler for anyone else, or null if it
+     * is not an admin command
+     */
+    private CommandHandler adminHandler(SlackMessagePosted event, String word) {
+        CommandHandler handler = adminCommands.get(word);
+        if (handler == null || SlackBot.isBotAdmin(event.getSender())) {
+            return handler;
+        }
+        return NOT_AUTHORISED;
+    }
+
+    private static BotCommand create(CommandHandler handler, SlackSession session, SlackMessagePosted event, String command, String params) {
+        return new BotCommand(handler, session, event, command.toUpperCase(Locale.ENGLISH), params);
+    }
+
+    private static int endOfLetters(String text, int start) {
+        int pos = start;
+        while (pos < text.length() && Character.isLetter(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipNonWord(String text, int start) {
+        int pos = start;
+        while (pos < text.length() && !isWordChar(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || (c < 128 && Character.isLetterOrDigit(c));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.listeners;
+
+import com.ullink.slack.simpleslackapi.SlackChannel;
+import com.ullink.slack.simpleslackapi.SlackSession;
+import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A handler for the commands routed to it by the {@link CommandDispatcher}
+ *
+ * @author Omertron
+ */
+public interface CommandHandler {
+
+    /**
+     * The command words (without delimiters) that this handler processes
+     *
+     * @return
+     */
+    public List<String> getCommands();
+
+    /**
+     * The admin command words that this handler processes.<p>
+     * These can also be called by mentioning the bot directly.
+     *
+     * @return
+     */
+    public default List<String> getAdminCommands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Does this handler take commands from the channel?<p>
+     * Commands from other channels are ignored before the rate limits are
+     * checked.
+     *
+     * @param channel
+     * @return
+     */
+    public default boolean acceptsChannel(SlackChannel channel) {
+        return true;
+    }
+
+    /**
+     * Process the command
+     *
+     * @param session SlackSession
+     * @param event The message event that contained the command
+     * @param command The command word in upper case
+     * @param params Any parameters passed after the command
+     */
+    public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params);
+}
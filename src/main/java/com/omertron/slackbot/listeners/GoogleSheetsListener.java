@@ -26,7 +26,13 @@ import com.omertron.bgg.model.CollectionItem;
 import com.omertron.bgg.model.CollectionItemWrapper;
 import com.omertron.slackbot.Constants;
 import com.omertron.slackbot.SlackBot;
+import com.omertron.slackbot.enumeration.WriteResult;
+import com.omertron.slackbot.functions.GameLogMirror;
 import com.omertron.slackbot.functions.GoogleSheets;
+import com.omertron.slackbot.functions.PlayerResolver;
+import com.omertron.slackbot.functions.bgg.GameSuggester;
+import com.omertron.slackbot.functions.bgg.OwnershipIndex;
+import com.omertron.slackbot.functions.pipeline.CommandPipeline;
 import static com.omertron.slackbot.listeners.AbstractListener.BGG;
 import com.omertron.slackbot.model.HelpInfo;
 import com.omertron.slackbot.model.sheets.GameLogRow;
@@ -41,34 +47,72 @@ import com.ullink.slack.simpleslackapi.SlackUser;
 import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
 import java.time.LocalDate;
 import java.time.Period;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
-import org.apache.commons.text.similarity.FuzzyScore;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class GoogleSheetsListener extends AbstractListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(GoogleSheetsListener.class);
-    private static final Pattern PAT_SHEETS = Pattern.compile("^\\Qwbb\\E(\\s\\w*)?(\\s.*)?", Pattern.CASE_INSENSITIVE);
     private static final List<String> CHANNELS = new ArrayList<>();
     private static final Map<String, PlayerInfo> PLAYERS = new HashMap<>();
-    private static final FuzzyScore SCORE = new FuzzyScore(Locale.ENGLISH);
+    private static final PlayerResolver RESOLVER = new PlayerResolver();
+    private static final OwnershipIndex OWNERSHIP = new OwnershipIndex(BGG);
+    private static final int MAX_OWNED_LIST = 50;
+    private static final GameSuggester SUGGESTER = new GameSuggester(BGG, 60);
+    // Reads the game log for the suggestions, so they do not use the common pool
+    private static final ExecutorService GAME_LOG_READER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "game-log-read");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Pattern PAT_SUGGEST = Pattern.compile("(players|time):(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final int SUGGEST_COUNT = 5;
+    // The number of game nights to look back through for recent plays
+    private static final int RECENT_NIGHTS = 26;
     // Cached Sheet Information
     private static final String SS_ID = "1Tbnvj3Colt5CnxlDUNk1L10iANm4jVUvJpD53mjKOYY";
-    private static SheetInfo sheetInfo = null;
+    private static final GameLogMirror GAME_LOG = new GameLogMirror(SS_ID);
+    private static final int MAX_STATS_LIST = 10;
+    private static final AtomicReference<SheetInfo> SHEET_INFO = new AtomicReference<>();
+    private static final long SHEET_INFO_TTL_MS = TimeUnit.SECONDS.toMillis(PropertiesUtil.getIntProperty(Constants.SHEET_INFO_TTL, 300));
+    // Only one read of the sheet information at a time, other callers use the cached copy
+    private static final ReentrantLock REFRESH_LOCK = new ReentrantLock();
+    private static volatile long sheetInfoReadTime = 0;
+    private static volatile int sheetInfoHash = 0;
+    // Set once the player table has been read
+    private static volatile boolean playersRead = false;
+    // Attendee changes waiting for the update in progress, guarded by the lock
+    private static final Object ATTENDEE_LOCK = new Object();
+    private static final List<AttendeeChange> ATTENDEE_CHANGES = new ArrayList<>();
+    private static boolean attendeeWriting = false;
+    private static final int MAX_ATTENDEE_ATTEMPTS = 3;
     private static final String SHORT_DATE_FORMAT = "EEE dd MMM";
+    private static final String SHEET_UNAVAILABLE = "I can't read the game sheet at the moment, please try again later";
+    private static final DateTimeFormatter STATS_DATE_FORMAT = DateTimeFormatter.ofPattern("d MMM yyyy");
     // Help data
     private static final Map<Integer, HelpInfo> HELP = new TreeMap<>();
     private static SlackAttachment helpMessage;
@@ -97,8 +141,8 @@ public class GoogleSheetsListener extends AbstractListener {
 
         generateHelpMessage();
 
-        // Get the static data
-        getStaticData();
+        // Get the players and the next game in one read
+        readSheetInfo(true);
     }
 
     /**
@@ -115,6 +159,12 @@ public class GoogleSheetsListener extends AbstractListener {
         HELP.put(31, new HelpInfo("GAME", "Game Name", "Sets the next game to be played to *<Game Name>*\nIf blank, will clear the current game name", false));
         HELP.put(32, new HelpInfo("WINNER", "Player", "Sets the winner of the game.\nIf blank, will clear the current winners.\nCan be multiple names comma separated.", false));
         HELP.put(39, new HelpInfo("NIGHT", "", "Displays the game night information.", false));
+        HELP.put(41, new HelpInfo("OWNS", "Game Name", "Find out which members own *<Game Name>*.\nThis can also be the BGG ID of the game.", false));
+        HELP.put(42, new HelpInfo("COMMON", "Names", "List the games that all of the *<names>* own.\nAdd *ANY* to list the games that any of them own.\nIf only one name is given, will compare with *YOU*", false));
+        HELP.put(43, new HelpInfo("SUGGEST", "players:N time:M", "Suggest games to play from the collections of the players attending.\n"
+                + "Optionally set the number of players or the longest playing time in minutes.", false));
+        HELP.put(44, new HelpInfo("STATS", "GAMES|PLAYERS|CHOOSERS", "Show the statistics from the game log.\n"
+                + "*GAMES* for the most played, *PLAYERS* for attendance and wins, *CHOOSERS* for who has not chosen for the longest", false));
 
         helpMessage = new SlackAttachment();
 
@@ -140,60 +190,86 @@ public class GoogleSheetsListener extends AbstractListener {
     }
 
     @Override
-    public void onEvent(SlackMessagePosted event, SlackSession session) {
+    public List<String> getCommands() {
+        // All the commands are prefixed with "wbb" rather than delimited
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params) {
         // Channel On Which Message Was Posted
         SlackChannel msgChannel = event.getChannel();
         if (!authenticate(session, msgChannel, event.getSender())) {
             return;
         }
 
-        Matcher m = PAT_SHEETS.matcher(event.getMessageContent());
-        if (m.matches()) {
-            String command = StringUtils.trimToNull(m.group(1)) == null ? "HELP" : m.group(1).toUpperCase().trim();
-            String params = StringUtils.trimToNull(m.group(2));
-            LOG.info("Command '{}' & params '{}'", command, params);
+        LOG.info("Command '{}' & params '{}'", command, params);
 
-            // Do an initial read of the sheet information
-            if (sheetInfo == null) {
-                readSheetInfo();
-            }
+        // Do an initial read of the sheet information
+        if (SHEET_INFO.get() == null) {
+            readSheetInfo();
+        }
 
-            switch (command) {
-                case "HELP":
-                    session.sendMessage(msgChannel, "", helpMessage);
-                    break;
-                case "NEXT":
-                    botUpdateChannel(session, event, E_GAME_DIE);
-                    readSheetInfo();
-                    session.sendMessage(msgChannel, "", createGameInfo(sheetInfo));
-                    break;
-                case "ADD":
-                    addNameToNextGame(session, msgChannel, params, event.getSender());
-                    break;
-                case "REMOVE":
-                    removeNameFromNextGame(session, msgChannel, params, event.getSender());
-                    break;
-                case "GAME":
-                    updateGameName(session, msgChannel, params);
-                    break;
-                case "WINNER":
-                    updateGenericPlayer(session, msgChannel, RANGE_GAME_WINNERS, params, "winner", true);
-                    break;
-                case "OWNER":
-                    updateGenericPlayer(session, msgChannel, RANGE_GAME_OWNER, params, "owner", false);
-                    break;
-                case "CHOOSER":
-                    updateGenericPlayer(session, msgChannel, RANGE_GAME_CHOOSER, params, "chooser", false);
-                    break;
-                case "NIGHT":
-                    createGameNightMessage(session, msgChannel);
-                    break;
-                default:
-                    session.sendMessage(msgChannel, "Sorry, '" + command + "' is not implemented yet.");
-            }
+        switch (command) {
+            case "HELP":
+                session.sendMessage(msgChannel, "", helpMessage);
+                break;
+            case "NEXT":
+                botUpdateChannel(session, event, E_GAME_DIE);
+                session.sendMessage(msgChannel, "", createGameInfo(getSheetInfo()));
+                break;
+            case "ADD":
+                addNameToNextGame(session, msgChannel, params, event.getSender());
+                break;
+            case "REMOVE":
+                removeNameFromNextGame(session, msgChannel, params, event.getSender());
+                break;
+            case "GAME":
+                updateGameName(session, msgChannel, params);
+                break;
+            case "WINNER":
+                updateGenericPlayer(session, msgChannel, RANGE_GAME_WINNERS, params, "winner", true);
+                break;
+            case "OWNER":
+                updateGenericPlayer(session, msgChannel, RANGE_GAME_OWNER, params, "owner", false);
+                break;
+            case "CHOOSER":
+                updateGenericPlayer(session, msgChannel, RANGE_GAME_CHOOSER, params, "chooser", false);
+                break;
+            case "NIGHT":
+                createGameNightMessage(session, msgChannel);
+                break;
+            case "OWNS":
+                commandOwns(session, msgChannel, params);
+                break;
+            case "COMMON":
+                commandCommon(session, msgChannel, params, event.getSender());
+                break;
+            case "SUGGEST":
+                botUpdateChannel(session, event, E_GAME_DIE);
+                commandSuggest(session, msgChannel, params);
+                break;
+            case "STATS":
+                commandStats(session, msgChannel, params);
+                break;
+            default:
+                session.sendMessage(msgChannel, "Sorry, '" + command + "' is not implemented yet.");
         }
     }
 
+    /**
+     * Only the WBB channels and direct messages are used for the sheet
+     * commands
+     *
+     * @param channel
+     * @return
+     */
+    @Override
+    public boolean acceptsChannel(SlackChannel channel) {
+        // Check the channel is WBB channel (or test D40EZ44QZ)
+        return CHANNELS.contains(channel.getId()) || channel.getId().startsWith("D");
+    }
+
     /**
      * Check the channel and user to see if the bot has been called from the correct place(s)
      *
@@ -203,8 +279,7 @@ public class GoogleSheetsListener extends AbstractListener {
      * @return
      */
     private boolean authenticate(SlackSession session, SlackChannel msgChannel, SlackUser msgSender) {
-        // Check the channel is WBB channel (or test D40EZ44QZ)
-        if (!CHANNELS.contains(msgChannel.getId()) && !msgChannel.getId().startsWith("D")) {
+        if (!acceptsChannel(msgChannel)) {
             // Not the right channel
             LOG.debug("Sheets bot called from invalid channel: {}", msgChannel.getId());
             return false;
@@ -224,69 +299,182 @@ public class GoogleSheetsListener extends AbstractListener {
     }
 
     /**
-     * Get the sheet information
+     * Get the sheet information.<p>
+     * The cached copy is used until it is older than the TTL. If another
+     * command is already reading the sheet the cached copy is returned rather
+     * than waiting for it.
      *
      * @param forceUpdate Force an update of the sheet information, default false
      * @return
      */
     public static SheetInfo getSheetInfo(boolean forceUpdate) {
-        if (sheetInfo == null || forceUpdate) {
+        SheetInfo info = SHEET_INFO.get();
+        if (info == null || forceUpdate) {
             readSheetInfo();
+        } else if (System.currentTimeMillis() - sheetInfoReadTime > SHEET_INFO_TTL_MS && REFRESH_LOCK.tryLock()) {
+            try {
+                if (System.currentTimeMillis() - sheetInfoReadTime > SHEET_INFO_TTL_MS) {
+                    LOG.info("Sheet information has expired, reading it again");
+                    loadSheetInfo(false);
+                }
+            } finally {
+                REFRESH_LOCK.unlock();
+            }
         }
 
-        return sheetInfo;
+        return SHEET_INFO.get();
+    }
+
+    /**
+     * Check the next game information on the sheet for changes and read it
+     * all again if it has.<p>
+     * Only the small next game range is read and compared with a hash of the
+     * last one read.
+     */
+    public static void pollSheetChanges() {
+        SheetInfo current = SHEET_INFO.get();
+        if (current == null || !current.isValid() || !playersRead) {
+            // Not read successfully yet, so try the full read again
+            readSheetInfo();
+            return;
+        }
+
+        ValueRange vr = GoogleSheets.getSheetData(SS_ID, RANGE_NEXT_GAME_DATA);
+        if (vr == null) {
+            return;
+        }
+
+        if (Objects.hashCode(vr.getValues()) == sheetInfoHash) {
+            LOG.debug("No change to the next game information");
+        } else {
+            LOG.info("Next game information has changed, reading it again");
+            readSheetInfo();
+            SheetInfo info = SHEET_INFO.get();
+            if (info != null && !GAME_LOG.isEmpty()) {
+                GAME_LOG.forceRefresh(info.getLastRow());
+            }
+        }
     }
 
     /**
      * Retrieve and display the next game information from the sheet
-     *
-     * @param session
-     * @param msgChannel
      */
-    private synchronized static void readSheetInfo() {
-        sheetInfo = new SheetInfo();
-        ValueRange response = GoogleSheets.getSheetData(SS_ID, RANGE_NEXT_GAME_DATA);
+    private static void readSheetInfo() {
+        readSheetInfo(false);
+    }
 
-        List<List<Object>> values = response.getValues();
-        if (values != null && !values.isEmpty()) {
-            for (List row : values) {
-                if (!row.isEmpty()) {
-                    decodeRowFromSheet(row);
-                }
+    /**
+     * Read the next game information from the sheet, unless it has been read
+     * by someone else while waiting to do so.
+     *
+     * @param withPlayers Read the player list as well
+     */
+    private static void readSheetInfo(boolean withPlayers) {
+        long requested = System.currentTimeMillis();
+        REFRESH_LOCK.lock();
+        try {
+            if (withPlayers || sheetInfoReadTime < requested) {
+                loadSheetInfo(withPlayers);
             }
+        } finally {
+            REFRESH_LOCK.unlock();
         }
+    }
 
-        GameLogRow row = readGameLogRow(sheetInfo.getLastRow());
-        if (row.getAttendees() != null) {
-            String players = row.getAttendees();
-            for (String p : StringUtils.split(players, ",")) {
-                sheetInfo.addPlayer(findPlayer(p));
+    /**
+     * Read the next game information from the sheet.<p>
+     * The ranges are read in one request. The game log row is read with them
+     * if the last row is expected to be the same as the last read, otherwise
+     * it is read as soon as the last row is known.<p>
+     * The players are read as well until they have been read once.
+     *
+     * @param forcePlayers Read the player list as well
+     */
+    private static void loadSheetInfo(boolean forcePlayers) {
+        boolean withPlayers = forcePlayers || !playersRead;
+        SheetInfo previous = SHEET_INFO.get();
+        int expectedRow = previous == null ? 0 : previous.getLastRow();
+        List<String> ranges = new ArrayList<>();
+        ranges.add(RANGE_NEXT_GAME_DATA);
+        if (withPlayers) {
+            ranges.add(RANGE_PLAYER_NAMES);
+        }
+        if (expectedRow > 0) {
+            ranges.add(gameLogRange(expectedRow));
+        }
+
+        List<ValueRange> responses = GoogleSheets.batchGetSheetData(SS_ID, ranges);
+        if (responses == null) {
+            // Keep the last information read (if any) until the sheet can be read again
+            LOG.warn("Failed to read the next game information from the sheet");
+            if (withPlayers) {
+                LOG.warn("Failed to read the players from the sheet, keeping the {} already read", PLAYERS.size());
             }
+            // Nothing read yet, so use empty information that refuses writes
+            SHEET_INFO.compareAndSet(null, new SheetInfo());
+            // Count the attempt, so the next read waits for the TTL rather than every command trying again
+            sheetInfoReadTime = System.currentTimeMillis();
+            return;
+        }
+
+        if (withPlayers) {
+            decodePlayers(responses.get(1));
+        }
+
+        SheetInfo info = SheetInfo.fromRows(responses.get(0).getValues());
+
+        GameLogRow row;
+        if (expectedRow > 0 && expectedRow == info.getLastRow()) {
+            row = new GameLogRow(responses.get(responses.size() - 1));
+        } else {
+            LOG.info("Last row changed from {} to {}, reading game log row", expectedRow, info.getLastRow());
+            row = readGameLogRow(info.getLastRow());
         }
 
+        info = info.withPlayers(decodeAttendees(row.getAttendees()));
+
         // Deal with the issue that the game ID may have been read as "#NAME?" due to the sheet recalculating
-        if (sheetInfo.getNextGameId() <= 0) {
-            LOG.info("Updated game ID from {} to {}", sheetInfo.getNextGameId(), row.getGameId());
-            sheetInfo.setNextGameId(row.getGameId());
+        if (info.getNextGameId() <= 0) {
+            LOG.info("Updated game ID from {} to {}", info.getNextGameId(), row.getGameId());
+            info = info.withNextGameId(row.getGameId());
         }
 
-        LOG.info("SheetInfo READ:\n{}", ToStringBuilder.reflectionToString(sheetInfo, ToStringStyle.MULTI_LINE_STYLE));
+        SHEET_INFO.set(info);
+        sheetInfoHash = Objects.hashCode(responses.get(0).getValues());
+        sheetInfoReadTime = System.currentTimeMillis();
+        LOG.info("SheetInfo READ:\n{}", ToStringBuilder.reflectionToString(info, ToStringStyle.MULTI_LINE_STYLE));
     }
 
     /**
-     * Extract the information from the sheet row.
+     * Convert the attendees cell into the players
      *
-     * @param row
+     * @param attendees The comma separated initials
+     * @return
      */
-    private static void decodeRowFromSheet(List row) {
-        String key, value;
-        key = row.get(0).toString().toUpperCase();
-        value = row.size() > 1 ? row.get(1).toString() : null;
-        if (sheetInfo.addItem(key, value)) {
-            LOG.info("Added: '{}'='{}'", key, value);
-        } else {
-            LOG.info("Unmatched row: '{}'='{}'", key, value);
+    private static List<PlayerInfo> decodeAttendees(String attendees) {
+        List<PlayerInfo> players = new ArrayList<>();
+        for (String initial : decodeInitials(attendees)) {
+            players.add(findPlayer(initial));
+        }
+        return players;
+    }
+
+    /**
+     * Split the attendees cell into the set of initials
+     *
+     * @param attendees The comma separated initials
+     * @return The initials in the order they are in the cell
+     */
+    private static Set<String> decodeInitials(String attendees) {
+        Set<String> initials = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(attendees)) {
+            for (String initial : StringUtils.split(attendees, ",")) {
+                if (StringUtils.isNotBlank(initial)) {
+                    initials.add(initial.trim());
+                }
+            }
         }
+        return initials;
     }
 
     /**
@@ -295,10 +483,7 @@ public class GoogleSheetsListener extends AbstractListener {
      * @return SlackAttachment
      */
     public static SlackAttachment createGameInfo() {
-        if (sheetInfo == null) {
-            readSheetInfo();
-        }
-        return createGameInfo(sheetInfo);
+        return createGameInfo(getSheetInfo());
     }
 
     /**
@@ -364,16 +549,19 @@ public class GoogleSheetsListener extends AbstractListener {
     }
 
     /**
-     * Read information from the sheet, such as user names and store in objects
+     * Store the player names read from the sheet
+     *
+     * @param response
      */
-    private void getStaticData() {
-        // get the player data
-        ValueRange response = GoogleSheets.getSheetData(SS_ID, RANGE_PLAYER_NAMES);
-
+    private static void decodePlayers(ValueRange response) {
         LOG.info("Getting players from sheet:");
-        PLAYERS.clear();
         List<List<Object>> values = response.getValues();
-        if (values != null && !values.isEmpty()) {
+        synchronized (PLAYERS) {
+            PLAYERS.clear();
+            if (values == null || values.isEmpty()) {
+                RESOLVER.setPlayers(PLAYERS.values());
+                return;
+            }
             PlayerInfo pi;
             for (List row : values) {
                 if (!row.isEmpty()) {
@@ -385,12 +573,14 @@ public class GoogleSheetsListener extends AbstractListener {
                     PLAYERS.put(pi.getInitial(), pi);
                 }
             }
+            RESOLVER.setPlayers(PLAYERS.values());
         }
+        playersRead = true;
     }
 
     /**
      * Attempt to find the user from the parameters passed.<p>
-     * If the name is blank or "me", use the first name of the user from their user profile.
+     * If the name is blank or "me", use the Slack user.
      *
      * @param name Name to add
      * @param user Slack user details to use instead
@@ -399,10 +589,8 @@ public class GoogleSheetsListener extends AbstractListener {
     private PlayerInfo decodeName(final String name, final SlackUser user) {
         // If blank name, user user details
         if (StringUtils.isBlank(name) || "me".equalsIgnoreCase(name)) {
-            String firstName = StringUtils.split(user.getRealName(), " ")[0];
-            LOG.debug("No name passed (or 'me'), using '{}' for search", firstName);
-            // Try the first name
-            return findPlayer(firstName);
+            LOG.debug("No name passed (or 'me'), using Slack user {}", user.getId());
+            return RESOLVER.resolveUser(user.getId(), user.getRealName());
         }
 
         // Search for the name
@@ -412,48 +600,11 @@ public class GoogleSheetsListener extends AbstractListener {
     /**
      * Attempt to find the player in the list of names from the sheet.
      *
-     * @param search Name to search for
+     * @param player Name to search for
      * @return The closest match for the search name
      */
     private static PlayerInfo findPlayer(final String player) {
-        String search = StringUtils.trimToEmpty(player).toUpperCase();
-        LOG.info("Searching for player '{}'", search);
-
-        if (PLAYERS.containsKey(search)) {
-            LOG.info("Found direct inital match: {}", PLAYERS.get(search).toString());
-            return PLAYERS.get(search);
-        }
-
-        PlayerInfo matchedPlayer = null;
-        int bestMatch = 0;
-        LOG.info("Searching player list for match to '{}'", search);
-        for (PlayerInfo pi : PLAYERS.values()) {
-            if (search.equalsIgnoreCase(pi.getInitial())) {
-                LOG.info("Found direct inital match: {}", pi.toString());
-                return pi;
-            }
-
-            int newScore = SCORE.fuzzyScore(search, pi.getName());
-            if (newScore > bestMatch) {
-                LOG.info("\tBetter match found for '{}' with '{}', new score={}", search, pi.getName(), newScore);
-                bestMatch = newScore;
-                matchedPlayer = pi;
-            }
-        }
-
-        if (bestMatch < 5) {
-            LOG.info("No definitive match found for '{}' (best score was {}), using 'Other'", search, bestMatch);
-            return PLAYERS.get("O");
-        } else if (matchedPlayer == null) {
-            LOG.info("No match found for '{}', using 'Other'", search);
-            return PLAYERS.get("O");
-        } else {
-            LOG.info("Matched '{}' to '{}' with score of {}",
-                    matchedPlayer.getName(),
-                    search,
-                    bestMatch);
-            return matchedPlayer;
-        }
+        return RESOLVER.resolve(player);
     }
 
     /**
@@ -465,77 +616,238 @@ public class GoogleSheetsListener extends AbstractListener {
      * @param requestor
      */
     private void addNameToNextGame(SlackSession session, SlackChannel msgChannel, final String nameToAdd, final SlackUser requestor) {
-        // If we have no sheet informatiom, then populate it
-        if (sheetInfo == null) {
-            readSheetInfo();
-        }
+        PlayerInfo pi = decodeName(nameToAdd, requestor);
 
-        LOG.info("Current player list: {}", sheetInfo.getInitialList());
+        sendAttendeeUpdate(session, msgChannel, updateAttendees(pi, true),
+                String.format("Successfully added '%1$s' (%2$s) to the next game.", pi.getName(), pi.getInitial()),
+                String.format("Player '%1$s' (%2$s) is already playing.", pi.getName(), pi.getInitial()),
+                String.format("Failed to add '%1$s' (%2$s) to the next game.", pi.getName(), pi.getInitial()));
+    }
 
+    /**
+     * Remove a player from the next game's player list
+     *
+     * @param session
+     * @param msgChannel
+     * @param nameToAdd
+     * @param requestor
+     */
+    private void removeNameFromNextGame(SlackSession session, SlackChannel msgChannel, final String nameToAdd, final SlackUser requestor) {
         PlayerInfo pi = decodeName(nameToAdd, requestor);
 
-        if (sheetInfo.getInitialList().contains(pi.getInitial())) {
-            // Already there
-            String message = String.format("Player '%1$s' (%2$s) is already playing.", pi.getName(), pi.getInitial());
+        sendAttendeeUpdate(session, msgChannel, updateAttendees(pi, false),
+                String.format("Successfully removed '%1$s' (%2$s) from the next game.", pi.getName(), pi.getInitial()),
+                String.format("Player '%1$s' (%2$s) is currently not scheduled to play.", pi.getName(), pi.getInitial()),
+                String.format("Failed to remove '%1$s' (%2$s) from the next game.", pi.getName(), pi.getInitial()));
+    }
+
+    /**
+     * Send the reply for an attendee update once it has been made
+     *
+     * @param session
+     * @param msgChannel
+     * @param update The update in progress
+     * @param updated Message to send if the player was added or removed
+     * @param unchanged Message to send if there was nothing to change
+     * @param failed Message to send if the update failed
+     */
+    private static void sendAttendeeUpdate(SlackSession session, SlackChannel msgChannel, CompletableFuture<AttendeeUpdate> update,
+            String updated, String unchanged, String failed) {
+        update.thenAcceptAsync(result -> {
+            String message;
+            switch (result) {
+                case UNCHANGED:
+                    message = unchanged;
+                    break;
+                case UPDATED:
+                    message = updated;
+                    break;
+                default:
+                    message = failed;
+            }
             LOG.info(message);
             session.sendMessage(msgChannel, message);
-            return;
-        }
+        }, CommandPipeline.getReplyExecutor()).exceptionally(ex -> {
+            LOG.warn("Failed to send the attendee reply to {}", msgChannel.getName(), ex);
+            return null;
+        });
+    }
 
-        // Add the player to the sheet info (so we can use the inital list).
-        sheetInfo.addPlayer(pi);
-        LOG.info("New player list: {}", sheetInfo.getInitialList());
+    /**
+     * The outcome of an attendee update
+     */
+    private enum AttendeeUpdate {
+        UPDATED,
+        UNCHANGED,
+        FAILED
+    }
 
-        // Send the data to the sheet and output a message
-        if (GoogleSheets.writeValueToCell(SS_ID, RANGE_GAME_ATTENDEES + sheetInfo.getLastRow(), sheetInfo.getInitialList())) {
-            String message = String.format("Successfully added '%1$s' (%2$s) to the next game.", pi.getName(), pi.getInitial());
-            session.sendMessage(msgChannel, message);
-        } else {
-            String message = String.format("Failed to add '%1$s' (%2$s) to the next game.", pi.getName(), pi.getInitial());
-            session.sendMessage(msgChannel, message);
+    /**
+     * A requested change to the attendees
+     */
+    private static final class AttendeeChange {
+
+        private final String initial;
+        private final boolean add;
+        private final CompletableFuture<AttendeeUpdate> result = new CompletableFuture<>();
+
+        AttendeeChange(String initial, boolean add) {
+            this.initial = initial;
+            this.add = add;
         }
     }
 
     /**
-     * Remove a player from the next game's player list
+     * Add or remove a player from the attendees of the next game.<p>
+     * Changes are gathered while another update is going to the sheet, and
+     * are then made together by the thread that made the first of them. The
+     * lock is only held to hand over the changes, never across a call to the
+     * sheet.
      *
-     * @param session
-     * @param msgChannel
-     * @param nameToAdd
-     * @param requestor
+     * @param player The player to add or remove
+     * @param add True to add the player, false to remove them
+     * @return A future with the outcome of the update
      */
-    private void removeNameFromNextGame(SlackSession session, SlackChannel msgChannel, final String nameToAdd, final SlackUser requestor) {
-        // If we have no sheet informatiom, then populate it
-        if (sheetInfo == null) {
-            readSheetInfo();
+    private static CompletableFuture<AttendeeUpdate> updateAttendees(PlayerInfo player, boolean add) {
+        AttendeeChange change = new AttendeeChange(player.getInitial(), add);
+        synchronized (ATTENDEE_LOCK) {
+            ATTENDEE_CHANGES.add(change);
+            if (attendeeWriting) {
+                // The thread writing now will pick this change up next
+                return change.result;
+            }
+            attendeeWriting = true;
         }
 
-        LOG.info("Current player list: {}", sheetInfo.getInitialList());
+        while (true) {
+            List<AttendeeChange> changes;
+            synchronized (ATTENDEE_LOCK) {
+                if (ATTENDEE_CHANGES.isEmpty()) {
+                    attendeeWriting = false;
+                    return change.result;
+                }
+                changes = new ArrayList<>(ATTENDEE_CHANGES);
+                ATTENDEE_CHANGES.clear();
+            }
 
-        PlayerInfo pi = decodeName(nameToAdd, requestor);
+            try {
+                applyAttendeeChanges(changes);
+            } catch (RuntimeException ex) {
+                LOG.warn("Failed to update the attendees: {}", ex.getMessage(), ex);
+            } finally {
+                changes.forEach(c -> c.result.complete(AttendeeUpdate.FAILED));
+            }
+        }
+    }
 
-        if (!sheetInfo.getInitialList().contains(pi.getInitial())) {
-            // Player isn't there anyway!
-            String message = String.format("Player '%1$s' (%2$s) is currently not scheduled to play.", pi.getName(), pi.getInitial());
-            LOG.info(message);
-            session.sendMessage(msgChannel, message);
+    /**
+     * Make the changes to the attendees cell.<p>
+     * The cell is read fresh from the sheet and the changes are made to that,
+     * not to the cached list. The cell is checked again just before the write
+     * and read back after it, retrying if it has been changed.<p>
+     * The sheet has no conditional write, so an edit made by hand in the gap
+     * between the check and the write can still be overwritten.
+     *
+     * @param changes The changes, in the order they were requested
+     */
+    private static void applyAttendeeChanges(List<AttendeeChange> changes) {
+        SheetInfo info = getSheetInfo();
+        if (!info.isValid()) {
+            LOG.warn("The sheet has not been read, not updating the attendees");
             return;
         }
+        int lastRow = info.getLastRow();
+        String cellRef = RANGE_GAME_ATTENDEES + lastRow;
 
-        // Add the player to the sheet info (so we can use the inital list).
-        sheetInfo.removePlayer(pi);
-        LOG.info("New player list: {}", sheetInfo.getInitialList());
+        for (int attempt = 1; attempt <= MAX_ATTENDEE_ATTEMPTS; attempt++) {
+            String current = readCell(cellRef);
+            if (current == null) {
+                return;
+            }
 
-        // Send the data to the sheet and output a message
-        if (GoogleSheets.writeValueToCell(SS_ID, RANGE_GAME_ATTENDEES + sheetInfo.getLastRow(), sheetInfo.getInitialList())) {
-            String message = String.format("Successfully removed '%1$s' (%2$s) from the next game.", pi.getName(), pi.getInitial());
-            session.sendMessage(msgChannel, message);
-        } else {
-            String message = String.format("Failed to remove '%1$s' (%2$s) from the next game.", pi.getName(), pi.getInitial());
-            session.sendMessage(msgChannel, message);
+            Set<String> initials = decodeInitials(current);
+            LOG.info("Current player list: {}", initials);
+            boolean anyChanged = false;
+            for (AttendeeChange change : changes) {
+                boolean changed = change.add ? initials.add(change.initial) : initials.remove(change.initial);
+                anyChanged |= changed;
+            }
+            if (!anyChanged) {
+                publishAttendees(lastRow, current);
+                changes.forEach(c -> c.result.complete(AttendeeUpdate.UNCHANGED));
+                return;
+            }
+
+            String updated = StringUtils.join(initials, ",");
+            LOG.info("New player list: {}", updated);
+
+            // Compare before writing, to narrow the window for losing another edit
+            String latest = readCell(cellRef);
+            if (latest == null) {
+                return;
+            }
+            if (!latest.equals(current)) {
+                LOG.warn("Attempt #{}: Attendees for row {} changed to '{}' before writing, retrying", attempt, lastRow, latest);
+                continue;
+            }
+
+            if (!GoogleSheets.writeValueToCell(SS_ID, cellRef, updated)) {
+                return;
+            }
+
+            // Check the changes were not overwritten by another edit
+            String written = readCell(cellRef);
+            Set<String> check = decodeInitials(written == null ? updated : written);
+            boolean lost = false;
+            for (AttendeeChange change : changes) {
+                if (check.contains(change.initial) != change.add) {
+                    lost = true;
+                } else if (decodeInitials(current).contains(change.initial) == change.add) {
+                    change.result.complete(AttendeeUpdate.UNCHANGED);
+                } else {
+                    change.result.complete(AttendeeUpdate.UPDATED);
+                }
+            }
+            publishAttendees(lastRow, written == null ? updated : written);
+            if (!lost) {
+                return;
+            }
+            LOG.warn("Attempt #{}: Attendees for row {} changed to '{}' while updating, retrying", attempt, lastRow, written);
         }
     }
 
+    /**
+     * Read a single cell from the sheet
+     *
+     * @param cellRef
+     * @return The value of the cell, blank if empty, or null if the sheet
+     * could not be read
+     */
+    private static String readCell(String cellRef) {
+        ValueRange vr = GoogleSheets.getSheetData(SS_ID, cellRef);
+        if (vr == null) {
+            return null;
+        }
+
+        List<List<Object>> values = vr.getValues();
+        if (values == null || values.isEmpty() || values.get(0).isEmpty()) {
+            return "";
+        }
+        return values.get(0).get(0).toString();
+    }
+
+    /**
+     * Replace the attendees in the cached sheet information, provided it is
+     * still for the same row
+     *
+     * @param lastRow The row the attendees were read from
+     * @param attendees The attendees cell value
+     */
+    private static void publishAttendees(int lastRow, String attendees) {
+        List<PlayerInfo> players = decodeAttendees(attendees);
+        SHEET_INFO.updateAndGet(info -> info != null && info.getLastRow() == lastRow ? info.withPlayers(players) : info);
+    }
+
     /**
      * Read a row of the game log
      *
@@ -543,12 +855,16 @@ public class GoogleSheetsListener extends AbstractListener {
      * @return Values in an object
      */
     private static GameLogRow readGameLogRow(int row) {
-        String sheetRow = String.format("Game Log!A%1$d:I%1$d", row);
+        String sheetRow = gameLogRange(row);
         LOG.info("Getting data from '{}'", sheetRow);
         ValueRange vr = GoogleSheets.getSheetData(SS_ID, sheetRow);
         return new GameLogRow(vr);
     }
 
+    private static String gameLogRange(int row) {
+        return String.format("Game Log!A%1$d:I%1$d", row);
+    }
+
     /**
      * Update the game name<p>
      * Blank or null will clear the game name
@@ -558,20 +874,25 @@ public class GoogleSheetsListener extends AbstractListener {
      * @param gameName
      */
     private void updateGameName(SlackSession session, SlackChannel msgChannel, final String gameName) {
+        SheetInfo sheetInfo = getSheetInfo();
+        if (!sheetInfo.isValid()) {
+            session.sendMessage(msgChannel, SHEET_UNAVAILABLE);
+            return;
+        }
         LOG.info("Updating game name from '{}' to '{}'", sheetInfo.getGameName(), gameName);
 
         String message;
-        // Send the data to the sheet and output a message
-        if (GoogleSheets.writeValueToCell(SS_ID, RANGE_GAME_NAME + sheetInfo.getLastRow(), gameName)) {
-            if (StringUtils.isBlank(gameName)) {
-                message = "Successfully cleared the game name";
-            } else {
-                message = String.format("Successfully updated the game name to '%1$s'.", gameName);
-            }
+        if (StringUtils.isBlank(gameName)) {
+            message = "Successfully cleared the game name";
         } else {
-            message = String.format("Failed to update the game name to '%1$s'.", gameName);
+            message = String.format("Successfully updated the game name to '%1$s'.", gameName);
         }
-        session.sendMessage(msgChannel, message);
+
+        // Send the data to the sheet and output a message once it has been written
+        sendWhenWritten(session, msgChannel,
+                GoogleSheets.queueWrite(SS_ID, RANGE_GAME_NAME + sheetInfo.getLastRow(), gameName),
+                message,
+                String.format("Failed to update the game name to '%1$s'.", gameName));
     }
 
     /**
@@ -588,12 +909,18 @@ public class GoogleSheetsListener extends AbstractListener {
             final String value,
             final String updateType,
             boolean useInitials) {
+        SheetInfo sheetInfo = getSheetInfo();
+        if (!sheetInfo.isValid()) {
+            session.sendMessage(msgChannel, SHEET_UNAVAILABLE);
+            return;
+        }
+
         String message;
-        boolean success;
+        String cellValue;
 
         if (StringUtils.isBlank(value)) {
             // Blank will clear the current cell
-            success = GoogleSheets.writeValueToCell(SS_ID, cellRef + sheetInfo.getLastRow(), "");
+            cellValue = "";
             message = String.format("Cleared the %1$s from the game", updateType);
         } else if (value.contains(",")) {
             // Value contains multiple people, so process accordingly
@@ -609,7 +936,7 @@ public class GoogleSheetsListener extends AbstractListener {
             }
 
             String concatNames = StringUtils.join(nameList, ",");
-            success = GoogleSheets.writeValueToCell(SS_ID, cellRef + sheetInfo.getLastRow(), concatNames);
+            cellValue = concatNames;
             message = String.format("Successfully updated the %1$s to '%2$s'.", updateType, concatNames);
         } else {
             // Assume a single person 
@@ -621,18 +948,48 @@ public class GoogleSheetsListener extends AbstractListener {
             } else {
                 playerValue = player.getName();
             }
-            success = GoogleSheets.writeValueToCell(SS_ID, cellRef + sheetInfo.getLastRow(), playerValue);
+            cellValue = playerValue;
             message = String.format("Successfully updated the %1$s to '%2$s' (%3$s).", updateType, player.getName(), player.getInitial());
         }
 
-        // Send the data to the sheet and output a message
-        if (!success) {
-            message = String.format("Failed to update the %1$s to '%2$s'.", updateType, value);
-        }
-        session.sendMessage(msgChannel, message);
+        // Send the data to the sheet and output a message once it has been written
+        sendWhenWritten(session, msgChannel,
+                GoogleSheets.queueWrite(SS_ID, cellRef + sheetInfo.getLastRow(), cellValue),
+                message,
+                String.format("Failed to update the %1$s to '%2$s'.", updateType, value));
+    }
+
+    /**
+     * Send the confirmation for a queued write once the sheet has been
+     * updated
+     *
+     * @param session
+     * @param msgChannel
+     * @param write The queued write
+     * @param success Message to send if the write succeeded
+     * @param failure Message to send if the write failed
+     */
+    private static void sendWhenWritten(SlackSession session, SlackChannel msgChannel, CompletableFuture<WriteResult> write, String success, String failure) {
+        // Reply on the pipeline, not the sheet writer's thread
+        write.thenAcceptAsync(result -> {
+            switch (result) {
+                case WRITTEN:
+                    session.sendMessage(msgChannel, success);
+                    break;
+                case SUPERSEDED:
+                    session.sendMessage(msgChannel, "A later change to the same cell replaced this one before it was saved.");
+                    break;
+                default:
+                    session.sendMessage(msgChannel, failure);
+            }
+        }, CommandPipeline.getReplyExecutor()).exceptionally(ex -> {
+            LOG.warn("Failed to send the sheet write reply to {}", msgChannel.getName(), ex);
+            return null;
+        });
     }
 
     public static void createGameNightMessage(SlackSession session, SlackChannel msgChannel) {
+        SheetInfo sheetInfo = getSheetInfo();
         LocalDate now = LocalDate.now();
         Period diff = Period.between(now, sheetInfo.getGameDate());
 
@@ -704,6 +1061,336 @@ public class GoogleSheetsListener extends AbstractListener {
         return spm.build();
     }
 
+    /**
+     * Get the BGG usernames of the players
+     *
+     * @return The player names and their BGG username, for the players that
+     * have one
+     */
+    public static Map<String, String> getBggUsernames() {
+        Map<String, String> members = new TreeMap<>();
+        synchronized (PLAYERS) {
+            for (PlayerInfo pi : PLAYERS.values()) {
+                if (StringUtils.isNotBlank(pi.getBggUsername())) {
+                    members.put(pi.getName(), pi.getBggUsername());
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Rebuild the index of the games owned by the players
+     *
+     * @return A future that completes once the index has been rebuilt
+     */
+    public static CompletableFuture<Void> refreshOwnership() {
+        return OWNERSHIP.rebuild(getBggUsernames());
+    }
+
+    /**
+     * Get the status of the ownership index and the game log mirror
+     *
+     * @return
+     */
+    public static String getOwnershipStatus() {
+        return OWNERSHIP.formatOutput() + "\n" + GAME_LOG.formatOutput();
+    }
+
+    /**
+     * List the players that own a game
+     *
+     * @param session
+     * @param msgChannel
+     * @param params The game name or BGG ID
+     */
+    private void commandOwns(SlackSession session, SlackChannel msgChannel, String params) {
+        if (StringUtils.isBlank(params)) {
+            session.sendMessage(msgChannel, "Please give the name of the game");
+            return;
+        }
+        if (OWNERSHIP.isEmpty()) {
+            session.sendMessage(msgChannel, "The list of owned games has not been built yet, please try again later");
+            return;
+        }
+
+        Map<Integer, String> games;
+        if (NumberUtils.isDigits(params)) {
+            int id = NumberUtils.toInt(params);
+            games = Collections.singletonMap(id, params);
+        } else {
+            games = OWNERSHIP.findGames(params, 5);
+        }
+
+        if (games.isEmpty()) {
+            session.sendMessage(msgChannel, "No-one owns a game called '" + params + "'");
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, String> game : games.entrySet()) {
+            List<String> owners = OWNERSHIP.getOwners(game.getKey());
+            sb.append(SlackBot.formatLink(Constants.BGG_LINK_GAME + game.getKey(), game.getValue())).append(": ");
+            if (owners.isEmpty()) {
+                sb.append("no-one owns it\n");
+            } else {
+                sb.append(StringUtils.join(owners, ", ")).append("\n");
+            }
+        }
+        session.sendMessage(msgChannel, sb.toString());
+    }
+
+    /**
+     * List the games that the players all own (or any of them own)
+     *
+     * @param session
+     * @param msgChannel
+     * @param params The player names and optionally "ANY"
+     * @param requestor
+     */
+    private void commandCommon(SlackSession session, SlackChannel msgChannel, String params, SlackUser requestor) {
+        if (OWNERSHIP.isEmpty()) {
+            session.sendMessage(msgChannel, "The list of owned games has not been built yet, please try again later");
+            return;
+        }
+
+        boolean any = false;
+        List<String> names = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        for (String name : StringUtils.split(StringUtils.trimToEmpty(params), ", ")) {
+            if ("any".equalsIgnoreCase(name)) {
+                any = true;
+            } else {
+                // Unknown names are reported rather than counted as "Other"
+                PlayerInfo pi = "me".equalsIgnoreCase(name) ? decodeName(name, requestor) : RESOLVER.find(name);
+                if (pi == null) {
+                    unknown.add(name);
+                } else {
+                    addPlayerName(names, pi);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            session.sendMessage(msgChannel, "I don't recognise " + StringUtils.join(unknown, ", ") + " as " + (unknown.size() == 1 ? "a player" : "players"));
+            return;
+        }
+        if (names.size() < 2) {
+            addPlayerName(names, decodeName(null, requestor));
+        }
+
+        List<String> missing = OWNERSHIP.getMissing(names);
+        if (!missing.isEmpty()) {
+            session.sendMessage(msgChannel, StringUtils.join(missing, ", ") + (missing.size() == 1 ? " doesn't" : " don't") + " have a BGG collection that I know about");
+            return;
+        }
+
+        long mask = OWNERSHIP.getMask(names);
+
+        Map<Integer, String> games = any ? OWNERSHIP.getOwnedByAny(mask) : OWNERSHIP.getOwnedByAll(mask);
+        StringBuilder sb = new StringBuilder();
+        sb.append(StringUtils.join(names, any ? " or " : " and ")).append(" own ").append(games.size()).append(" games");
+        int count = 0;
+        for (Map.Entry<Integer, String> game : games.entrySet()) {
+            if (count++ == MAX_OWNED_LIST) {
+                sb.append("\n...and ").append(games.size() - MAX_OWNED_LIST).append(" more");
+                break;
+            }
+            sb.append("\n").append(SlackBot.formatLink(Constants.BGG_LINK_GAME + game.getKey(), game.getValue()));
+        }
+        session.sendMessage(msgChannel, sb.toString());
+    }
+
+    /**
+     * Suggest games from the collections of the players attending the next
+     * game night
+     *
+     * @param session
+     * @param msgChannel
+     * @param params Optional "players:N" and "time:M"
+     */
+    private void commandSuggest(SlackSession session, SlackChannel msgChannel, String params) {
+        SheetInfo info = SHEET_INFO.get();
+        if (info == null || info.getPlayers().isEmpty()) {
+            session.sendMessage(msgChannel, "No-one has said they are going yet, so I can't suggest a game");
+            return;
+        }
+
+        Map<String, String> owners = new TreeMap<>();
+        for (PlayerInfo pi : info.getPlayers()) {
+            if (pi != null && StringUtils.isNotBlank(pi.getBggUsername())) {
+                owners.put(pi.getName(), pi.getBggUsername());
+            }
+        }
+        if (owners.isEmpty()) {
+            session.sendMessage(msgChannel, "None of the players attending have a BGG collection that I know about");
+            return;
+        }
+
+        int players = info.getPlayers().size();
+        int maxTime = 0;
+        Matcher m = PAT_SUGGEST.matcher(StringUtils.trimToEmpty(params));
+        while (m.find()) {
+            if ("players".equalsIgnoreCase(m.group(1))) {
+                players = NumberUtils.toInt(m.group(2), players);
+            } else {
+                maxTime = NumberUtils.toInt(m.group(2), 0);
+            }
+        }
+
+        // Read the game log while the collections are fetched, the reply is sent once the suggestions are ready
+        final int lastRow = info.getLastRow();
+        final int playerCount = players;
+        final int playTime = maxTime;
+        CompletableFuture<Map<Integer, Integer>> recentPlays = CompletableFuture.supplyAsync(() -> readRecentPlays(lastRow), GAME_LOG_READER);
+        SUGGESTER.suggest(owners, players, maxTime, recentPlays, RECENT_NIGHTS, SUGGEST_COUNT, CommandPipeline.getReplyExecutor())
+                .thenAcceptAsync(suggestions -> sendSuggestions(session, msgChannel, owners.keySet(), playerCount, playTime, suggestions),
+                        CommandPipeline.getReplyExecutor())
+                .exceptionally(ex -> {
+                    LOG.warn("Failed to suggest a game for {}: {}", owners.keySet(), ex.getMessage(), ex);
+                    session.sendMessage(msgChannel, "Sorry, I couldn't suggest a game this time");
+                    return null;
+                });
+    }
+
+    /**
+     * Send the suggested games
+     *
+     * @param session
+     * @param msgChannel
+     * @param owners The names of the players whose collections were used
+     * @param players
+     * @param maxTime
+     * @param suggestions
+     */
+    private static void sendSuggestions(SlackSession session, SlackChannel msgChannel, Set<String> owners, int players, int maxTime, List<GameSuggester.Suggestion> suggestions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Games from the collections of ").append(StringUtils.join(owners, ", "))
+                .append(" for ").append(players).append(" players");
+        if (maxTime > 0) {
+            sb.append(" in ").append(maxTime).append(" minutes or less");
+        }
+
+        if (suggestions.isEmpty()) {
+            sb.append(": I couldn't find any that fit :disappointed:");
+        }
+
+        int count = 1;
+        for (GameSuggester.Suggestion suggestion : suggestions) {
+            BoardGameExtended game = suggestion.getDetails();
+            sb.append("\n").append(count++).append(". ")
+                    .append(SlackBot.formatLink(Constants.BGG_LINK_GAME + suggestion.getId(), suggestion.getName()))
+                    .append(" - ").append(game.getMinPlayers()).append("-").append(game.getMaxPlayers()).append(" players, ")
+                    .append(game.getPlayingTime()).append(" min, rated ").append(String.format("%.1f", suggestion.getRating()))
+                    .append(", owned by ").append(StringUtils.join(suggestion.getOwners(), ", "));
+            if (suggestion.getNightsAgo() > 0) {
+                sb.append(" (played ").append(suggestion.getNightsAgo()).append(" game nights ago)");
+            }
+        }
+        session.sendMessage(msgChannel, sb.toString());
+    }
+
+    /**
+     * Read when each game was last played from the game log
+     *
+     * @param lastRow The row of the next game night
+     * @return How many game nights ago each game was played, keyed on BGG ID
+     */
+    private static Map<Integer, Integer> readRecentPlays(int lastRow) {
+        GAME_LOG.refresh(lastRow);
+        return GAME_LOG.getRecentPlays(RECENT_NIGHTS);
+    }
+
+    /**
+     * Show the statistics from the game log
+     *
+     * @param session
+     * @param msgChannel
+     * @param params GAMES, PLAYERS or CHOOSERS, or blank for a summary
+     */
+    private void commandStats(SlackSession session, SlackChannel msgChannel, String params) {
+        // Only reads the sheet if there has been a game night since the last read
+        GAME_LOG.refresh(getSheetInfo().getLastRow());
+        GameLogMirror.Stats stats = GAME_LOG.getStats();
+        if (stats.getNights() == 0) {
+            session.sendMessage(msgChannel, "There are no game nights in the game log yet");
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        switch (StringUtils.trimToEmpty(params).toUpperCase(Locale.ENGLISH)) {
+            case "GAMES":
+                sb.append("Most played games from ").append(stats.getNights()).append(" game nights");
+                appendGameStats(sb, stats, MAX_STATS_LIST);
+                break;
+            case "PLAYERS":
+                sb.append("Attendance from ").append(stats.getNights()).append(" game nights");
+                appendPlayerStats(sb, stats, MAX_STATS_LIST);
+                break;
+            case "CHOOSERS":
+                sb.append("Nights since each person chose the game");
+                for (GameLogMirror.ChooserStat chooser : stats.getChoosers()) {
+                    sb.append("\n").append(chooser.getName()).append(" - ");
+                    if (chooser.getNightsSince() == 0) {
+                        sb.append("chose the last game");
+                    } else {
+                        sb.append(chooser.getNightsSince()).append(" nights ago");
+                    }
+                    sb.append(" (").append(chooser.getChosen()).append(" chosen)");
+                }
+                break;
+            default:
+                sb.append(stats.getNights()).append(" game nights");
+                if (stats.getFirstNight() != null) {
+                    sb.append(" from ").append(stats.getFirstNight().format(STATS_DATE_FORMAT))
+                            .append(" to ").append(stats.getLastNight().format(STATS_DATE_FORMAT));
+                }
+                sb.append(", ").append(stats.getGames().size()).append(" different games played");
+                appendGameStats(sb, stats, SUGGEST_COUNT);
+                appendPlayerStats(sb, stats, SUGGEST_COUNT);
+        }
+        session.sendMessage(msgChannel, sb.toString());
+    }
+
+    private static void appendGameStats(StringBuilder sb, GameLogMirror.Stats stats, int max) {
+        int count = 1;
+        for (GameLogMirror.GameStat game : stats.getGames()) {
+            if (count > max) {
+                break;
+            }
+            sb.append("\n").append(count++).append(". ");
+            if (game.getId() > 0) {
+                sb.append(SlackBot.formatLink(Constants.BGG_LINK_GAME + game.getId(), game.getName()));
+            } else {
+                sb.append(game.getName());
+            }
+            sb.append(" - played ").append(game.getPlays()).append(game.getPlays() == 1 ? " time" : " times");
+        }
+    }
+
+    private static void appendPlayerStats(StringBuilder sb, GameLogMirror.Stats stats, int max) {
+        int count = 1;
+        for (GameLogMirror.PlayerStat player : stats.getPlayers()) {
+            if (count > max) {
+                break;
+            }
+            PlayerInfo pi;
+            synchronized (PLAYERS) {
+                pi = PLAYERS.get(player.getInitial());
+            }
+            sb.append("\n").append(count++).append(". ")
+                    .append(pi == null ? player.getInitial() : pi.getName())
+                    .append(" - ").append(player.getAttended()).append(" nights, ")
+                    .append(player.getWins()).append(" wins (").append(player.getWinRate()).append("%), ")
+                    .append("streak ").append(player.getCurrentStreak()).append(" (best ").append(player.getBestStreak()).append(")");
+        }
+    }
+
+    private static void addPlayerName(List<String> names, PlayerInfo pi) {
+        if (pi != null && !names.contains(pi.getName())) {
+            names.add(pi.getName());
+        }
+    }
+
     /**
      * UNFINISHED
      *
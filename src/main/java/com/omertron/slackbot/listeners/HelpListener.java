@@ -20,13 +20,14 @@
 package com.omertron.slackbot.listeners;
 
 import com.omertron.slackbot.Constants;
-import static com.omertron.slackbot.Constants.DELIM_LEFT;
-import static com.omertron.slackbot.Constants.DELIM_RIGHT;
 import com.omertron.slackbot.SlackBot;
 import com.omertron.slackbot.enumeration.StatCategory;
 import com.omertron.slackbot.model.HelpInfo;
 import com.omertron.slackbot.functions.BotStatistics;
-import com.omertron.slackbot.functions.BotWelcome;
+import com.omertron.slackbot.functions.CircuitBreaker;
+import com.omertron.slackbot.functions.GoogleSheets;
+import com.omertron.slackbot.functions.limiter.CommandLimiter;
+import com.omertron.slackbot.functions.pipeline.CommandPipeline;
 import com.omertron.slackbot.functions.scheduler.BotTaskExecutor;
 import com.omertron.slackbot.utils.GitRepositoryState;
 import com.ullink.slack.simpleslackapi.SlackAttachment;
@@ -35,14 +36,10 @@ import com.ullink.slack.simpleslackapi.SlackPreparedMessage;
 import com.ullink.slack.simpleslackapi.SlackSession;
 import com.ullink.slack.simpleslackapi.SlackUser;
 import com.ullink.slack.simpleslackapi.events.SlackMessagePosted;
-import com.ullink.slack.simpleslackapi.listeners.SlackMessagePostedListener;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,89 +47,87 @@ import org.slf4j.LoggerFactory;
  *
  * @author Omertron
  */
-public class HelpListener implements SlackMessagePostedListener {
+public class HelpListener extends AbstractListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(HelpListener.class);
 
     private static final Map<Integer, HelpInfo> INFO = new TreeMap<>();
-    private static final Pattern PAT_HELP;
+    private static final List<String> COMMANDS = new ArrayList<>();
+    private static final List<String> ADMIN_COMMANDS = new ArrayList<>();
     private static SlackAttachment helpMessage = null;
     private static SlackAttachment helpMessageAdmin = null;
     private static SlackAttachment aboutMessage = null;
 
     static {
-        List<String> commands = new ArrayList<>();
-        commands.add("help");
-        commands.add("about");
+        COMMANDS.add("help");
+        COMMANDS.add("about");
         addHelpMessage(90, "about", "Get information about the bot", false);
-        commands.add("stats");
+        COMMANDS.add("stats");
         addHelpMessage(91, "stats", "Get some stats about the bot", false);
-        commands.add("tasks");
+        ADMIN_COMMANDS.add("tasks");
         addHelpMessage(92, "tasks", "Display stats about the tasks", true);
+        ADMIN_COMMANDS.add("pipeline");
+        addHelpMessage(93, "pipeline", "Display stats about the command pipeline", true);
 
-        String regex = new StringBuilder("(?i)")
-                .append("\\").append(DELIM_LEFT).append("\\").append(DELIM_LEFT)
-                .append("(").append(StringUtils.join(commands, "|")).append(")(?:\\W*)(.*)")
-                .append("\\").append(DELIM_RIGHT).append("\\").append(DELIM_RIGHT)
-                .toString();
-
-        LOG.info("Help Pattern: {}", regex);
-        PAT_HELP = Pattern.compile(regex);
+        LOG.info("Help Commands: {}", COMMANDS);
     }
 
     @Override
-    public void onEvent(SlackMessagePosted event, SlackSession session) {
-        // Filter out the bot's own messages or messages from other bots
-        if (session.sessionPersona().getId().equals(event.getSender().getId()) || event.getSender().isBot()) {
-            return;
-        }
-
-        if (event.getMessageSubType() == SlackMessagePosted.MessageSubType.CHANNEL_JOIN
-                || event.getMessageSubType() == SlackMessagePosted.MessageSubType.GROUP_JOIN) {
-            // Send a welcome message (will not re-send if already sent)
-            BotWelcome.sendWelcomeMessage(session, event.getChannel(), event.getSender());
-
-            // No need to continue, so return
-            return;
-        }
+    public List<String> getCommands() {
+        return COMMANDS;
+    }
 
-        processMessageEvent(session, event);
+    @Override
+    public List<String> getAdminCommands() {
+        return ADMIN_COMMANDS;
     }
 
     /**
-     * Process the message event
+     * Process the help commands
      *
      * @param session SlackSession
-     * @param channel SlackChannel
-     * @param content String content
-     * @param sender SlackUser
+     * @param event The message event
+     * @param command The command
+     * @param params Any parameters (unused)
      */
-    private void processMessageEvent(SlackSession session, SlackMessagePosted event) {
-        // Search for a user commnd pattern
-        Matcher m = PAT_HELP.matcher(event.getMessageContent());
-        if (m.matches()) {
-            BotStatistics.writeFile();
-            String command = m.group(1).toUpperCase();
-            switch (command) {
-                case "HELP":
-                    createHelpMessage(session, event.getChannel(), event.getSender());
-                    break;
-                case "ABOUT":
-                    BotStatistics.increment(StatCategory.ABOUT, event.getSender().getUserName());
-                    session.sendMessage(event.getChannel(), "", getAboutMessage());
-                    break;
-                case "STATS":
-                    BotStatistics.increment(StatCategory.STATS, event.getSender().getUserName());
-                    String stats = BotStatistics.generateStatistics(true, SlackBot.isBotAdmin(event.getSender()));
-                    session.sendMessage(event.getChannel(), stats);
-                    break;
-                case "TASKS":
+    @Override
+    public void handleCommand(SlackSession session, SlackMessagePosted event, String command, String params) {
+        // Filter out messages from other bots
+        if (event.getSender().isBot()) {
+            return;
+        }
+
+        BotStatistics.writeFile();
+        switch (command) {
+            case "HELP":
+                createHelpMessage(session, event.getChannel(), event.getSender());
+                break;
+            case "ABOUT":
+                BotStatistics.increment(StatCategory.ABOUT, event.getSender().getUserName());
+                session.sendMessage(event.getChannel(), "", getAboutMessage());
+                break;
+            case "STATS":
+                BotStatistics.increment(StatCategory.STATS, event.getSender().getUserName());
+                boolean admin = SlackBot.isBotAdmin(event.getSender());
+                String stats = BotStatistics.generateStatistics(true, admin);
+                if (admin) {
+                    stats += "\n" + CommandLimiter.formatOutput() + "\n" + getBggStatus() + "\n" + GoogleSheetsListener.getOwnershipStatus() + "\n" + GoogleSheets.formatOutput() + "\n" + CircuitBreaker.formatOutput();
+                }
+                session.sendMessage(event.getChannel(), stats);
+                break;
+            case "TASKS":
+                if (SlackBot.isBotAdmin(event.getSender())) {
                     SlackPreparedMessage message = BotTaskExecutor.status();
                     session.sendMessage(event.getChannel(), message);
-                    break;
-                default:
-                    LOG.warn("Unknown command recieved: '{}'", command);
-            }
+                }
+                break;
+            case "PIPELINE":
+                if (SlackBot.isBotAdmin(event.getSender())) {
+                    session.sendMessage(event.getChannel(), CommandPipeline.status());
+                }
+                break;
+            default:
+                LOG.warn("Unknown command recieved: '{}'", command);
         }
     }
 
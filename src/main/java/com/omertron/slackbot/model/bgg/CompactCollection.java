@@ -0,0 +1,208 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.model.bgg;
+
+import com.omertron.bgg.model.CollectionItem;
+import com.omertron.bgg.model.CollectionItemWrapper;
+import com.omertron.bgg.model.OwnerStatus;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A BGG collection held as columns of primitives rather than a list of
+ * CollectionItem objects.<p>
+ * Each item is a row index into the columns. The names are shared between
+ * all the collections through a dictionary.
+ *
+ * @author Omertron
+ */
+public final class CompactCollection {
+
+    // Owner status flags
+    public static final int OWN = 1;
+    public static final int FOR_TRADE = 1 << 1;
+    public static final int PREORDERED = 1 << 2;
+    public static final int PREV_OWNED = 1 << 3;
+    public static final int WANT = 1 << 4;
+    public static final int WANT_TO_BUY = 1 << 5;
+    public static final int WANT_TO_PLAY = 1 << 6;
+    public static final int WISHLIST = 1 << 7;
+
+    // Approximate bytes held for each row across all the columns, the name is a reference to the shared copy
+    private static final int ROW_BYTES = 4 + 4 + 2 + 4 + 4 + 1;
+
+    private final String username;
+    private final int size;
+    private final int[] ids;
+    private final String[] names;
+    private final short[] years;
+    private final int[] plays;
+    private final float[] ratings;
+    private final byte[] status;
+    private volatile int[] nameRanks = null;
+
+    private CompactCollection(String username, int size) {
+        this.username = username;
+        this.size = size;
+        this.ids = new int[size];
+        this.names = new String[size];
+        this.years = new short[size];
+        this.plays = new int[size];
+        this.ratings = new float[size];
+        this.status = new byte[size];
+    }
+
+    /**
+     * Convert the collection from BGG
+     *
+     * @param username
+     * @param wrapper
+     * @return
+     */
+    public static CompactCollection from(String username, CollectionItemWrapper wrapper) {
+        List<CollectionItem> items = wrapper == null || wrapper.getItems() == null ? Collections.<CollectionItem>emptyList() : wrapper.getItems();
+        CompactCollection collection = new CompactCollection(username, items.size());
+
+        for (int row = 0; row < items.size(); row++) {
+            CollectionItem item = items.get(row);
+            collection.ids[row] = item.getObjectId();
+            collection.names[row] = NameDictionary.intern(item.getName());
+            collection.years[row] = item.getYearPublished() == null ? 0 : item.getYearPublished().shortValue();
+            collection.plays[row] = item.getNumPlays();
+            if (item.getStats() != null && item.getStats().getRating() != null) {
+                collection.ratings[row] = Math.max(0f, item.getStats().getRating().getValue());
+            }
+            collection.status[row] = (byte) statusFlags(item.getOwnerStatus());
+        }
+        return collection;
+    }
+
+    private static int statusFlags(OwnerStatus ownerStatus) {
+        if (ownerStatus == null) {
+            return 0;
+        }
+
+        int flags = 0;
+        flags |= ownerStatus.isOwn() ? OWN : 0;
+        flags |= ownerStatus.isForTrade() ? FOR_TRADE : 0;
+        flags |= ownerStatus.isPreordered() ? PREORDERED : 0;
+        flags |= ownerStatus.isPreviouslyOwned() ? PREV_OWNED : 0;
+        flags |= ownerStatus.isWant() ? WANT : 0;
+        flags |= ownerStatus.isWantToBuy() ? WANT_TO_BUY : 0;
+        flags |= ownerStatus.isWantToPlay() ? WANT_TO_PLAY : 0;
+        flags |= ownerStatus.isWishlist() ? WISHLIST : 0;
+        return flags;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    /**
+     * The year published
+     *
+     * @param row
+     * @return The year, or 0 if it is not known
+     */
+    public int getYear(int row) {
+        return years[row];
+    }
+
+    public int getPlays(int row) {
+        return plays[row];
+    }
+
+    /**
+     * The user's rating of the game
+     *
+     * @param row
+     * @return The rating, or 0 if the game is not rated
+     */
+    public float getRating(int row) {
+        return ratings[row];
+    }
+
+    /**
+     * Does the row have all of the status flags
+     *
+     * @param row
+     * @param flags
+     * @return
+     */
+    public boolean hasStatus(int row, int flags) {
+        return (status[row] & flags) == flags;
+    }
+
+    /**
+     * The position of each row when sorted by name.<p>
+     * This is worked out the first time it is needed and then kept.
+     *
+     * @return
+     */
+    public int[] getNameRanks() {
+        int[] ranks = nameRanks;
+        if (ranks == null) {
+            Integer[] order = new Integer[size];
+            for (int row = 0; row < size; row++) {
+                order[row] = row;
+            }
+            Arrays.sort(order, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(getName(a), getName(b)));
+
+            ranks = new int[size];
+            for (int rank = 0; rank < size; rank++) {
+                ranks[order[rank]] = rank;
+            }
+            nameRanks = ranks;
+        }
+        return ranks;
+    }
+
+    /**
+     * The approximate memory held by the collection, not counting the shared
+     * names
+     *
+     * @return
+     */
+    public long getSizeBytes() {
+        return (long) size * (ROW_BYTES + (nameRanks == null ? 0 : 4));
+    }
+
+    /**
+     * The number of names held for all the collections that are still in use
+     *
+     * @return
+     */
+    public static int getDictionarySize() {
+        return NameDictionary.size();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.model.bgg;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Dictionary of game names shared by all the compact collections.<p>
+ * Each name is held once and the collections refer to that copy, so games
+ * that are in several collections do not have their name held several times.
+ * The names are only weakly held, so a name is dropped once no collection
+ * refers to it.
+ *
+ * @author Omertron
+ */
+final class NameDictionary {
+
+    private static final Map<String, WeakReference<String>> NAMES = new WeakHashMap<>();
+
+    private NameDictionary() {
+        throw new UnsupportedOperationException("Class cannot be instantiated");
+    }
+
+    /**
+     * Get the shared copy of the name, adding it to the dictionary if needed
+     *
+     * @param name
+     * @return
+     */
+    static synchronized String intern(String name) {
+        String value = name == null ? "" : name;
+        WeakReference<String> ref = NAMES.get(value);
+        String shared = ref == null ? null : ref.get();
+        if (shared == null) {
+            shared = value;
+            NAMES.put(shared, new WeakReference<>(shared));
+        }
+        return shared;
+    }
+
+    /**
+     * The number of names in the dictionary
+     *
+     * @return
+     */
+    static synchronized int size() {
+        return NAMES.size();
+    }
+}
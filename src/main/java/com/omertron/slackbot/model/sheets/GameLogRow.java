@@ -20,20 +20,25 @@
 package com.omertron.slackbot.model.sheets;
 
 import com.google.api.services.sheets.v4.model.ValueRange;
-import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
-import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class GameLogRow {
 
     private static final Logger LOG = LoggerFactory.getLogger(GameLogRow.class);
+    // The sheet dates are "EEE, d MMM yy", the day name is skipped
+    private static final DateTimeFormatter LOG_DATE_FORMAT = DateTimeFormatter.ofPattern("d MMM yy", Locale.ENGLISH);
     private Date date;
     private String gameName;
     private int gameId;
@@ -56,17 +61,16 @@ public class GameLogRow {
      * @param valueRange
      */
     public final void processValueRange(ValueRange valueRange) {
-        if (valueRange.getValues() == null || valueRange.getValues().isEmpty()) {
+        if (valueRange == null || valueRange.getValues() == null || valueRange.getValues().isEmpty()) {
             return;
         }
 
         List<Object> row = valueRange.getValues().get(0);
 
         if (!row.isEmpty()) {
-            try {
-                this.date = DateUtils.parseDate(row.get(0).toString().substring(5), "dd MMM yy");
-            } catch (ParseException ex) {
-                LOG.info("Failed to parse date: '{}'", ex.getMessage());
+            LocalDate logDate = parseDate(row.get(0).toString());
+            if (logDate != null) {
+                this.date = Date.from(logDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
             }
         }
         if (row.size() >= 2) {
@@ -91,6 +95,26 @@ public class GameLogRow {
         LOG.info("{}", ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE));
     }
 
+    /**
+     * Parse a date from the game log
+     *
+     * @param value The date as written on the sheet, e.g. "Thu, 12 Oct 17"
+     * @return The date, or null if it could not be parsed
+     */
+    public static LocalDate parseDate(String value) {
+        int start = value == null ? -1 : value.indexOf(", ");
+        if (start < 0) {
+            return null;
+        }
+
+        try {
+            return LocalDate.parse(value.substring(start + 2).trim(), LOG_DATE_FORMAT);
+        } catch (DateTimeParseException ex) {
+            LOG.info("Failed to parse date: '{}'", ex.getMessage());
+            return null;
+        }
+    }
+
     public Date getDate() {
         return date;
     }
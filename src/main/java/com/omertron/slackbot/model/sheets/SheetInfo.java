@@ -25,6 +25,8 @@ import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -32,131 +34,154 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SheetInfo {
+/**
+ * Snapshot of the next game information read from the sheet.<p>
+ * The snapshot is not changed once it has been created, the "with" methods
+ * return a copy with the change applied, so it can be shared between threads
+ * without locking.
+ */
+public final class SheetInfo {
 
     private static final Logger LOG = LoggerFactory.getLogger(SheetInfo.class);
     private static final String SHEET_FORMAT_STRING = "EEE, d MMM yy";
     private static final String DEFAULT_DATE_FORMAT = "d MMM yy";
     private static final DateTimeFormatter SHEET_DATE_FORMAT = DateTimeFormatter.ofPattern(SHEET_FORMAT_STRING);
+    // DateTimeFormatter is immutable, so the formatters can be shared
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    private final int lastRow;
+    private final int nextGameId;
+    private final String gameImageUrl;
+    private final String defaultImageUrl;
+    private final String pinHolder;
+    private final String gameChooser;
+    private final String gameName;
+    private final LocalDate gameDate;
+    private final String nextChooser;
+    private final List<PlayerInfo> players;
+    // Sorted initials and names of the players
+    private final List<String> playerInitials;
+    private final List<String> playerNames;
 
-    private int lastRow;
-    private int nextGameId;
-    private String gameImageUrl;
-    private String defaultImageUrl;
-    private String pinHolder;
-    private String gameChooser;
-    private String gameName;
-    private LocalDate gameDate;
-    private String nextChooser;
-    private List<PlayerInfo> players = new ArrayList<>();
-    // Cached lists
-    private String cachePlayerInitList = null;
-    private String cachePlayerNameList = null;
-
-    public synchronized boolean addItem(final String key, final String value) {
-        if (key.startsWith("LAST")) {
-            lastRow = NumberUtils.toInt(value, 0);
-            return true;
-        }
+    /**
+     * Create an empty sheet information
+     */
+    public SheetInfo() {
+        this(new Values(), Collections.<PlayerInfo>emptyList());
+    }
 
-        if (key.startsWith("NEXT GAME ID")) {
-            nextGameId = NumberUtils.toInt(value, 0);
-            return true;
+    private SheetInfo(Values values, List<PlayerInfo> players) {
+        this.lastRow = values.lastRow;
+        this.nextGameId = values.nextGameId;
+        this.gameImageUrl = values.gameImageUrl;
+        this.defaultImageUrl = values.defaultImageUrl;
+        this.pinHolder = values.pinHolder;
+        this.gameChooser = values.gameChooser;
+        this.gameName = values.gameName;
+        this.gameDate = values.gameDate;
+        this.nextChooser = values.nextChooser;
+        this.players = Collections.unmodifiableList(new ArrayList<>(players));
+
+        List<String> initials = new ArrayList<>(players.size());
+        List<String> names = new ArrayList<>(players.size());
+        for (PlayerInfo player : players) {
+            initials.add(player.getInitial());
+            names.add(player.getName());
         }
+        Collections.sort(initials);
+        Collections.sort(names);
+        this.playerInitials = Collections.unmodifiableList(initials);
+        this.playerNames = Collections.unmodifiableList(names);
+    }
 
-        if (key.startsWith("IMAGE")) {
-            gameImageUrl = value;
-            return true;
+    /**
+     * Create the sheet information from the key/value rows of the sheet
+     *
+     * @param rows The rows with the key in the first column and the value in
+     * the second
+     * @return
+     */
+    public static SheetInfo fromRows(List<List<Object>> rows) {
+        Values values = new Values();
+        if (rows != null) {
+            for (List<Object> row : rows) {
+                if (row.isEmpty()) {
+                    continue;
+                }
+
+                String key = row.get(0).toString().toUpperCase();
+                String value = row.size() > 1 ? row.get(1).toString() : null;
+                if (values.addItem(key, value)) {
+                    LOG.info("Added: '{}'='{}'", key, value);
+                } else {
+                    LOG.info("Unmatched row: '{}'='{}'", key, value);
+                }
+            }
         }
+        return new SheetInfo(values, Collections.<PlayerInfo>emptyList());
+    }
 
-        if (key.startsWith("DEFAULT IMAGE")) {
-            defaultImageUrl = value;
-            return true;
-        }
+    /**
+     * Copy of this information with a different player list
+     *
+     * @param players
+     * @return
+     */
+    public SheetInfo withPlayers(List<PlayerInfo> players) {
+        return new SheetInfo(new Values(this), players);
+    }
 
-        if (key.startsWith("CURRENT PIN")) {
-            pinHolder = value;
-            return true;
-        }
-        if (key.startsWith("CHOSEN BY")) {
-            gameChooser = value;
-            return true;
-        }
-        if (key.startsWith("NEXT GAME NAME")) {
-            gameName = value;
-            return true;
-        }
-        if (key.startsWith("NEXT DATE")) {
-            try {
-                gameDate = LocalDate.parse(value, SHEET_DATE_FORMAT);
-            } catch (DateTimeParseException ex) {
-                LOG.info("Failed to parse date: '{}'", ex.getMessage(), ex);
-            }
-            return true;
-        }
-        if (key.startsWith("NEXT CHOOSER")) {
-            nextChooser = value;
-            return true;
-        }
-        return false;
+    /**
+     * Copy of this information with a different game ID
+     *
+     * @param nextGameId
+     * @return
+     */
+    public SheetInfo withNextGameId(int nextGameId) {
+        Values values = new Values(this);
+        values.nextGameId = nextGameId;
+        return new SheetInfo(values, players);
     }
 
     public int getLastRow() {
         return lastRow;
     }
 
-    public void setLastRow(int lastRow) {
-        this.lastRow = lastRow;
+    /**
+     * Has the game row been read from the sheet?<p>
+     * The information is empty until the first successful read, and the
+     * sheet must not be written to until then.
+     *
+     * @return
+     */
+    public boolean isValid() {
+        return lastRow > 0;
     }
 
     public int getNextGameId() {
         return nextGameId;
     }
 
-    public void setNextGameId(int nextGameId) {
-        this.nextGameId = nextGameId;
-    }
-
     public String getGameImageUrl() {
         return gameImageUrl;
     }
 
-    public void setGameImageUrl(String gameImageUrl) {
-        this.gameImageUrl = gameImageUrl;
-    }
-
     public String getDefaultImageUrl() {
         return defaultImageUrl;
     }
 
-    public void setDefaultImageUrl(String defaultImageUrl) {
-        this.defaultImageUrl = defaultImageUrl;
-    }
-
     public String getPinHolder() {
         return pinHolder;
     }
 
-    public void setPinHolder(String pinHolder) {
-        this.pinHolder = pinHolder;
-    }
-
     public String getGameChooser() {
         return gameChooser;
     }
 
-    public void setGameChooser(String gameChooser) {
-        this.gameChooser = gameChooser;
-    }
-
     public String getGameName() {
         return gameName;
     }
 
-    public void setGameName(String gameName) {
-        this.gameName = gameName;
-    }
-
     public LocalDate getGameDate() {
         return gameDate;
     }
@@ -167,49 +192,43 @@ public class SheetInfo {
 
     public String getFormattedDate(String format) {
         if (gameDate != null) {
-            return gameDate.format(DateTimeFormatter.ofPattern(format));
+            return gameDate.format(FORMATTERS.computeIfAbsent(format, DateTimeFormatter::ofPattern));
         } else {
             return null;
         }
     }
 
-    public void setGameDate(LocalDate gameDate) {
-        this.gameDate = gameDate;
-    }
-
     public String getNextChooser() {
         return nextChooser;
     }
 
-    public void setNextChooser(String nextChooser) {
-        this.nextChooser = nextChooser;
-    }
-
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
     }
 
+    /**
+     * The players attending the next game
+     *
+     * @return An unmodifiable list of the players
+     */
     public List<PlayerInfo> getPlayers() {
         return players;
     }
 
-    public void setPlayers(List<PlayerInfo> players) {
-        this.players = players;
-        this.cachePlayerInitList = null;
-        this.cachePlayerNameList = null;
-    }
-
-    public void addPlayer(PlayerInfo player) {
-        this.players.add(player);
-        this.cachePlayerInitList = null;
-        this.cachePlayerNameList = null;
-    }
-
-    public void removePlayer(PlayerInfo player) {
-        this.players.remove(player);
-        this.cachePlayerInitList = null;
-        this.cachePlayerNameList = null;
+    /**
+     * Check to see if a player is attending the next game
+     *
+     * @param initial The player's initials
+     * @return
+     */
+    public boolean hasPlayer(String initial) {
+        for (PlayerInfo player : players) {
+            if (player.getInitial().equalsIgnoreCase(initial)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -219,16 +238,7 @@ public class SheetInfo {
      * @return player initials list
      */
     public String getInitialList(String delim) {
-        if (cachePlayerInitList == null) {
-            List<String> list = new ArrayList<>();
-            for (PlayerInfo player : players) {
-                list.add(player.getInitial());
-            }
-            Collections.sort(list);
-            cachePlayerInitList = StringUtils.join(list, StringUtils.isBlank(delim) ? "," : delim);
-        }
-
-        return cachePlayerInitList;
+        return StringUtils.join(playerInitials, StringUtils.isBlank(delim) ? "," : delim);
     }
 
     public String getInitialList() {
@@ -242,20 +252,90 @@ public class SheetInfo {
      * @return Player name list
      */
     public String getNameList(String delim) {
-        if (cachePlayerNameList == null) {
-            List<String> list = new ArrayList<>();
-            for (PlayerInfo player : players) {
-                list.add(player.getName());
-            }
-            Collections.sort(list);
-            cachePlayerNameList = StringUtils.join(list, StringUtils.isBlank(delim) ? "," : delim);
-        }
-
-        return cachePlayerNameList;
+        return StringUtils.join(playerNames, StringUtils.isBlank(delim) ? "," : delim);
     }
 
     public String getNameList() {
         return getNameList(",");
     }
 
+    /**
+     * The values read from the sheet, gathered before the snapshot is created
+     */
+    private static final class Values {
+
+        private int lastRow;
+        private int nextGameId;
+        private String gameImageUrl;
+        private String defaultImageUrl;
+        private String pinHolder;
+        private String gameChooser;
+        private String gameName;
+        private LocalDate gameDate;
+        private String nextChooser;
+
+        Values() {
+            // Nothing read
+        }
+
+        Values(SheetInfo info) {
+            this.lastRow = info.lastRow;
+            this.nextGameId = info.nextGameId;
+            this.gameImageUrl = info.gameImageUrl;
+            this.defaultImageUrl = info.defaultImageUrl;
+            this.pinHolder = info.pinHolder;
+            this.gameChooser = info.gameChooser;
+            this.gameName = info.gameName;
+            this.gameDate = info.gameDate;
+            this.nextChooser = info.nextChooser;
+        }
+
+        boolean addItem(final String key, final String value) {
+            if (key.startsWith("LAST")) {
+                lastRow = NumberUtils.toInt(value, 0);
+                return true;
+            }
+
+            if (key.startsWith("NEXT GAME ID")) {
+                nextGameId = NumberUtils.toInt(value, 0);
+                return true;
+            }
+
+            if (key.startsWith("IMAGE")) {
+                gameImageUrl = value;
+                return true;
+            }
+
+            if (key.startsWith("DEFAULT IMAGE")) {
+                defaultImageUrl = value;
+                return true;
+            }
+
+            if (key.startsWith("CURRENT PIN")) {
+                pinHolder = value;
+                return true;
+            }
+            if (key.startsWith("CHOSEN BY")) {
+                gameChooser = value;
+                return true;
+            }
+            if (key.startsWith("NEXT GAME NAME")) {
+                gameName = value;
+                return true;
+            }
+            if (key.startsWith("NEXT DATE")) {
+                try {
+                    gameDate = LocalDate.parse(value, SHEET_DATE_FORMAT);
+                } catch (DateTimeParseException ex) {
+                    LOG.info("Failed to parse date: '{}'", ex.getMessage(), ex);
+                }
+                return true;
+            }
+            if (key.startsWith("NEXT CHOOSER")) {
+                nextChooser = value;
+                return true;
+            }
+            return false;
+        }
+    }
 }
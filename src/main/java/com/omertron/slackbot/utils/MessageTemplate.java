@@ -0,0 +1,138 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message format that is parsed once and then appended directly into a
+ * StringBuilder, rather than parsing the format string and creating a new
+ * string each time like String.format.
+ * <p>
+ * Supports a subset of the format syntax: "%1$s", "%1$d", "%1$2d" (right
+ * aligned to the width) and "%%".
+ *
+ * @author Omertron
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;
+    private final int[] argIndex;
+    private final int[] widths;
+
+    private MessageTemplate(String[] literals, int[] argIndex, int[] widths) {
+        this.literals = literals;
+        this.argIndex = argIndex;
+        this.widths = widths;
+    }
+
+    /**
+     * Parse the format into a template
+     *
+     * @param format
+     * @return
+     */
+    public static MessageTemplate compile(String format) {
+        List<String> literals = new ArrayList<>();
+        List<int[]> args = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int pos = 0;
+        while (pos < format.length()) {
+            char c = format.charAt(pos++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            if (pos < format.length() && format.charAt(pos) == '%') {
+                literal.append('%');
+                pos++;
+                continue;
+            }
+
+            // Argument index
+            int start = pos;
+            while (pos < format.length() && Character.isDigit(format.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos || pos >= format.length() || format.charAt(pos) != '$') {
+                throw new IllegalArgumentException("Invalid argument at position " + start + " in '" + format + "'");
+            }
+            int index = Integer.parseInt(format.substring(start, pos)) - 1;
+            pos++;
+
+            // Optional width
+            start = pos;
+            while (pos < format.length() && Character.isDigit(format.charAt(pos))) {
+                pos++;
+            }
+            int width = start == pos ? 0 : Integer.parseInt(format.substring(start, pos));
+
+            if (pos >= format.length() || (format.charAt(pos) != 's' && format.charAt(pos) != 'd')) {
+                throw new IllegalArgumentException("Unsupported conversion at position " + pos + " in '" + format + "'");
+            }
+            pos++;
+
+            literals.add(literal.toString());
+            literal.setLength(0);
+            args.add(new int[]{index, width});
+        }
+        literals.add(literal.toString());
+
+        int[] argIndex = new int[args.size()];
+        int[] widths = new int[args.size()];
+        for (int i = 0; i < args.size(); i++) {
+            argIndex[i] = args.get(i)[0];
+            widths[i] = args.get(i)[1];
+        }
+        return new MessageTemplate(literals.toArray(new String[literals.size()]), argIndex, widths);
+    }
+
+    /**
+     * Append the formatted message to the builder
+     *
+     * @param sb The builder to append to
+     * @param args The arguments for the message
+     * @return The builder
+     */
+    public StringBuilder appendTo(StringBuilder sb, Object... args) {
+        for (int i = 0; i < argIndex.length; i++) {
+            sb.append(literals[i]);
+            int start = sb.length();
+            sb.append(args[argIndex[i]]);
+            for (int pad = widths[i] - (sb.length() - start); pad > 0; pad--) {
+                sb.insert(start, ' ');
+            }
+        }
+        return sb.append(literals[argIndex.length]);
+    }
+
+    /**
+     * Create the formatted message
+     *
+     * @param args The arguments for the message
+     * @return
+     */
+    public String format(Object... args) {
+        return appendTo(new StringBuilder(), args).toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.omertron.slackbot.enumeration.CircuitState;
+import com.omertron.slackbot.enumeration.Upstream;
+import org.junit.Test;
+
+/**
+ * Check the circuit opens, probes and closes
+ *
+ * @author Omertron
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(Upstream.BGG, 3, 60_000);
+        breaker.recordFailure("one");
+        breaker.recordFailure("two");
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure("three");
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(Upstream.BGG, 2, 60_000);
+        breaker.recordFailure("one");
+        breaker.recordSuccess();
+        breaker.recordFailure("two");
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testSingleProbe() {
+        // No open time, so the next request is a probe
+        CircuitBreaker breaker = new CircuitBreaker(Upstream.BGG, 1, 0);
+        breaker.recordFailure("down");
+        assertTrue(breaker.isOpen());
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testFailedProbeReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(Upstream.BGG, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure("down");
+        }
+        assertTrue(breaker.allowRequest());
+
+        // A single failure while probing opens the circuit again
+        breaker.recordFailure("still down");
+        assertTrue(breaker.isOpen());
+    }
+}
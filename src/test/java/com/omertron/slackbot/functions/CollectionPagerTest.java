@@ -0,0 +1,120 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import com.omertron.bgg.model.CollectionItem;
+import com.omertron.bgg.model.CollectionItemWrapper;
+import com.omertron.slackbot.model.bgg.CompactCollection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the collection is split into pages and messages
+ *
+ * @author Omertron
+ */
+public class CollectionPagerTest {
+
+    private static final int ITEMS = 25;
+    private CompactCollection collection;
+    private int[] rows;
+
+    @Before
+    public void setUp() {
+        List<CollectionItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            CollectionItem item = new CollectionItem();
+            item.setObjectId(1000 + i);
+            item.setName("Café game " + i);
+            item.setYearPublished(i == 0 ? null : 2000 + i);
+            items.add(item);
+        }
+        CollectionItemWrapper wrapper = new CollectionItemWrapper();
+        wrapper.setItems(items);
+        collection = CompactCollection.from("tester", wrapper);
+
+        rows = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            rows[i] = i;
+        }
+    }
+
+    @Test
+    public void testPages() {
+        CollectionPager pager = new CollectionPager(collection, rows, 10, 100_000);
+        assertEquals(ITEMS, pager.getTotalItems());
+        assertEquals(3, pager.getTotalPages());
+
+        List<String> first = pager.formatPage(1);
+        assertEquals(1, first.size());
+        assertTrue(first.get(0).startsWith("Café game 0 (Unknown) - <https://boardgamegeek.com/boardgame/1000|1000>\n"));
+        assertEquals(10, lines(first.get(0)));
+
+        List<String> last = pager.formatPage(3);
+        assertEquals(5, lines(last.get(0)));
+        assertTrue(last.get(0).startsWith("Café game 20 (2020)"));
+        assertTrue(pager.formatPage(4).isEmpty());
+    }
+
+    @Test
+    public void testRowOrder() {
+        int[] reversed = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            reversed[i] = ITEMS - 1 - i;
+        }
+        CollectionPager pager = new CollectionPager(collection, reversed, 10, 100_000);
+        assertTrue(pager.formatPage(1).get(0).startsWith("Café game 24 (2024)"));
+    }
+
+    @Test
+    public void testByteBudget() {
+        int budget = 150;
+        String whole = new CollectionPager(collection, rows, 10, 100_000).formatPage(1).get(0);
+        List<String> parts = new CollectionPager(collection, rows, 10, budget).formatPage(1);
+        assertTrue(parts.size() > 1);
+
+        // Each message keeps within the budget and no lines are lost
+        StringBuilder joined = new StringBuilder();
+        for (String part : parts) {
+            assertTrue(part.getBytes(StandardCharsets.UTF_8).length <= budget);
+            joined.append(part);
+        }
+        assertEquals(whole, joined.toString());
+    }
+
+    @Test
+    public void testLineOverBudget() {
+        // A line bigger than the budget is still sent, on its own
+        List<String> parts = new CollectionPager(collection, rows, 3, 10).formatPage(1);
+        assertEquals(3, parts.size());
+        for (String part : parts) {
+            assertEquals(1, lines(part));
+        }
+    }
+
+    private static int lines(String text) {
+        return text.split("\n").length;
+    }
+}
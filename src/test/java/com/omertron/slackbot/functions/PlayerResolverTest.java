@@ -0,0 +1,114 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import com.omertron.slackbot.model.sheets.PlayerInfo;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the names are resolved to the right player
+ *
+ * @author Omertron
+ */
+public class PlayerResolverTest {
+
+    private PlayerResolver resolver;
+    private PlayerInfo stuart;
+    private PlayerInfo alice;
+    private PlayerInfo bob;
+    private PlayerInfo other;
+
+    @Before
+    public void setUp() {
+        stuart = new PlayerInfo("S", "Stuart Boston");
+        stuart.setBggUsername("Omertron");
+        alice = new PlayerInfo("A", "Alice Smith");
+        alice.setSlackUsername("alice.s");
+        bob = new PlayerInfo("B", "Bob Smith");
+        other = new PlayerInfo("O", "Other");
+
+        List<PlayerInfo> players = new ArrayList<>();
+        players.add(stuart);
+        players.add(alice);
+        players.add(bob);
+        players.add(other);
+
+        resolver = new PlayerResolver();
+        resolver.setPlayers(players);
+    }
+
+    @Test
+    public void testExact() {
+        assertSame(stuart, resolver.resolve("s"));
+        assertSame(stuart, resolver.resolve("Stuart Boston"));
+        assertSame(stuart, resolver.resolve("  stuart "));
+        assertSame(stuart, resolver.resolve("omertron"));
+        assertSame(alice, resolver.resolve("alice.s"));
+        assertSame(bob, resolver.resolve("Bob"));
+    }
+
+    @Test
+    public void testSharedKey() {
+        // Both players are called Smith, so only the full name picks one
+        assertSame(alice, resolver.resolve("Alice Smith"));
+        assertSame(bob, resolver.resolve("Bob Smith"));
+    }
+
+    @Test
+    public void testFuzzy() {
+        assertSame(stuart, resolver.resolve("Stuartt"));
+        assertSame(stuart, resolver.find("Stuartt"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertNull(resolver.find("Zebedee"));
+        assertSame(other, resolver.resolve("Zebedee"));
+        assertSame(other, resolver.resolve(null));
+    }
+
+    @Test
+    public void testPlayersReplaced() {
+        assertSame(bob, resolver.resolve("Bob"));
+
+        // Remembered matches are dropped with the old player table
+        List<PlayerInfo> players = new ArrayList<>();
+        players.add(stuart);
+        players.add(other);
+        resolver.setPlayers(players);
+        assertSame(other, resolver.resolve("Bob"));
+    }
+
+    @Test
+    public void testResolveUser() {
+        assertSame(stuart, resolver.resolveUser("U1", "Stuart Boston"));
+
+        // An exact match is remembered against the user ID
+        assertSame(stuart, resolver.resolveUser("U1", "Someone Else"));
+        assertSame(other, resolver.resolveUser("U2", "Someone Else"));
+        assertEquals("A", resolver.resolveUser("U3", "Alice Jones").getInitial());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.omertron.slackbot.enumeration.WriteResult;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+/**
+ * Check the batching and superseding of the sheet writes
+ *
+ * @author Omertron
+ */
+public class SheetWriteBufferTest {
+
+    // Long enough that the tests flush the buffer themselves
+    private static final long WINDOW = 60_000;
+
+    private final Map<String, String> writtenCells = new LinkedHashMap<>();
+
+    private Map<String, Boolean> write(String sheetId, Map<String, String> cells, boolean success) {
+        writtenCells.putAll(cells);
+        Map<String, Boolean> results = new HashMap<>();
+        cells.keySet().forEach(cell -> results.put(cell, success));
+        return results;
+    }
+
+    @Test
+    public void testWritten() {
+        SheetWriteBuffer buffer = new SheetWriteBuffer("sheet", (id, cells) -> write(id, cells, true), WINDOW);
+        CompletableFuture<WriteResult> first = buffer.queue("A1", "one");
+        CompletableFuture<WriteResult> second = buffer.queue("B1", "two");
+        assertFalse(first.isDone());
+
+        buffer.flush();
+        assertEquals(WriteResult.WRITTEN, first.join());
+        assertEquals(WriteResult.WRITTEN, second.join());
+        assertEquals("one", writtenCells.get("A1"));
+        assertEquals("two", writtenCells.get("B1"));
+        buffer.stop();
+    }
+
+    @Test
+    public void testSuperseded() {
+        SheetWriteBuffer buffer = new SheetWriteBuffer("sheet", (id, cells) -> write(id, cells, true), WINDOW);
+        CompletableFuture<WriteResult> first = buffer.queue("A1", "one");
+        CompletableFuture<WriteResult> second = buffer.queue("A1", "two");
+
+        // The replaced write is told straight away
+        assertTrue(first.isDone());
+        assertEquals(WriteResult.SUPERSEDED, first.join());
+
+        buffer.flush();
+        assertEquals(WriteResult.WRITTEN, second.join());
+        assertEquals(1, writtenCells.size());
+        assertEquals("two", writtenCells.get("A1"));
+        buffer.stop();
+    }
+
+    @Test
+    public void testFailed() {
+        SheetWriteBuffer buffer = new SheetWriteBuffer("sheet", (id, cells) -> write(id, cells, false), WINDOW);
+        CompletableFuture<WriteResult> future = buffer.queue("A1", "one");
+        buffer.flush();
+        assertEquals(WriteResult.FAILED, future.join());
+        buffer.stop();
+    }
+
+    @Test
+    public void testStop() {
+        SheetWriteBuffer buffer = new SheetWriteBuffer("sheet", (id, cells) -> write(id, cells, true), WINDOW);
+        CompletableFuture<WriteResult> pending = buffer.queue("A1", "one");
+
+        // Stopping writes what is pending, then refuses new writes
+        buffer.stop();
+        assertEquals(WriteResult.WRITTEN, pending.join());
+        assertEquals(WriteResult.FAILED, buffer.queue("B1", "two").join());
+        assertFalse(writtenCells.containsKey("B1"));
+    }
+}
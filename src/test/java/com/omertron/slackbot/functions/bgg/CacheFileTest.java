@@ -0,0 +1,107 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the cache file round trip and disk budget
+ *
+ * @author Omertron
+ */
+public class CacheFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = Files.createTempDirectory("cachefile").toFile();
+        directory.deleteOnExit();
+        file = new File(directory, "test.json");
+        file.deleteOnExit();
+    }
+
+    @Test
+    public void testMissingFile() {
+        CacheFile<String> cacheFile = new CacheFile<>(file, CacheFile.type(String.class), 10_000);
+        assertTrue(cacheFile.read().isEmpty());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        CacheFile<String> cacheFile = new CacheFile<>(file, CacheFile.type(String.class), 10_000);
+        List<CacheRecord<String>> records = new ArrayList<>();
+        records.add(new CacheRecord<>("a", 1000L, "one"));
+        records.add(new CacheRecord<>("b", 2000L, "two"));
+        assertTrue(cacheFile.write(records) > 0);
+
+        List<CacheRecord<String>> read = cacheFile.read();
+        assertEquals(2, read.size());
+        assertEquals("a", read.get(0).getKey());
+        assertEquals(1000L, read.get(0).getExpires());
+        assertEquals("two", read.get(1).getValue());
+    }
+
+    @Test
+    public void testBudget() {
+        CacheFile<String> cacheFile = new CacheFile<>(file, CacheFile.type(String.class), 500);
+        List<CacheRecord<String>> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(new CacheRecord<>("key" + i, 1000L, "value" + i));
+        }
+        assertTrue(cacheFile.write(records) <= 500);
+
+        // The most recently used entries are kept
+        List<CacheRecord<String>> read = cacheFile.read();
+        assertFalse(read.isEmpty());
+        assertTrue(read.size() < 50);
+        assertEquals("key49", read.get(read.size() - 1).getKey());
+    }
+
+    @Test
+    public void testCacheLoad() {
+        CacheFile<String> cacheFile = new CacheFile<>(file, CacheFile.type(String.class), 10_000);
+        TtlCache<String> cache = new TtlCache<>("Test", 10, 1, TimeUnit.HOURS);
+        cache.setCacheFile(cacheFile);
+        cache.put("a", "one");
+        assertTrue(cache.save() > 0);
+
+        // Expired entries are dropped when loading
+        List<CacheRecord<String>> records = cacheFile.read();
+        records.add(new CacheRecord<>("b", System.currentTimeMillis() - 1000, "two"));
+        cacheFile.write(records);
+
+        TtlCache<String> loaded = new TtlCache<>("Test", 10, 1, TimeUnit.HOURS);
+        loaded.setCacheFile(cacheFile);
+        assertEquals(1, loaded.load());
+        assertEquals("one", loaded.get("a"));
+        assertEquals(1, loaded.size());
+    }
+}
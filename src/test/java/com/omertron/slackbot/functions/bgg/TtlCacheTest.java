@@ -0,0 +1,99 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.bgg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Check the cache expiry, eviction and statistics
+ *
+ * @author Omertron
+ */
+public class TtlCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        TtlCache<String> cache = new TtlCache<>("Test", 10, 1, TimeUnit.HOURS);
+        assertNull(cache.get("a"));
+
+        cache.put("a", "one");
+        cache.put("b", null);
+        assertEquals("one", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.formatOutput().contains("1 hits, 2 misses"));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        TtlCache<String> cache = new TtlCache<>("Test", 10, 0, TimeUnit.MILLISECONDS);
+        cache.put("a", "one");
+        Thread.sleep(5);
+
+        // Expired entries are kept as a fallback until purged
+        assertNull(cache.get("a"));
+        assertEquals("one", cache.getStale("a"));
+        assertEquals(1, cache.purgeExpired());
+        assertNull(cache.getStale("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        TtlCache<String> cache = new TtlCache<>("Test", 2, 1, TimeUnit.HOURS);
+        cache.put("a", "one");
+        cache.put("b", "two");
+
+        // Using "a" makes "b" the least recently used
+        cache.get("a");
+        cache.put("c", "three");
+        assertEquals("one", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("three", cache.get("c"));
+        assertTrue(cache.formatOutput().contains("1 evictions"));
+    }
+
+    @Test
+    public void testPeekNotCounted() {
+        TtlCache<String> cache = new TtlCache<>("Test", 10, 1, TimeUnit.HOURS);
+        cache.put("a", "one");
+        assertEquals("one", cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertTrue(cache.formatOutput().contains("0 hits, 0 misses"));
+        assertTrue(cache.formatOutput().contains("0 stale served"));
+
+        cache.getStale("a");
+        assertTrue(cache.formatOutput().contains("1 stale served"));
+    }
+
+    @Test
+    public void testFlush() {
+        TtlCache<String> cache = new TtlCache<>("Test", 10, 1, TimeUnit.HOURS);
+        cache.put("a", "one");
+        cache.put("b", "two");
+        assertEquals(2, cache.flush());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.load());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.limiter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Check the limits use the default bucket sizes and give back the tokens of
+ * a rejected command
+ *
+ * @author Omertron
+ */
+public class CommandLimiterTest {
+
+    // The default user bucket capacity
+    private static final int USER_CAPACITY = 5;
+
+    @Test
+    public void testUserLimit() {
+        for (int i = 0; i < USER_CAPACITY; i++) {
+            assertTrue(CommandLimiter.tryAcquire("user-limit", "channel-" + i, "user-limit-cmd-" + i));
+        }
+        assertFalse(CommandLimiter.tryAcquire("user-limit", "channel-x", "user-limit-cmd-x"));
+
+        // Another user is not affected
+        assertTrue(CommandLimiter.tryAcquire("user-other", "channel-x", "user-limit-cmd-x"));
+    }
+
+    @Test
+    public void testRejectedRefund() {
+        // Use up the command's default bucket of 20
+        for (int i = 0; i < 20; i++) {
+            assertTrue(CommandLimiter.tryAcquire("refund-" + i, "refund-channel-" + i, "refund-cmd"));
+        }
+
+        // The command limit rejects it, and the user's token is given back
+        for (int i = 0; i < USER_CAPACITY + 1; i++) {
+            assertFalse(CommandLimiter.tryAcquire("refund-user", "refund-channel", "refund-cmd"));
+        }
+        assertTrue(CommandLimiter.tryAcquire("refund-user", "refund-channel", "refund-other"));
+    }
+}
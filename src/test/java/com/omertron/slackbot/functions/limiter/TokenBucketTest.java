@@ -0,0 +1,81 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.functions.limiter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Check the token bucket takes, refunds and refills tokens
+ *
+ * @author Omertron
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testCapacity() {
+        // No refill, so only the starting tokens can be used
+        TokenBucket bucket = new TokenBucket(3, 0);
+        assertTrue(bucket.isFull());
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+        assertEquals(0, bucket.getAvailable());
+        assertFalse(bucket.isFull());
+    }
+
+    @Test
+    public void testRefund() {
+        TokenBucket bucket = new TokenBucket(1, 0);
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+
+        bucket.refund();
+        assertTrue(bucket.isFull());
+        assertTrue(bucket.tryConsume());
+
+        // Refunds can't overfill the bucket
+        bucket.refund();
+        bucket.refund();
+        assertEquals(1, bucket.getAvailable());
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        // One token per millisecond
+        TokenBucket bucket = new TokenBucket(2, 60_000);
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+
+        Thread.sleep(10);
+        assertTrue(bucket.tryConsume());
+    }
+
+    @Test
+    public void testMinimumCapacity() {
+        TokenBucket bucket = new TokenBucket(0, 0);
+        assertEquals(1, bucket.getCapacity());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+}
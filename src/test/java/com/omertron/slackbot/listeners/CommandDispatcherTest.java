@@ -0,0 +1,49 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.listeners;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Check that the dispatcher's first character check ignores chat and lets
+ * the commands through
+ *
+ * @author Omertron
+ */
+public class CommandDispatcherTest {
+
+    private static final String[] CHAT = {
+        "Anyone up for a game of Brass on Thursday?",
+        "I can bring <@U12345> along if there's room, we finished Gloomhaven scenario 12 last night",
+        "ok",
+        "Has anyone seen the new expansion for Terraforming Mars? Looks like it adds a lot of new cards and a couple of new maps."
+    };
+
+    @Test
+    public void testIgnoredChat() {
+        for (String message : CHAT) {
+            assertFalse(message, CommandDispatcher.mayBeCommand(message));
+        }
+        assertTrue(CommandDispatcher.mayBeCommand("[[coll omertron]]"));
+        assertTrue(CommandDispatcher.mayBeCommand("wbb next"));
+    }
+}
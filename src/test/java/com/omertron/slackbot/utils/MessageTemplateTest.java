@@ -0,0 +1,54 @@
+/*
+ *      Copyright (c) 2017 Stuart Boston
+ *
+ *      This file is part of the BGG Slack Bot.
+ *
+ *      The BGG Slack Bot is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      The BGG Slack Bot is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with the BGG Slack Bot.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.omertron.slackbot.utils;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Check a compiled template renders the same as String.format
+ *
+ * @author Omertron
+ */
+public class MessageTemplateTest {
+
+    private static final int ITEMS = 3000;
+    private static final String LINK = "https://boardgamegeek.com/boardgame/";
+    private static final String LINE = "%1$s (%2$s) - <%3$s%4$d|%4$d>\n";
+    private static final MessageTemplate LINE_FORMAT = MessageTemplate.compile(LINE);
+
+    @Test
+    public void testSameOutput() {
+        assertEquals(String.format(LINE, "Brass", 2007, LINK, 28720), LINE_FORMAT.format("Brass", 2007, LINK, 28720));
+        assertEquals(String.format("%1$2d-%2$s", 3, "Agricola"), MessageTemplate.compile("%1$2d-%2$s").format(3, "Agricola"));
+        assertEquals(String.format("100%% of %1$s", "games"), MessageTemplate.compile("100%% of %1$s").format("games"));
+    }
+
+    @Test
+    public void testCollectionListing() {
+        StringBuilder formatted = new StringBuilder();
+        StringBuilder templated = new StringBuilder();
+        for (int i = 0; i < ITEMS; i++) {
+            formatted.append(String.format(LINE, "Game number " + i, 1990 + i % 30, LINK, 100000 + i));
+            LINE_FORMAT.appendTo(templated, "Game number " + i, 1990 + i % 30, LINK, 100000 + i);
+        }
+        assertEquals(formatted.toString(), templated.toString());
+    }
+}